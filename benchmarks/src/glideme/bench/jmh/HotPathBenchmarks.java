@@ -0,0 +1,138 @@
+package glideme.bench.jmh;
+
+import glideme.Physics;
+import glideme.Regulator;
+import glideme.World;
+import glideme.bench.Scenario;
+import glideme.fuzzy.FuzzySet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the simulation's hot path, from a single fuzzy set up to a whole tick: the suite of
+ * SimulationBenchmarks, measured by JMH (forked JVMs, blackholes, and profilers such as -prof gc for the bytes
+ * allocated per operation). BenchmarkRunner remains as a dependency-free fallback and for baseline checks.
+ *
+ * Every benchmark runs against the traces recorded in both scenarios, replayed cyclically, one state per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HotPathBenchmarks {
+    /**
+     * Length of the replayed traces (a power of two, for cheap wrapping).
+     */
+    private static final int TRACE_LENGTH = 8192;
+
+    /**
+     * The input distribution.
+     */
+    @Param({"SETTLED", "SWINGING"})
+    public Scenario scenario;
+
+    private Scenario.Trace trace;
+    private int index = 0;
+
+    /**
+     * A fuzzy set shaped like the regulator's "distance zero" (a field, so that it isn't a constant to the JIT),
+     * and sets of all the types around the recorded distances.
+     */
+    private FuzzySet distanceZero;
+    private final FuzzySet[] sets = new FuzzySet[TRACE_LENGTH];
+
+    private final double[] in = new double[TRACE_LENGTH], out = new double[TRACE_LENGTH];
+
+    private final World world = new World();
+    private final Physics physics = new Physics();
+    private final Regulator regulator = new Regulator();
+    private Runnable stepper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trace = scenario.record(TRACE_LENGTH);
+        distanceZero = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -25.0, 0.0, 25.0);
+
+        final FuzzySet.MembershipType[] types = FuzzySet.MembershipType.values();
+        for (int i = 0; i < TRACE_LENGTH; ++i) {
+            in[i] = trace.destination[i] - trace.position[i];
+            sets[i] = new FuzzySet(types[i % types.length], in[i] - 25.0, in[i], in[i] + 25.0);
+        }
+
+        stepper = scenario.stepper();
+    }
+
+    /**
+     * @return - the next position in the trace.
+     */
+    private int next() {
+        index = (index + 1) & (TRACE_LENGTH - 1);
+        return index;
+    }
+
+    /**
+     * Set the world to the state recorded at the given position of the trace.
+     */
+    private void load(final int i) {
+        world.update(trace.position[i], trace.velocity[i], trace.acceleration[i], trace.angle[i]);
+        world.setDestination(trace.destination[i]);
+    }
+
+    @Benchmark
+    public double fuzzySetGrade() {
+        return distanceZero.grade(in[next()]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRACE_LENGTH)
+    public double[] fuzzySetGradeBulk() {
+        distanceZero.grade(in, out, TRACE_LENGTH);
+        return out;
+    }
+
+    @Benchmark
+    public double fuzzySetPeakValue() {
+        return sets[next()].peakValue();
+    }
+
+    @Benchmark
+    public World worldUpdate() {
+        final int i = next();
+        world.update(trace.position[i], trace.velocity[i], trace.acceleration[i], trace.angle[i]);
+        return world;
+    }
+
+    @Benchmark
+    public World physicsUpdate() {
+        load(next());
+        physics.update(world);
+        return world;
+    }
+
+    @Benchmark
+    public World regulatorUpdate() {
+        load(next());
+        regulator.update(world);
+        return world;
+    }
+
+    @Benchmark
+    public void worldRefresh() {
+        stepper.run();
+    }
+}
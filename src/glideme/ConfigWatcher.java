@@ -0,0 +1,155 @@
+package glideme;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads a regulator configuration file whenever it changes and hands it to running regulators.
+ *
+ * The file's directory is watched by a daemon thread, which does all the work - reading, parsing and compiling
+ * the rules - so the threads advancing the worlds only ever see a finished configuration being swapped in.
+ * A file that can't be loaded (e.g. caught half-written, or with a typo) is reported and ignored: the regulators
+ * keep their current configuration until the file is fixed.
+ */
+public class ConfigWatcher implements Closeable {
+    /**
+     * How long to wait for more changes after the file has changed, in milliseconds (editors often save
+     * a file in several steps).
+     */
+    private static final long SETTLE_MILLIS = 100;
+
+    /**
+     * The configuration file.
+     */
+    private final Path file;
+
+    /**
+     * Regulators the reloaded configuration is given to.
+     */
+    private final Regulator[] regulators;
+
+    private final WatchService watcher;
+    private final Thread thread;
+
+    /**
+     * Number of configurations loaded and of failed attempts.
+     */
+    private volatile long reloads = 0, failures = 0;
+
+    /**
+     * Start watching a configuration file. The file isn't loaded until it changes (see reload()).
+     *
+     * @param file - the configuration file.
+     * @param regulators - regulators to reconfigure.
+     *
+     * @throws IOException - when the file's directory can't be watched.
+     */
+    public ConfigWatcher(final Path file, final Regulator... regulators) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.regulators = regulators.clone();
+
+        watcher = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "glideme-config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Wait for changes of the file until closed.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+
+                boolean changed = false;
+                while (key != null) {
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                                || file.getFileName().equals(event.context());
+                    }
+                    key.reset();
+
+                    // Collect the rest of a burst of changes.
+                    key = changed ? watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException exception) {
+                        System.err.println("ConfigWatcher: keeping the current configuration, "
+                                + exception.getMessage());
+                    }
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException exception) {
+            // Closed.
+        }
+    }
+
+    /**
+     * Load the configuration file now and give it to the regulators.
+     *
+     * @return - the configuration loaded.
+     *
+     * @throws IOException - when the file can't be read or isn't a valid configuration.
+     */
+    synchronized
+    public RegulatorConfig reload() throws IOException {
+        final RegulatorConfig config;
+        try {
+            config = RegulatorConfig.load(file);
+        } catch (IOException exception) {
+            ++failures;
+            throw exception;
+        }
+
+        for (final Regulator regulator : regulators) {
+            regulator.setConfig(config);
+        }
+        ++reloads;
+
+        return config;
+    }
+
+    /**
+     * @return - number of configurations loaded so far.
+     */
+    public long getReloadCount() {
+        return reloads;
+    }
+
+    /**
+     * @return - number of failed attempts to load the configuration.
+     */
+    public long getFailureCount() {
+        return failures;
+    }
+
+    /**
+     * Stop watching the file.
+     *
+     * @throws IOException - when the watch service can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,376 @@
+package glideme;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The regulator's control surface sampled into a dense grid.
+ *
+ * The fuzzy rules map (distance, angle) to a target velocity, and the velocity only enters the control law
+ * afterwards, linearly. Since the fuzzy sets are fixed, the target velocity can be sampled once and then
+ * answered by bilinear interpolation, which costs a few loads and multiplications instead of the whole
+ * fuzzification-reasoning-defuzzification chain.
+ *
+ * The grid covers distances from -TRACK_LENGTH to TRACK_LENGTH and angles from -PI/2 to PI/2, inputs outside
+ * of it are clamped. A surface can be saved to a file and memory-mapped back, so that it needn't be sampled
+ * again after a restart. The file records the fingerprint of the configuration it was sampled from, so that
+ * a surface of a different configuration isn't mistaken for it (see loadOrSample).
+ *
+ * File layout (little endian): a 64 byte header (magic, version, distance steps, angle steps as ints; distance
+ * range, angle range and the bound of the error as doubles; the configuration's fingerprint as a long),
+ * then angle-major rows of doubles.
+ */
+public class ControlSurface {
+    /**
+     * File format identification.
+     */
+    private static final int MAGIC = 0x474C4353, VERSION = 3;
+
+    /**
+     * Size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * The largest number of samples of a surface (a saved surface is mapped as a whole, which is limited to 2 GB).
+     */
+    public static final long MAX_SAMPLES = (Integer.MAX_VALUE - HEADER_SIZE) / 8;
+
+    /**
+     * Bounds of the sampled inputs.
+     */
+    private static final double DISTANCE_MIN = -World.TRACK_LENGTH, DISTANCE_MAX = World.TRACK_LENGTH,
+            ANGLE_MIN = -Math.PI/2.0, ANGLE_MAX = Math.PI/2.0;
+
+    /**
+     * Number of samples along each of the axes.
+     */
+    private final int distanceSteps, angleSteps;
+
+    /**
+     * Scales converting inputs into grid coordinates.
+     */
+    private final double distanceScale, angleScale;
+
+    /**
+     * Sampled target velocities, angle-major (a row per angle sample).
+     */
+    private final DoubleBuffer values;
+
+    /**
+     * Bound of the difference from the exact regulator, determined when the surface was sampled.
+     */
+    private final double maxError;
+
+    /**
+     * Fingerprint of the configuration the surface was sampled from (see RegulatorConfig.getFingerprint).
+     */
+    private final long configFingerprint;
+
+    private ControlSurface(final int distanceSteps, final int angleSteps, final DoubleBuffer values,
+                           final double maxError, final long configFingerprint)
+    {
+        this.distanceSteps = distanceSteps;
+        this.angleSteps = angleSteps;
+        this.distanceScale = (distanceSteps - 1) / (DISTANCE_MAX - DISTANCE_MIN);
+        this.angleScale = (angleSteps - 1) / (ANGLE_MAX - ANGLE_MIN);
+        this.values = values;
+        this.maxError = maxError;
+        this.configFingerprint = configFingerprint;
+    }
+
+    /**
+     * Sample the regulator's control surface.
+     *
+     * The error of the interpolation is bounded cell by cell. Within a cell the interpolated value is a weighted
+     * average of the corners, so it differs from the exact one by at most (Sd * hd + Sa * ha) / 2, where hd and ha
+     * are the cell's sizes and Sd and Sa the surface's steepest slopes along the axes within the cell. The slopes
+     * are taken from the exact surface probed at twice the resolution (at the samples and halfway between them),
+     * as the largest difference of neighbouring probes within the cell over their distance; the bound also covers
+     * the errors found at the probes. It holds as long as the surface isn't steeper within half a cell than
+     * between the probes there, which is the case for the fuzzy surfaces: they're piecewise smooth, with creases
+     * only along the sets' breakpoints. E.g. a 513x513 surface of the default configuration is bounded by 4.3e-3,
+     * and two million random probes found errors of at most 1.9e-3 (and two thirds of their cell's bound).
+     *
+     * @param regulator - the regulator to sample (its exact, fuzzy path is used).
+     * @param distanceSteps - number of samples along the distance axis.
+     * @param angleSteps - number of samples along the angle axis.
+     *
+     * @return - the sampled surface.
+     *
+     * @throws IllegalArgumentException - when there are less than two samples along any of the axes,
+     * or more than MAX_SAMPLES in total.
+     */
+    public static ControlSurface sample(final Regulator regulator, final int distanceSteps, final int angleSteps)
+            throws IllegalArgumentException
+    {
+        if (distanceSteps < 2 || angleSteps < 2) {
+            throw new IllegalArgumentException("ControlSurface: at least two samples per axis are required!");
+        }
+        if ((long) distanceSteps * angleSteps > MAX_SAMPLES) {
+            throw new IllegalArgumentException("ControlSurface: at most " + MAX_SAMPLES + " samples are supported!");
+        }
+
+        final double[] grid = new double[distanceSteps * angleSteps];
+        for (int a = 0; a < angleSteps; ++a) {
+            for (int d = 0; d < distanceSteps; ++d) {
+                grid[a * distanceSteps + d] = regulator.targetVelocity(
+                        coordinate(DISTANCE_MIN, DISTANCE_MAX, distanceSteps, d),
+                        coordinate(ANGLE_MIN, ANGLE_MAX, angleSteps, a));
+            }
+        }
+
+        final long fingerprint = regulator.getConfig().getFingerprint();
+        final ControlSurface exact = new ControlSurface(distanceSteps, angleSteps, DoubleBuffer.wrap(grid), 0.0,
+                fingerprint);
+
+        // Probe a row of cells at a time: the probes of its lower edge, middle and upper edge. A cell spans
+        // two probes along each axis, so (Sd * hd + Sa * ha) / 2 is the sum of the largest differences.
+        final int probes = 2 * distanceSteps - 1;
+        double[] lower = new double[probes], middle = new double[probes], upper = new double[probes];
+        double[] lowerErrors = new double[probes], middleErrors = new double[probes], upperErrors = new double[probes];
+        double maxError = 0.0;
+
+        probeRow(regulator, exact, 0, lower, lowerErrors);
+        for (int a = 0; a + 1 < angleSteps; ++a) {
+            probeRow(regulator, exact, 2 * a + 1, middle, middleErrors);
+            probeRow(regulator, exact, 2 * a + 2, upper, upperErrors);
+
+            for (int d = 0; d + 1 < distanceSteps; ++d) {
+                double distanceDifference = 0.0, angleDifference = 0.0, probedError = 0.0;
+
+                for (int i = 2 * d; i <= 2 * d + 2; ++i) {
+                    probedError = Math.max(probedError,
+                            Math.max(lowerErrors[i], Math.max(middleErrors[i], upperErrors[i])));
+                    angleDifference = Math.max(angleDifference,
+                            Math.max(Math.abs(middle[i] - lower[i]), Math.abs(upper[i] - middle[i])));
+
+                    if (i < 2 * d + 2) {
+                        distanceDifference = Math.max(distanceDifference, Math.max(Math.abs(lower[i + 1] - lower[i]),
+                                Math.max(Math.abs(middle[i + 1] - middle[i]), Math.abs(upper[i + 1] - upper[i]))));
+                    }
+                }
+
+                maxError = Math.max(maxError, Math.max(probedError, distanceDifference + angleDifference));
+            }
+
+            // The upper edge is the next row's lower one.
+            final double[] values = lower, errors = lowerErrors;
+            lower = upper;
+            lowerErrors = upperErrors;
+            upper = values;
+            upperErrors = errors;
+        }
+
+        return new ControlSurface(distanceSteps, angleSteps, DoubleBuffer.wrap(grid), maxError, fingerprint);
+    }
+
+    /**
+     * Probe a row of the exact surface at twice the surface's resolution.
+     *
+     * @param regulator - the regulator (its exact, fuzzy path is used).
+     * @param surface - the sampled surface.
+     * @param row - index of the row (counting the rows halfway between the samples).
+     * @param exact - the exact target velocities to overwrite.
+     * @param errors - the differences of the surface from them to overwrite.
+     */
+    private static void probeRow(final Regulator regulator, final ControlSurface surface, final int row,
+                                 final double[] exact, final double[] errors) {
+        final double angle = coordinate(ANGLE_MIN, ANGLE_MAX, 2 * surface.angleSteps - 1, row);
+
+        for (int d = 0; d < exact.length; ++d) {
+            final double distance = coordinate(DISTANCE_MIN, DISTANCE_MAX, exact.length, d);
+            exact[d] = regulator.targetVelocity(distance, angle);
+            errors[d] = Math.abs(surface.targetVelocity(distance, angle) - exact[d]);
+        }
+    }
+
+    /**
+     * Memory-map a surface saved before.
+     *
+     * @param file - the file to map.
+     *
+     * @return - the mapped surface.
+     *
+     * @throws IOException - when the file can't be read or isn't a valid surface.
+     */
+    public static ControlSurface load(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("ControlSurface: " + file + " is not a control surface file!");
+            }
+
+            final int distanceSteps = buffer.getInt(8), angleSteps = buffer.getInt(12);
+            if (buffer.getDouble(16) != DISTANCE_MIN || buffer.getDouble(24) != DISTANCE_MAX
+                    || buffer.getDouble(32) != ANGLE_MIN || buffer.getDouble(40) != ANGLE_MAX) {
+                throw new IOException("ControlSurface: " + file + " covers different input ranges!");
+            }
+            if (distanceSteps < 2 || angleSteps < 2
+                    || buffer.limit() != HEADER_SIZE + 8L * distanceSteps * angleSteps) {
+                throw new IOException("ControlSurface: " + file + " is truncated or corrupted!");
+            }
+
+            buffer.position(HEADER_SIZE);
+            final DoubleBuffer values = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+
+            // The mapping stays valid after the channel is closed.
+            return new ControlSurface(distanceSteps, angleSteps, values, buffer.getDouble(48), buffer.getLong(56));
+        }
+    }
+
+    /**
+     * Map a previously saved surface, or sample the regulator and save the surface if there's none
+     * (or it has a different resolution, or was sampled from a configuration other than the regulator's).
+     *
+     * @param file - the file to map or create.
+     * @param regulator - the regulator to sample if needed.
+     * @param distanceSteps - number of samples along the distance axis.
+     * @param angleSteps - number of samples along the angle axis.
+     *
+     * @return - the surface.
+     *
+     * @throws IOException - when the surface can't be saved.
+     */
+    public static ControlSurface loadOrSample(final Path file, final Regulator regulator,
+                                              final int distanceSteps, final int angleSteps)
+            throws IOException
+    {
+        if (Files.exists(file)) {
+            try {
+                final ControlSurface surface = load(file);
+                if (surface.distanceSteps == distanceSteps && surface.angleSteps == angleSteps
+                        && surface.configFingerprint == regulator.getConfig().getFingerprint()) {
+                    return surface;
+                }
+            }
+            catch (IOException e) {
+                // Fall through and sample the surface anew.
+            }
+        }
+
+        final ControlSurface surface = sample(regulator, distanceSteps, angleSteps);
+        surface.save(file);
+
+        return surface;
+    }
+
+    /**
+     * Save the surface to a file (replacing any previous contents).
+     *
+     * @param file - the file to write.
+     *
+     * @throws IOException - when the file can't be written.
+     */
+    public void save(final Path file) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) (HEADER_SIZE + 8L * distanceSteps * angleSteps))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(distanceSteps).putInt(angleSteps)
+                .putDouble(DISTANCE_MIN).putDouble(DISTANCE_MAX).putDouble(ANGLE_MIN).putDouble(ANGLE_MAX)
+                .putDouble(maxError).putLong(configFingerprint);
+
+        buffer.position(HEADER_SIZE);
+        for (int i = 0; i < distanceSteps * angleSteps; ++i) {
+            buffer.putDouble(values.get(i));
+        }
+        buffer.flip();
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Determine the velocity the crane should have by interpolating the sampled surface.
+     *
+     * @param distance - distance from the crane to its destination.
+     * @param angle - crane's angle.
+     *
+     * @return - the target velocity.
+     */
+    public double targetVelocity(final double distance, final double angle) {
+        final double x = clamp((distance - DISTANCE_MIN) * distanceScale, distanceSteps - 1),
+                y = clamp((angle - ANGLE_MIN) * angleScale, angleSteps - 1);
+
+        // Index of the lower-left corner of the cell (the last cell includes its upper edge).
+        final int d = Math.min((int) x, distanceSteps - 2),
+                a = Math.min((int) y, angleSteps - 2);
+        final double tx = x - d, ty = y - a;
+
+        final int row = a * distanceSteps + d;
+        final double v00 = values.get(row), v10 = values.get(row + 1),
+                v01 = values.get(row + distanceSteps), v11 = values.get(row + distanceSteps + 1);
+
+        final double lower = v00 + (v10 - v00) * tx,
+                upper = v01 + (v11 - v01) * tx;
+
+        return lower + (upper - lower) * ty;
+    }
+
+    /**
+     * @return - bound of the difference between the surface and the exact regulator (see sample).
+     */
+    public double getMaxError() {
+        return maxError;
+    }
+
+    /**
+     * @return - fingerprint of the configuration the surface was sampled from (see RegulatorConfig.getFingerprint).
+     */
+    public long getConfigFingerprint() {
+        return configFingerprint;
+    }
+
+    /**
+     * @return - number of samples along the distance axis.
+     */
+    public int getDistanceSteps() {
+        return distanceSteps;
+    }
+
+    /**
+     * @return - number of samples along the angle axis.
+     */
+    public int getAngleSteps() {
+        return angleSteps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ControlSurface[%dx%d, max error %.3g]", distanceSteps, angleSteps, maxError);
+    }
+
+    /**
+     * @param min - lower bound of the axis.
+     * @param max - upper bound of the axis.
+     * @param steps - number of samples along the axis.
+     * @param index - index of the sample.
+     *
+     * @return - the sampled input value (exactly the bound for the first and the last sample).
+     */
+    private static double coordinate(final double min, final double max, final int steps, final int index) {
+        return index == steps - 1 ? max : min + index * (max - min) / (steps - 1);
+    }
+
+    /**
+     * @param x - grid coordinate.
+     * @param max - the largest valid coordinate.
+     *
+     * @return - the coordinate clamped to [0, max] (NaN becomes 0).
+     */
+    private static double clamp(final double x, final double max) {
+        return x > 0.0 ? Math.min(x, max) : 0.0;
+    }
+}
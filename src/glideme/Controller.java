@@ -0,0 +1,16 @@
+package glideme;
+
+/**
+ * Controls the crane: sets its acceleration every tick, given its state and destination.
+ *
+ * Implementations may keep state between ticks, so every world needs its own instance.
+ */
+public interface Controller {
+    /**
+     * Determine and set the crane's acceleration.
+     *
+     * @param world - the world that's being updated.
+     * @param destination - the destination in effect for this tick.
+     */
+    void update(World world, double destination);
+}
@@ -8,13 +8,29 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import glideme.engine.InputJournal;
+import glideme.engine.TickScheduler;
+import glideme.metrics.SimulationMetrics;
+import glideme.stream.StatePublisher;
+import glideme.telemetry.SharedStateExporter;
+import glideme.telemetry.TelemetryRecorder;
+import glideme.telemetry.TelemetryServer;
+
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
 
 public class Main extends Application {
+    /**
+     * The crane's regulator (its configuration can be reloaded while running, see startConfigWatcher()).
+     */
+    private static final Regulator regulator = new Regulator();
+
     /**
      * The state of the world.
      */
-    private static World world = new World();
+    private static World world = new World(regulator);
     private static MainWindow mainWindow = new MainWindow();
 
     /**
@@ -22,10 +38,123 @@ public class Main extends Application {
      */
     private static Thread worldThread;
 
+    /**
+     * Maximal number of ticks the world loop runs back-to-back after falling behind the wall clock.
+     */
+    private static final int MAX_CATCH_UP = 50;
+
+    /**
+     * Scheduler keeping the world loop in step with the wall clock.
+     */
+    private static final TickScheduler scheduler = new TickScheduler(World.TIME_QUANTUM * 1000000L, MAX_CATCH_UP);
+
+    /**
+     * Criteria of the crane having settled, after which the world loop sleeps until the destination changes.
+     */
+    private static final Quiescence quiescence = Quiescence.DEFAULT;
+
     /**
      * Should world be running?
      */
-    private static boolean worldRunning = false;
+    private static volatile boolean worldRunning = false;
+
+    /**
+     * Run-time metrics, if enabled by the glideme.metrics system property (or null).
+     */
+    private static SimulationMetrics metrics = null;
+
+    /**
+     * Publisher of the world's ticks to subscribers in this JVM, if enabled by the glideme.publisher system
+     * property (or null).
+     */
+    private static StatePublisher publisher = null;
+
+    /**
+     * Number of ticks recorded by default when telemetry is on (an hour's worth).
+     */
+    private static final long DEFAULT_TELEMETRY_CAPACITY = 3600L * 1000L / World.TIME_QUANTUM;
+
+    /**
+     * Record the world's telemetry if requested by the glideme.telemetry system property (the file to record into).
+     * The number of recorded ticks can be set through glideme.telemetry.capacity.
+     */
+    private static void startTelemetry() {
+        final String file = System.getProperty("glideme.telemetry");
+        if (file == null) {
+            return;
+        }
+
+        try {
+            world.addTickListener(new TelemetryRecorder(Paths.get(file),
+                    Long.getLong("glideme.telemetry.capacity", DEFAULT_TELEMETRY_CAPACITY)));
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Publish the world's live state for other local processes if requested by the glideme.shared system property
+     * (the file to publish into, see SharedStateReader). The crane is published as crane 0.
+     */
+    private static void startSharedState() {
+        final String file = System.getProperty("glideme.shared");
+        if (file == null) {
+            return;
+        }
+
+        try {
+            world.addTickListener(new SharedStateExporter(Paths.get(file), 1).getSlot(0));
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Stream the world's ticks to subscribers if requested by the glideme.telemetry.port system property
+     * (the TCP port to listen at, see TelemetryClient).
+     */
+    private static void startTelemetryServer() {
+        final Integer port = Integer.getInteger("glideme.telemetry.port");
+        if (port == null) {
+            return;
+        }
+
+        try {
+            world.addTickListener(new TelemetryServer(new InetSocketAddress(port), 1));
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    /**
+     * Publish the world's ticks to subscribers in this JVM if the glideme.publisher system property is true.
+     * The window then renders from a subscription rather than reading the world.
+     */
+    private static void startPublisher() {
+        if (!Boolean.getBoolean("glideme.publisher")) {
+            return;
+        }
+
+        publisher = new StatePublisher();
+        world.addTickListener(publisher);
+    }
+
+    /**
+     * Load the regulator's configuration from the file given by the glideme.config system property (if any)
+     * and reload it whenever the file changes.
+     */
+    private static void startConfigWatcher() {
+        final String file = System.getProperty("glideme.config");
+        if (file == null) {
+            return;
+        }
+
+        try {
+            new ConfigWatcher(Paths.get(file), regulator).reload();
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
 
     /**
      * Spawn the main world-updating loop in a new thread.
@@ -34,18 +163,36 @@ public class Main extends Application {
         worldThread = new Thread(new Runnable() {
             @Override
             public void run() {
-                while (true) {
-                    if (worldRunning) {
-                        world.refresh();
-                    }
+                final World.CraneState state = new World.CraneState();
 
-                    try {
-                        Thread.sleep(world.TIME_QUANTUM);
-                    }
-                    catch (InterruptedException _) {
-                        return;
+                scheduler.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!worldRunning) {
+                            // Nothing to do until the world is started (see runWorld()).
+                            LockSupport.park(this);
+                            scheduler.resync();
+                            return;
+                        }
+
+                        final double destination = world.getDestination();
+                        world.getCraneState(state);
+
+                        if (quiescence.isSettled(destination, state.position, state.velocity, state.acceleration,
+                                state.angle)) {
+                            // The crane stays put until it's given somewhere else to go.
+                            if (!world.awaitDestinationChange(destination)) {
+                                // Interrupted (the interrupt status is kept): the world loop ends.
+                                scheduler.stop();
+                                return;
+                            }
+                            scheduler.resync();
+                            return;
+                        }
+
+                        world.refresh();
                     }
-                }
+                });
             }
         });
 
@@ -61,11 +208,13 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        mainWindow = new MainWindow(world);
+        mainWindow = new MainWindow(world, metrics, publisher);
 
         FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("MainWindow.fxml"));
 
         fxmlLoader.setRoot(mainWindow);
+        // The window is its own controller, so that it's initialized with its world and metrics.
+        fxmlLoader.setController(mainWindow);
         try {
             fxmlLoader.load();
         } catch (IOException exception) {
@@ -82,6 +231,51 @@ public class Main extends Application {
      */
     public static void runWorld(final boolean run) {
         worldRunning = run;
+
+        if (run) {
+            LockSupport.unpark(worldThread);
+        }
+    }
+
+    /**
+     * Journal the world's inputs if requested by the glideme.journal system property (the file to save the journal
+     * to when the application exits). The session can then be re-run by glideme.engine.Replay.
+     */
+    private static void startJournal() {
+        final String file = System.getProperty("glideme.journal");
+        if (file == null) {
+            return;
+        }
+
+        // The regulator's configuration (loaded from glideme.config, or reloaded while running) is journalled too.
+        final InputJournal journal = new InputJournal(regulator);
+        world.addTickListener(journal);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal.save(Paths.get(file));
+                } catch (IOException exception) {
+                    exception.printStackTrace();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Collect run-time metrics and expose them through JMX if the glideme.metrics system property is true.
+     */
+    private static void startMetrics() {
+        if (!Boolean.getBoolean("glideme.metrics")) {
+            return;
+        }
+
+        metrics = new SimulationMetrics();
+        metrics.attach(scheduler);
+        metrics.register(SimulationMetrics.DEFAULT_NAME);
+
+        world.setMetrics(metrics);
     }
 
     /**
@@ -90,6 +284,13 @@ public class Main extends Application {
      * @param args - arguments passed to the program.
      */
     public static void main(String[] args) {
+        startConfigWatcher();
+        startMetrics();
+        startJournal();
+        startTelemetry();
+        startSharedState();
+        startTelemetryServer();
+        startPublisher();
         spawnWorldLoop();
 
         launch(args);
@@ -1,8 +1,7 @@
 package glideme;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
-import javafx.application.Platform;
-import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
@@ -17,12 +16,29 @@ import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
 
+import glideme.metrics.SimulationMetrics;
+import glideme.stream.SnapshotSubscriber;
+import glideme.stream.StatePublisher;
+import glideme.telemetry.TelemetryReader;
+
 import java.net.URL;
 import java.util.EventListener;
 import java.util.ResourceBundle;
 
 public class MainWindow extends VBox implements Initializable {
-    private static World world;
+    private World world;
+
+    /**
+     * Metrics the rendered frames are reported to (or null).
+     */
+    private SimulationMetrics metrics;
+
+    /**
+     * Publisher of the world's ticks to render from (or null to read the world directly), and the renderer's
+     * subscription to it.
+     */
+    private StatePublisher publisher;
+    private SnapshotSubscriber frames = null;
 
     @FXML
     private Rectangle trolley;
@@ -38,7 +54,28 @@ public class MainWindow extends VBox implements Initializable {
     @FXML
     private Pane pane;
 
-    private Task task=null;
+    /**
+     * Has the world been started already?
+     */
+    private boolean worldStarted = false;
+
+    /**
+     * Draws a frame every time the screen is refreshed (on the GUI thread).
+     */
+    private AnimationTimer renderer = null;
+
+    /**
+     * The latest state read from the world, and the two most recent distinct states the renderer interpolates
+     * between. Only accessed from the GUI thread.
+     */
+    private final TelemetryReader.Record latest = new TelemetryReader.Record();
+    private final World.CraneState previous = new World.CraneState(),
+            current = new World.CraneState();
+
+    /**
+     * Frame time (in nanoseconds) at which the current state was first seen.
+     */
+    private long currentSeenAt = 0;
 
     private double lineLenght;
     private double railLength;
@@ -46,8 +83,26 @@ public class MainWindow extends VBox implements Initializable {
     public MainWindow() {}
 
     public MainWindow(World world)
+    {
+        this(world, null);
+    }
+
+    public MainWindow(World world, SimulationMetrics metrics)
+    {
+        this(world, metrics, null);
+    }
+
+    /**
+     * @param world - the world to render and to send the crane's destinations to.
+     * @param metrics - metrics the rendered frames are reported to (or null).
+     * @param publisher - publisher of the world's ticks to render from, a tick per frame at most, each asked
+     *                  for a frame before it's drawn (or null to read the world's state directly).
+     */
+    public MainWindow(World world, SimulationMetrics metrics, StatePublisher publisher)
     {
         this.world = world;
+        this.metrics = metrics;
+        this.publisher = publisher;
     }
 
     @Override
@@ -56,57 +111,82 @@ public class MainWindow extends VBox implements Initializable {
         lineLenght = Math.abs(rope.getStartY()) + Math.abs(rope.getEndY());
         railLength = rail.getEndX() - rail.getStartX();
 
+        world.getCraneState(current);
+        previous.set(current);
+
+        if (publisher != null) {
+            // Only the newest tick matters for rendering.
+            frames = new SnapshotSubscriber(current, world.getDestination());
+            publisher.subscribe(frames, StatePublisher.Conflation.LATEST);
+        }
+
+        renderer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                drawFrame(now);
+            }
+        };
+        renderer.start();
+
         pane.setOnMouseClicked(new EventHandler<MouseEvent>() {
             @Override
             public void handle(MouseEvent event) {
-                if(task==null)
-                {
-                    task = new Task() {
-                        @Override
-                        protected Object call() throws Exception {
-                            Main.runWorld(true);
-
-                            while (true) {
-                                //  System.out.println(task.isCancelled());
-                                if (!task.isCancelled()) {
-                                    Platform.runLater(new Runnable() {
-                                        public void run() {
-                                            drawWindow();
-                                        }
-                                    });
-                                    try {
-                                        Thread.sleep(world.TIME_QUANTUM);
-                                    } catch (InterruptedException _) {
-                                        return null;
-                                    }
-                                } else
-                                    return null;
-                            }
-                        }
-                    };
-
-                    Thread th = new Thread(task);
-                    th.setDaemon(true);
-                    th.start();
+                if (!worldStarted) {
+                    worldStarted = true;
+                    Main.runWorld(true);
                 }
 
-                if (task != null && !task.isCancelled()) {
-                    double x = event.getSceneX();
-                    if (x > railLength) {
-                        x = railLength;
-                    }
-
-                    world.setDestination((x / railLength) * (double) World.TRACK_LENGTH);
+                double x = event.getSceneX();
+                if (x > railLength) {
+                    x = railLength;
                 }
+
+                world.setDestination((x / railLength) * (double) World.TRACK_LENGTH);
             }
         });
     }
 
-    public void drawWindow() {
-        final World.CraneState state = world.getCraneState();
-        final double pos = state.position,
-                angle = state.angle;
+    /**
+     * Draw a frame, interpolating between the two most recent simulation states.
+     *
+     * The simulation runs independently of the screen refresh, so a frame usually falls between ticks.
+     * Instead of jumping to the latest state, the crane is moved from the previous state to the current one
+     * over the time those states were apart in the simulation, which keeps the motion smooth at the cost of
+     * lagging one frame behind.
+     *
+     * @param now - frame time in nanoseconds.
+     */
+    private void drawFrame(final long now) {
+        if (frames == null || !frames.poll(latest)) {
+            world.getCraneState(latest);
+        }
+
+        if (metrics != null) {
+            metrics.frameRendered(now, latest.tick);
+        }
+
+        if (latest.tick != current.tick) {
+            previous.set(current);
+            current.set(latest);
+            currentSeenAt = now;
+        }
+
+        // Ticks are as long as the world's physics makes them (not necessarily World.TIME_QUANTUM).
+        final double span = (current.tick - previous.tick) * world.getTimeStep() * 1000000.0;
+        final double alpha = span <= 0 ? 1.0 : Math.min(1.0, (now - currentSeenAt) / span);
+
+        // The window draws a positive angle towards the end of the track, whatever the physics' convention.
+        drawWindow(previous.position + (current.position - previous.position) * alpha,
+                world.getAngleDirection() * (previous.angle + (current.angle - previous.angle) * alpha));
+    }
 
+    /**
+     * Draw the crane.
+     *
+     * @param pos - crane's position.
+     * @param angle - crane's angle, positive when the load is displaced towards the end of the track.
+     */
+    public void drawWindow(final double pos, final double angle) {
         final double trolleyX = rail.getStartX() + (pos/World.TRACK_LENGTH)*railLength;
 
         trolley.setX(trolleyX);
@@ -0,0 +1,334 @@
+package glideme;
+
+/**
+ * Physics of a pendulum (the load on its rope) hanging from a trolley driven along the track.
+ *
+ * The trolley's acceleration a is the regulator's control input, held constant over a tick. The angle is the
+ * rope's lean from the vertical, positive when the load trails behind a trolley accelerating towards the end
+ * of the track - the sense the regulator's angle rules assume (they move the trolley towards the load).
+ * It obeys the equation of a pendulum on an accelerating pivot:
+ *
+ *   theta'' = (a cos(theta) - g sin(theta)) / L - c theta'
+ *
+ * where L is the rope's length and c a (small) damping coefficient. Unlike Physics, which derives the
+ * angle from the change of acceleration alone and needs a 1 ms step, the pendulum is integrated properly, so
+ * worlds can be advanced in steps of 10-50 ms: a pendulum with the default rope swings with a period of about
+ * 1.3 s, which even the longer steps resolve well with RK4 or Dormand-Prince.
+ *
+ * The trolley's motion is integrated exactly (it's uniformly accelerated over a tick), except by the semi-implicit
+ * Euler scheme, which is first order in everything. The angular velocity is kept in this object, so every world
+ * needs its own instance.
+ */
+public class PendulumPhysics implements PlantModel {
+    /**
+     * Integration schemes.
+     */
+    public enum Integrator {
+        /**
+         * Symplectic Euler: velocities first, positions from the new velocities. First order, one evaluation
+         * per tick, doesn't pump energy into the swing the way explicit Euler does.
+         */
+        SEMI_IMPLICIT_EULER,
+
+        /**
+         * Classic fourth order Runge-Kutta, four evaluations per tick.
+         */
+        RK4,
+
+        /**
+         * Dormand-Prince 5(4): adaptive sub-steps within a tick, keeping the local error within the tolerance.
+         */
+        DORMAND_PRINCE
+    }
+
+    /**
+     * Gravitational acceleration in units/msec^2 (on the scale of the track's units, like Physics').
+     */
+    static final double GRAVITY = 9.81/1000.0/12.0;
+
+    /**
+     * Length of the rope in units (matching the proportions of the main window).
+     */
+    public static final double DEFAULT_ROPE_LENGTH = 35.0;
+
+    /**
+     * Damping of the swing in 1/msec (the swing's amplitude halves in roughly a minute).
+     */
+    public static final double DEFAULT_DAMPING = 2e-5;
+
+    /**
+     * Relative tolerance of the adaptive scheme.
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-8;
+
+    /**
+     * Bounds of the factor the adaptive sub-step changes by after each attempt.
+     */
+    private static final double MIN_STEP_FACTOR = 0.2, MAX_STEP_FACTOR = 5.0, SAFETY = 0.9;
+
+    /**
+     * The smallest adaptive sub-step as a fraction of the tick: a sub-step this small is accepted whatever
+     * its error, so that a tick takes at most 1/MIN_SUB_STEP sub-steps.
+     */
+    private static final double MIN_SUB_STEP = 1e-4;
+
+    /**
+     * Dormand-Prince coefficients: stages, the fifth order solution and the difference from the fourth order one.
+     */
+    private static final double
+            A21 = 1.0/5.0,
+            A31 = 3.0/40.0, A32 = 9.0/40.0,
+            A41 = 44.0/45.0, A42 = -56.0/15.0, A43 = 32.0/9.0,
+            A51 = 19372.0/6561.0, A52 = -25360.0/2187.0, A53 = 64448.0/6561.0, A54 = -212.0/729.0,
+            A61 = 9017.0/3168.0, A62 = -355.0/33.0, A63 = 46732.0/5247.0, A64 = 49.0/176.0, A65 = -5103.0/18656.0,
+            B1 = 35.0/384.0, B3 = 500.0/1113.0, B4 = 125.0/192.0, B5 = -2187.0/6784.0, B6 = 11.0/84.0,
+            E1 = 71.0/57600.0, E3 = -71.0/16695.0, E4 = 71.0/1920.0, E5 = -17253.0/339200.0, E6 = 22.0/525.0,
+            E7 = -1.0/40.0;
+
+    private final Integrator integrator;
+    private final double timeStep, ropeLength, damping, tolerance;
+
+    /**
+     * Natural angular frequency of the pendulum (rad/msec), the scale of the angular velocity's error.
+     */
+    private final double omegaScale;
+
+    /**
+     * The load's angular velocity in rad/msec.
+     */
+    private double omega = 0.0;
+
+    /**
+     * The angle being integrated (a working register of the schemes).
+     */
+    private double theta;
+
+    /**
+     * The adaptive scheme's sub-step proposed for the next tick.
+     */
+    private double subStep;
+
+    /**
+     * Buffer the world's state is read into (reused to avoid allocations each tick).
+     */
+    private final World.CraneState state = new World.CraneState();
+
+    /**
+     * Create pendulum physics with the default rope, damping and tolerance.
+     *
+     * @param integrator - the integration scheme.
+     * @param timeStep - length of a tick in milliseconds.
+     *
+     * @throws IllegalArgumentException - when the time step isn't positive.
+     */
+    public PendulumPhysics(final Integrator integrator, final double timeStep) throws IllegalArgumentException {
+        this(integrator, timeStep, DEFAULT_ROPE_LENGTH, DEFAULT_DAMPING, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Create pendulum physics.
+     *
+     * @param integrator - the integration scheme.
+     * @param timeStep - length of a tick in milliseconds.
+     * @param ropeLength - length of the rope in units.
+     * @param damping - damping coefficient of the swing in 1/msec.
+     * @param tolerance - relative tolerance of the adaptive scheme (ignored by the others).
+     *
+     * @throws IllegalArgumentException - when the time step, rope length or tolerance isn't positive,
+     * or the damping is negative.
+     */
+    public PendulumPhysics(final Integrator integrator, final double timeStep, final double ropeLength,
+                           final double damping, final double tolerance)
+            throws IllegalArgumentException
+    {
+        if (!(timeStep > 0) || !(ropeLength > 0) || !(damping >= 0) || !(tolerance > 0)) {
+            throw new IllegalArgumentException("PendulumPhysics: 'timeStep', 'ropeLength' and 'tolerance' "
+                    + "must be positive, 'damping' non-negative!");
+        }
+
+        this.integrator = integrator;
+        this.timeStep = timeStep;
+        this.ropeLength = ropeLength;
+        this.damping = damping;
+        this.tolerance = tolerance;
+        this.omegaScale = Math.sqrt(GRAVITY / ropeLength);
+        this.subStep = timeStep;
+    }
+
+    /**
+     * @return - length of a tick in milliseconds.
+     */
+    @Override
+    public double getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @return - -1: a positive angle means the load trails behind a trolley accelerating towards the end
+     * of the track, i.e. it's displaced towards the track's start.
+     */
+    @Override
+    public int getAngleDirection() {
+        return -1;
+    }
+
+    /**
+     * @return - the integration scheme.
+     */
+    public Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * @return - the load's angular velocity in rad/msec.
+     */
+    public double getAngularVelocity() {
+        return omega;
+    }
+
+    /**
+     * Kick the load (e.g. by a gust of wind), changing its angular velocity at once.
+     * To be called by the thread advancing the world, between ticks.
+     *
+     * @param angularVelocityChange - the change of the angular velocity in rad/msec.
+     */
+    public void disturb(final double angularVelocityChange) {
+        omega += angularVelocityChange;
+    }
+
+    /**
+     * Advance the trolley and the pendulum by one time step.
+     *
+     * @param world - the world that's being updated.
+     */
+    @Override
+    public void update(final World world) {
+        world.getCraneState(state);
+
+        final double a = state.acceleration, h = timeStep;
+        double newPosition, newVelocity;
+
+        theta = state.angle;
+
+        switch (integrator) {
+            case SEMI_IMPLICIT_EULER:
+                newVelocity = state.velocity + a * h;
+                newPosition = state.position + newVelocity * h;
+                omega += angularAcceleration(theta, omega, a) * h;
+                theta += omega * h;
+                break;
+
+            case RK4:
+                newVelocity = state.velocity + a * h;
+                newPosition = state.position + (state.velocity + 0.5 * a * h) * h;
+                stepRungeKutta(a, h);
+                break;
+
+            default:
+                newVelocity = state.velocity + a * h;
+                newPosition = state.position + (state.velocity + 0.5 * a * h) * h;
+                stepDormandPrince(a, h);
+                break;
+        }
+
+        // Position's bounded by track's length.
+        if (newPosition > World.TRACK_LENGTH) {
+            newPosition = World.TRACK_LENGTH;
+        }
+        else if (newPosition < 0) {
+            newPosition = 0;
+        }
+
+        world.updateMotion(newPosition, newVelocity, theta);
+    }
+
+    /**
+     * @return - the load's angular acceleration.
+     */
+    private double angularAcceleration(final double angle, final double angularVelocity, final double a) {
+        return (a * Math.cos(angle) - GRAVITY * Math.sin(angle)) / ropeLength - damping * angularVelocity;
+    }
+
+    /**
+     * Advance the angle and the angular velocity by a classic Runge-Kutta step.
+     */
+    private void stepRungeKutta(final double a, final double h) {
+        final double th = theta, om = omega;
+
+        final double k1t = om, k1w = angularAcceleration(th, om, a);
+        final double k2t = om + 0.5 * h * k1w, k2w = angularAcceleration(th + 0.5 * h * k1t, k2t, a);
+        final double k3t = om + 0.5 * h * k2w, k3w = angularAcceleration(th + 0.5 * h * k2t, k3t, a);
+        final double k4t = om + h * k3w, k4w = angularAcceleration(th + h * k3t, k4t, a);
+
+        theta = th + h / 6.0 * (k1t + 2.0 * k2t + 2.0 * k3t + k4t);
+        omega = om + h / 6.0 * (k1w + 2.0 * k2w + 2.0 * k3w + k4w);
+    }
+
+    /**
+     * Advance the angle and the angular velocity over a tick by adaptive Dormand-Prince sub-steps.
+     * The sub-step size carries over from tick to tick.
+     *
+     * A sub-step whose error can't be estimated (the input or the state isn't finite) is accepted as it is,
+     * so NaN propagates as with the other schemes instead of the sub-step shrinking forever.
+     */
+    private void stepDormandPrince(final double a, final double h) {
+        final double minStep = h * MIN_SUB_STEP;
+        double done = 0.0, step = Math.max(subStep, minStep);
+
+        while (done < h) {
+            final boolean last = step >= h - done;
+            final double dt = last ? h - done : step;
+            final double th = theta, om = omega;
+
+            // theta' = omega, so the angle's slopes are the stages' angular velocities.
+            final double k1t = om, k1w = angularAcceleration(th, om, a);
+
+            final double k2t = om + dt * A21 * k1w;
+            final double k2w = angularAcceleration(th + dt * A21 * k1t, k2t, a);
+
+            final double k3t = om + dt * (A31 * k1w + A32 * k2w);
+            final double k3w = angularAcceleration(th + dt * (A31 * k1t + A32 * k2t), k3t, a);
+
+            final double k4t = om + dt * (A41 * k1w + A42 * k2w + A43 * k3w);
+            final double k4w = angularAcceleration(th + dt * (A41 * k1t + A42 * k2t + A43 * k3t), k4t, a);
+
+            final double k5t = om + dt * (A51 * k1w + A52 * k2w + A53 * k3w + A54 * k4w);
+            final double k5w = angularAcceleration(th + dt * (A51 * k1t + A52 * k2t + A53 * k3t + A54 * k4t),
+                    k5t, a);
+
+            final double k6t = om + dt * (A61 * k1w + A62 * k2w + A63 * k3w + A64 * k4w + A65 * k5w);
+            final double k6w = angularAcceleration(
+                    th + dt * (A61 * k1t + A62 * k2t + A63 * k3t + A64 * k4t + A65 * k5t), k6t, a);
+
+            final double newTheta = th + dt * (B1 * k1t + B3 * k3t + B4 * k4t + B5 * k5t + B6 * k6t);
+            final double newOmega = om + dt * (B1 * k1w + B3 * k3w + B4 * k4w + B5 * k5w + B6 * k6w);
+            final double k7w = angularAcceleration(newTheta, newOmega, a);
+
+            // Local error estimate, scaled per component (the angle in radians, the angular velocity relative
+            // to the pendulum's natural frequency).
+            final double thetaError = dt * (E1 * k1t + E3 * k3t + E4 * k4t + E5 * k5t + E6 * k6t + E7 * newOmega);
+            final double omegaError = dt * (E1 * k1w + E3 * k3w + E4 * k4w + E5 * k5w + E6 * k6w + E7 * k7w);
+            final double error = Math.max(
+                    Math.abs(thetaError) / (tolerance * (1.0 + Math.max(Math.abs(th), Math.abs(newTheta)))),
+                    Math.abs(omegaError) / (tolerance * (omegaScale + Math.max(Math.abs(om), Math.abs(newOmega)))));
+
+            final boolean finite = !Double.isNaN(error) && !Double.isInfinite(error);
+            final double factor = !finite ? 1.0 : error == 0.0 ? MAX_STEP_FACTOR
+                    : Math.min(MAX_STEP_FACTOR, Math.max(MIN_STEP_FACTOR, SAFETY * Math.pow(error, -0.2)));
+
+            if (error <= 1.0 || !finite || dt <= minStep) {
+                done = last ? h : done + dt;
+                theta = newTheta;
+                omega = newOmega;
+
+                // A sub-step cut short at the end of the tick says nothing against the one planned.
+                step = last ? Math.max(step, dt * factor) : dt * factor;
+            }
+            else {
+                step = Math.max(minStep, dt * factor);
+            }
+        }
+
+        subStep = step;
+    }
+}
@@ -2,25 +2,51 @@ package glideme;
 
 /**
  * Responsible for updating the state of the world using laws of physics.
+ *
+ * This is the original model: explicit Euler at a fixed step of World.TIME_QUANTUM, with the angle derived
+ * from the change of acceleration. See PendulumPhysics for a model with real swing dynamics and larger steps.
  */
-public class Physics {
+public class Physics implements PlantModel {
     /**
-     * Previous acceleration value.
+     * Previous acceleration value (kept per instance, so every world needs its own Physics).
      */
-    private static double prevAcceleration = 0.0;
+    private double prevAcceleration = 0.0;
+
+    /**
+     * Buffer the world's state is read into (reused to avoid allocations each tick).
+     */
+    private final World.CraneState state = new World.CraneState();
 
     /**
      * Gravitational acceleration (corrected to work with our custom distance units).
      */
-    private static final double GRAVITY = 9.81/1000.0/12.0;
+    static final double GRAVITY = 9.81/1000.0/12.0;
+
+    /**
+     * @return - length of a tick in milliseconds.
+     */
+    @Override
+    public double getTimeStep() {
+        return World.TIME_QUANTUM;
+    }
+
+    /**
+     * @return - 1: the angle grows as the acceleration falls, a positive one displaces the load towards the end
+     * of the track.
+     */
+    @Override
+    public int getAngleDirection() {
+        return 1;
+    }
 
     /**
      * Determine and set updated values of crane's position and angle.
      *
      * @param world - the world that's being updated.
      */
-    public static void update(World world) {
-        final World.CraneState state = world.getCraneState();
+    @Override
+    public void update(World world) {
+        world.getCraneState(state);
 
         // Update current velocity given current acceleration.
         double newVelocity = state.velocity + state.acceleration * World.TIME_QUANTUM;
@@ -39,8 +65,33 @@ public class Physics {
         final double tanDeltaAlpha = deltaAcc / GRAVITY;
         final double newAngle = state.angle + Math.atan(tanDeltaAlpha);
 
-        world.update(newPosition, newVelocity, null, newAngle);
+        world.updateMotion(newPosition, newVelocity, newAngle);
 
         prevAcceleration = state.acceleration;
     }
+
+    /**
+     * Determine and set updated values of position and angle of a range of cranes of a batch.
+     * Applies exactly the same laws as update(World), sweeping the batch's columns
+     * (the previous acceleration of every crane is kept in the batch, too).
+     *
+     * @param batch - the batch that's being updated.
+     * @param from - index of the first crane to update.
+     * @param to - index past the last crane to update.
+     */
+    public static void update(final WorldBatch batch, final int from, final int to) {
+        final double[] position = batch.position, velocity = batch.velocity, acceleration = batch.acceleration,
+                angle = batch.angle, prevAcceleration = batch.prevAcceleration;
+
+        for (int i = from; i < to; ++i) {
+            final double newVelocity = velocity[i] + acceleration[i] * World.TIME_QUANTUM;
+
+            final double newPosition = position[i] + newVelocity * World.TIME_QUANTUM;
+
+            velocity[i] = newVelocity;
+            position[i] = newPosition > World.TRACK_LENGTH ? World.TRACK_LENGTH : newPosition < 0 ? 0 : newPosition;
+            angle[i] += Math.atan((prevAcceleration[i] - acceleration[i]) / GRAVITY);
+            prevAcceleration[i] = acceleration[i];
+        }
+    }
 }
@@ -0,0 +1,104 @@
+package glideme;
+
+/**
+ * Controls the crane by a PID loop on the distance to the destination, as a cheap alternative to the fuzzy
+ * Regulator.
+ *
+ * Like the regulator, it determines the velocity the crane should have and accelerates towards it: the target
+ * velocity is the PID term of the distance (limited to maxVelocity), corrected by a term proportional
+ * to the angle to counter the swing. The acceleration is the difference between the target velocity
+ * and the current one divided by accelTime. A new destination restarts the integral and isn't taken
+ * for a derivative of the distance.
+ */
+public class PidController implements Controller {
+    /**
+     * Default gains (per millisecond, distances in track units), tuned by a sweep over the scenarios
+     * of ControllerComparison to settle quickly both with Physics (without overshoot) and with PendulumPhysics
+     * (overshooting by about half a unit). The angle gain is negative to damp the swing of both models.
+     *
+     * By default the controller is a PD one: neither model has friction or a bias for an integral term to remove,
+     * it would only add overshoot. The integral (with anti-windup) is there for plants that need it.
+     */
+    public static final double DEFAULT_PROPORTIONAL = 0.004, DEFAULT_INTEGRAL = 0.0, DEFAULT_DERIVATIVE = 2.0,
+            DEFAULT_ANGLE = -0.1;
+
+    /**
+     * Default limit of the target velocity (units per millisecond) and time to reach it (milliseconds).
+     */
+    public static final double DEFAULT_MAX_VELOCITY = 0.1, DEFAULT_ACCEL_TIME = 500.0;
+
+    private final double proportional, integral, derivative, angleGain, maxVelocity, accelTime;
+
+    /**
+     * Buffer the world's state is read into (reused to avoid allocations each tick).
+     */
+    private final World.CraneState state = new World.CraneState();
+
+    /**
+     * Integral of the distance, the distance and the destination at the previous tick (NaN before the first one).
+     */
+    private double integratedDistance = 0.0, previousDistance = Double.NaN, previousDestination = Double.NaN;
+
+    /**
+     * Create a controller with the default gains.
+     */
+    public PidController() {
+        this(DEFAULT_PROPORTIONAL, DEFAULT_INTEGRAL, DEFAULT_DERIVATIVE, DEFAULT_ANGLE, DEFAULT_MAX_VELOCITY,
+                DEFAULT_ACCEL_TIME);
+    }
+
+    /**
+     * Create a controller.
+     *
+     * @param proportional - gain of the distance.
+     * @param integral - gain of the distance's integral.
+     * @param derivative - gain of the distance's derivative.
+     * @param angleGain - gain of the angle.
+     * @param maxVelocity - the largest target velocity (either way).
+     * @param accelTime - time to reach the target velocity, in milliseconds.
+     *
+     * @throws IllegalArgumentException - when the velocity limit or the acceleration time isn't positive.
+     */
+    public PidController(final double proportional, final double integral, final double derivative,
+                         final double angleGain, final double maxVelocity, final double accelTime)
+            throws IllegalArgumentException
+    {
+        if (!(maxVelocity > 0) || !(accelTime > 0)) {
+            throw new IllegalArgumentException("PidController: 'maxVelocity' and 'accelTime' must be positive!");
+        }
+
+        this.proportional = proportional;
+        this.integral = integral;
+        this.derivative = derivative;
+        this.angleGain = angleGain;
+        this.maxVelocity = maxVelocity;
+        this.accelTime = accelTime;
+    }
+
+    @Override
+    public void update(final World world, final double destination) {
+        world.getCraneState(state);
+
+        final double h = world.getTimeStep();
+        final double distance = destination - state.position;
+
+        // A new destination is a step of the distance, not its derivative, and the old integral doesn't apply.
+        if (destination != previousDestination) {
+            previousDestination = destination;
+            previousDistance = distance;
+            integratedDistance = 0.0;
+        }
+        final double change = distance - previousDistance;
+        previousDistance = distance;
+
+        double target = proportional * distance + integral * integratedDistance + derivative * change / h;
+
+        // Anti-windup: the integral only grows while the target isn't limited.
+        if (Math.abs(target) < maxVelocity) {
+            integratedDistance += distance * h;
+        }
+        target = Math.max(-maxVelocity, Math.min(maxVelocity, target)) + angleGain * state.angle;
+
+        world.updateAcceleration((target - state.velocity) / accelTime);
+    }
+}
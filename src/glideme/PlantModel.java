@@ -0,0 +1,27 @@
+package glideme;
+
+/**
+ * Model of the crane's physics: advances the crane's motion by one tick, given the acceleration
+ * set by the controller.
+ *
+ * Implementations may keep state between ticks, so every world needs its own instance.
+ */
+public interface PlantModel {
+    /**
+     * @return - length of a tick in milliseconds.
+     */
+    double getTimeStep();
+
+    /**
+     * @return - the direction along the track a positive angle displaces the load in: 1 towards the end
+     * of the track, -1 towards its start (models derive the angle differently, see World.CraneState.angle).
+     */
+    int getAngleDirection();
+
+    /**
+     * Determine and set updated values of the crane's position, velocity and angle.
+     *
+     * @param world - the world that's being updated.
+     */
+    void update(World world);
+}
@@ -0,0 +1,100 @@
+package glideme;
+
+/**
+ * Tolerances deciding when a crane has settled at its destination, so that simulating it further
+ * would only burn CPU.
+ *
+ * A crane is settled when its distance from the destination, velocity, angle and acceleration are all within
+ * their tolerances. Note that the fuzzy regulator brings the crane to rest slightly off the destination
+ * (up to about 0.66 units) and with a residual angle (up to about 0.014 radians), which the default
+ * tolerances allow for; tighter ones may never be met.
+ *
+ * Instances are immutable.
+ */
+public class Quiescence {
+    /**
+     * Tolerances matching the regulator's resting accuracy.
+     */
+    public static final Quiescence DEFAULT = new Quiescence(1.0, 1e-6, 0.02, 1e-6);
+
+    private final double distance, velocity, angle, acceleration;
+
+    /**
+     * Create quiescence tolerances.
+     *
+     * @param distance - tolerated distance from the destination, in units.
+     * @param velocity - tolerated velocity, in units/msec.
+     * @param angle - tolerated angle, in radians.
+     * @param acceleration - tolerated acceleration, in units/msec^2.
+     *
+     * @throws IllegalArgumentException - when any of the tolerances is negative or NaN.
+     */
+    public Quiescence(final double distance, final double velocity, final double angle, final double acceleration)
+            throws IllegalArgumentException
+    {
+        if (!(distance >= 0) || !(velocity >= 0) || !(angle >= 0) || !(acceleration >= 0)) {
+            throw new IllegalArgumentException("Quiescence: tolerances must not be negative!");
+        }
+
+        this.distance = distance;
+        this.velocity = velocity;
+        this.angle = angle;
+        this.acceleration = acceleration;
+    }
+
+    /**
+     * Check whether a crane has settled.
+     *
+     * @return - true if all the quantities are within their tolerances.
+     */
+    public boolean isSettled(final double destination, final double position, final double velocity,
+                             final double acceleration, final double angle) {
+        return Math.abs(destination - position) <= this.distance
+                && Math.abs(velocity) <= this.velocity
+                && Math.abs(angle) <= this.angle
+                && Math.abs(acceleration) <= this.acceleration;
+    }
+
+    /**
+     * Check whether a world's crane has settled at the world's current destination. Doesn't allocate.
+     *
+     * @param world - the world to check.
+     * @param scratch - state object to read the crane's state into.
+     *
+     * @return - true if all the quantities are within their tolerances.
+     */
+    public boolean isSettled(final World world, final World.CraneState scratch) {
+        world.getCraneState(scratch);
+
+        return isSettled(world.getDestination(), scratch.position, scratch.velocity, scratch.acceleration,
+                scratch.angle);
+    }
+
+    /**
+     * @return - tolerated distance from the destination.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return - tolerated velocity.
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return - tolerated angle.
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * @return - tolerated acceleration.
+     */
+    public double getAcceleration() {
+        return acceleration;
+    }
+}
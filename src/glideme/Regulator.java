@@ -1,153 +1,148 @@
 package glideme;
 
-import glideme.fuzzy.FuzzySet;
-
-import java.util.*;
+import glideme.fuzzy.InferenceEngine;
 
 /**
  * Responsible for controlling the crane using fuzzy-logical rules.
+ *
+ * Each world owns its own regulator instance, so that independent worlds can be updated concurrently.
+ * The rules and their parameters come from a RegulatorConfig, which can be replaced while the world is running.
  */
-public class Regulator {
+public class Regulator implements Controller {
     /**
-     * Linguistic variables describing the regulated system:
-     *  - DN, DZ, DP - distance negative/zero/positive,
-     *  - AN, AZ, AP - angle negative/zero/positive,
-     *  - VN, VZ, VP - velocity negative/zero/positive.
+     * The configuration in effect and the inference engine's scratch memory for it, swapped as a whole
+     * (see setConfig). The workspaces are only ever used by the thread updating this regulator's world(s).
      */
-    private static final FuzzySet DN = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -100.0, -25.0, 0.0),
-        DZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -25.0, 0.0, 25.0),
-        DP = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, 25.0, 100.0),
-        AN = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -Math.PI/2.0, -Math.PI/6.0, 0.0),
-        AZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -Math.PI/6.0, 0.0, Math.PI/6.0),
-        AP = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, Math.PI/6.0, Math.PI/2.0),
-        VN = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, 0.5/6.0, 1.0/6.0),
-        VZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -0.5/6.0, 0.0, 0.5/6.0),
-        VP = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -1.0/6.0, -0.5/6.0, 0.0);
+    private static final class Active {
+        final RegulatorConfig config;
+        final InferenceEngine.Workspace workspace;
+
+        /**
+         * Scratch memory for batches, created along with the rest once the regulator has regulated a batch
+         * (most regulators never do), or by the first batch update.
+         */
+        InferenceEngine.BatchWorkspace batchWorkspace;
+
+        Active(final RegulatorConfig config, final boolean batched) {
+            this.config = config;
+            workspace = config.getEngine().newWorkspace();
+            batchWorkspace = batched ? config.getEngine().newBatchWorkspace(WorldBatch.BLOCK) : null;
+        }
+    }
 
     /**
-     * Minimal acceleration time modifier in milliseconds.
+     * Published by setConfig() (on any thread), read once per update.
      */
-    private static final double MIN_ACCEL_TIME = 500.0;
+    private volatile Active active;
 
     /**
-     * Calculate the maximum among the given values.
-     * (Created to compensate for Java Math's own max taking only two arguments...).
-     *
-     * @param val - first value to compare (obligatory).
-     * @param others - other values to compare (optional).
-     *
-     * @return - maximum of the doubles.
+     * The configuration used by the last update(World, double) (owned by the thread updating the world).
+     */
+    private RegulatorConfig usedConfig;
+
+    /**
+     * Buffer the world's state is read into (reused to avoid allocations each tick).
      */
-    private static double max(final Double val, final Double... others)
-    {
-        return others.length == 0? val : Math.max(val, Collections.max(Arrays.asList(others)));
+    private final World.CraneState inputState = new World.CraneState();
+
+    /**
+     * Inputs of the inference engine: distance and angle.
+     */
+    private final double[] inputs = new double[2];
+
+    /**
+     * Columns used when regulating batches (allocated on first use, as most regulators never need them):
+     * inputs of the inference engine (distances and angles) and target velocities.
+     */
+    private double[][] batchInputs;
+    private double[] batchTargets;
+
+    /**
+     * Has the regulator regulated a batch (so that setConfig() prepares the batch workspace too)?
+     */
+    private volatile boolean batched = false;
+
+    /**
+     * Precomputed control surface used instead of the fuzzy reasoning (or null to reason every tick).
+     */
+    private final ControlSurface surface;
+
+    /**
+     * Create a regulator running the fuzzy reasoning every tick.
+     */
+    public Regulator() {
+        this(RegulatorConfig.DEFAULT, null);
     }
 
     /**
-     * Calculate the minimum among the given values.
-     *
-     * @param val - first value to compare (obligatory).
-     * @param others - other values to compare (optional).
+     * Create a regulator interpolating a precomputed control surface (see ControlSurface.sample).
      *
-     * @return - minimum of the doubles.
+     * @param surface - the surface (or null to run the fuzzy reasoning every tick).
      */
-    private static double min(final Double val, final Double... others)
-    {
-        return others.length == 0? val : Math.min(val, Collections.min(Arrays.asList(others)));
+    public Regulator(final ControlSurface surface) {
+        this(RegulatorConfig.DEFAULT, surface);
     }
 
     /**
-     * Calculate the sum of the given values.
+     * Create a regulator with the given configuration.
      *
-     * @param values - other values to accumulate (optional).
-     *
-     * @return - sum of the doubles.
+     * @param config - the configuration.
+     * @param surface - a precomputed control surface used instead of the configuration's fuzzy reasoning
+     *                (or null to reason every tick).
      */
-    private static double sum(final double... values)
-    {
-        double sum = 0;
+    public Regulator(final RegulatorConfig config, final ControlSurface surface) {
+        this.surface = surface;
 
-        for (final double v : values) {
-            sum += v;
-        }
-
-        return sum;
+        active = new Active(config, false);
     }
 
     /**
-     * Return degrees of membership of each of the given fuzzy sets.
+     * Switch to another configuration. May be called from any thread while the world is running: the regulator
+     * picks the new configuration up at the start of its next update, and every update uses a single one.
+     * The scratch memory for the new configuration (including the batch workspace, once the regulator has
+     * regulated a batch) is allocated here, so that the swap costs the updating thread nothing but a reference read.
      *
-     * @param value - the value to check membership for.
-     * @param firstSet - the first fuzzy set to check against (obligatory).
-     * @param otherSets - any other fuzzy sets to check (optional).
+     * A control surface the regulator was created with keeps being used for the target velocity
+     * (only the acceleration time changes); sample a new one from the new configuration if needed.
      *
-     * @return - an array of doubles between 0.0 and 1.0 determining the degrees of membership of the given set
-     * (in order of occurrence).
+     * @param config - the new configuration (compiled already).
      */
-    private static double[] fuzzify(final double value, final FuzzySet firstSet, final FuzzySet... otherSets) {
-        double[] mship = new double[1 + otherSets.length];
-
-        mship[0] = firstSet.grade(value);
-
-        int i = 0;
-        for (final FuzzySet set : otherSets) {
-            mship[++i] = set.grade(value);
-        }
+    public void setConfig(final RegulatorConfig config) {
+        active = new Active(config, batched);
+    }
 
-        return mship;
+    /**
+     * @return - the configuration in effect.
+     */
+    public RegulatorConfig getConfig() {
+        return active.config;
     }
 
     /**
-     * Perform knowledge-based reasoning and return degrees of membership of the output velocity
-     * to the three fuzzy sets (in order): VN, VZ and VP.
-     *
-     * @param distMship - an array of degrees of membership of distance to DN, DZ and DN (in order).
-     * @param angleMship - an array of degrees of membership of angle to AN, AZ and AN (in order).
-     *
-     * @return - an array of degrees of membership of velocity to VN, VZ and VP (in order).
-     */
-    private static double[] reason(final double[] distMship, final double[] angleMship) {
-        double[] velMship = {0.0, 0.0, 0.0};
-
-        // Negative velocity (VN) membership:
-        velMship[0] = max(
-                min(distMship[0], angleMship[0]), // min(DN, AN)
-                min(distMship[1], angleMship[0]), // min(DZ, AN)
-                min(distMship[2], angleMship[0]), // min(DP, AN)
-                min(distMship[2], angleMship[1])  // min(DP, AZ)
-        );
-
-        // Zero velocity (VZ) membership:
-        velMship[1] = min(distMship[1], angleMship[1]); // min(DZ, AZ)
-
-        // Positive velocity (VP) membership:
-        velMship[2] = max(
-                min(distMship[0], angleMship[1]), // min(DN, AZ)
-                min(distMship[0], angleMship[2]), // min(DN, AP)
-                min(distMship[1], angleMship[2]), // min(DZ, AP)
-                min(distMship[2], angleMship[2])  // min(DP, AP)
-        );
-
-        return velMship;
+     * @return - the configuration the last update(World, double) used (it may have been replaced since).
+     * Only meant for the thread updating the world, e.g. from a TickListener (null before the first update).
+     */
+    public RegulatorConfig getUsedConfig() {
+        return usedConfig;
     }
 
     /**
-     * Find the most representative value according to the given degrees of membership of velocity sets.
-     * This is done by calculating a sum of representative members of the fuzzy sets weighted by membership degrees.
+     * Determine the velocity the crane should have using the fuzzy rules (regardless of the surface).
      *
-     * @param velocityMembership - an array of three degrees of membership of the output value of the sets:
-     * VN, VZ, VP (in order).
+     * @param distance - distance from the crane to its destination.
+     * @param angle - crane's angle.
      *
-     * @return - a new, defuzzified velocity value.
+     * @return - the target velocity.
      */
-    private static double defuzzify(final double[] velocityMembership) {
-        // Determine the singletons and weigh them...
-        final double vnVal = VN.peakValue() * velocityMembership[0],
-                vzVal = VZ.peakValue() * velocityMembership[1],
-                vpVal = VP.peakValue() * velocityMembership[2];
+    public double targetVelocity(final double distance, final double angle) {
+        return targetVelocity(active, distance, angle);
+    }
+
+    private double targetVelocity(final Active current, final double distance, final double angle) {
+        inputs[0] = distance;
+        inputs[1] = angle;
 
-        // ... and find the weighted average of them.
-        return sum(vnVal, vzVal, vpVal)/sum(velocityMembership);
+        return current.config.getEngine().evaluate(inputs, current.workspace);
     }
 
     /**
@@ -155,24 +150,99 @@ public class Regulator {
      *
      * @param world - the world that's being updated.
      */
-    public static void update(World world) {
-        World.CraneState inputState = world.getCraneState();
+    public void update(World world) {
+        update(world, world.getDestination());
+    }
 
-        final double distance = world.getDestination() - inputState.position;
+    /**
+     * Uses the given destination, current position and angle as input. Updates the velocity.
+     *
+     * @param world - the world that's being updated.
+     * @param destination - the destination in effect for this tick.
+     */
+    @Override
+    public void update(final World world, final double destination) {
+        // The configuration is latched for the whole update, even if it's swapped concurrently.
+        final Active current = active;
+        usedConfig = current.config;
 
-        // Fuzzification:
-        double[] distMship = fuzzify(distance, DN, DZ, DP);
-        double[] angleMship = fuzzify(inputState.angle, AN, AZ, AP);
+        world.getCraneState(inputState);
 
-        // Reasoning:
-        double[] velMship = reason(distMship, angleMship);
+        final double distance = destination - inputState.position;
+        final double angle = measureAngle(inputState.angle);
 
-        // Defuzzification:
-        double destVelocity = defuzzify(velMship);
+        // Fuzzification, reasoning and defuzzification (or their precomputed results):
+        double destVelocity = surface != null
+                ? surface.targetVelocity(distance, angle)
+                : targetVelocity(current, distance, angle);
 
         // We cannot affect velocity directly, we only control acceleration.
-        double newAccelleration = (destVelocity - inputState.velocity)/MIN_ACCEL_TIME;
+        double newAccelleration = (destVelocity - inputState.velocity)/current.config.getMinAccelTime();
 
-        world.update(null, null, newAccelleration, null);
+        world.updateAcceleration(newAccelleration);
+    }
+
+    /**
+     * The angle sensor: how the crane's actual angle is seen by the updates (of a world or of a batch).
+     * Reads it exactly, subclasses may model noise or bias. A batch's cranes are measured in order of their index.
+     *
+     * @param angle - crane's actual angle.
+     *
+     * @return - the measured angle.
+     */
+    protected double measureAngle(final double angle) {
+        return angle;
+    }
+
+    /**
+     * Update accelerations of a range of cranes of a batch.
+     * Gives exactly the same results as update(World) called for each of the cranes.
+     *
+     * @param batch - the batch that's being updated.
+     * @param from - index of the first crane to update.
+     * @param to - index past the last crane to update.
+     */
+    public void update(final WorldBatch batch, final int from, final int to) {
+        // The configuration is latched for the whole update, even if it's swapped concurrently.
+        final Active current = active;
+        final InferenceEngine engine = current.config.getEngine();
+        final double minAccelTime = current.config.getMinAccelTime();
+
+        if (batchInputs == null) {
+            batchInputs = new double[2][WorldBatch.BLOCK];
+            batchTargets = new double[WorldBatch.BLOCK];
+            batched = true;
+        }
+        if (current.batchWorkspace == null) {
+            // The first batch update (or one racing with the setConfig() right before it).
+            current.batchWorkspace = engine.newBatchWorkspace(WorldBatch.BLOCK);
+        }
+        final InferenceEngine.BatchWorkspace batchWorkspace = current.batchWorkspace;
+
+        final double[] position = batch.position, velocity = batch.velocity, acceleration = batch.acceleration,
+                angle = batch.angle, destination = batch.destination;
+        final double[] distances = batchInputs[0], angles = batchInputs[1];
+
+        for (int block = from; block < to; block += WorldBatch.BLOCK) {
+            final int n = Math.min(WorldBatch.BLOCK, to - block);
+
+            for (int i = 0; i < n; ++i) {
+                distances[i] = destination[block + i] - position[block + i];
+                angles[i] = measureAngle(angle[block + i]);
+            }
+
+            if (surface != null) {
+                for (int i = 0; i < n; ++i) {
+                    batchTargets[i] = surface.targetVelocity(distances[i], angles[i]);
+                }
+            }
+            else {
+                engine.evaluate(batchInputs, batchTargets, n, batchWorkspace);
+            }
+
+            for (int i = 0; i < n; ++i) {
+                acceleration[block + i] = (batchTargets[i] - velocity[block + i])/minAccelTime;
+            }
+        }
     }
 }
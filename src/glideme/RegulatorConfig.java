@@ -0,0 +1,430 @@
+package glideme;
+
+import glideme.fuzzy.Defuzzification;
+import glideme.fuzzy.FuzzySet;
+import glideme.fuzzy.InferenceEngine;
+import glideme.fuzzy.LinguisticVariable;
+import glideme.fuzzy.RuleBase;
+import glideme.fuzzy.SNorm;
+import glideme.fuzzy.TNorm;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Everything a regulator's behaviour depends on: the fuzzy sets and rules mapping (distance, angle) to a target
+ * velocity, the operators used to evaluate them and the acceleration time modifier.
+ *
+ * A configuration is immutable and compiles its rule base into an inference engine when it's created,
+ * so it can be prepared on any thread and then handed to running regulators (see Regulator.setConfig),
+ * which switch to it between two ticks without any further work.
+ *
+ * Configurations are stored as properties files:
+ *
+ *   minAccelTime = 500.0
+ *   tnorm = MIN
+ *   snorm = MAX
+ *   defuzzification = WEIGHTED_AVERAGE
+ *   distance.terms = DN, DZ, DP
+ *   distance.DN = FallingSlope, -100.0, -25.0, 0.0
+ *   ...
+ *   velocity.range = -0.2, 0.2
+ *   rule.1 = DN AN -> VN
+ *   ...
+ *
+ * The variables are always called distance, angle (the inputs) and velocity (the output); each term is a membership
+ * type followed by start, edge and end (-Infinity/Infinity for an unbounded piece). A variable's range is optional
+ * (centroid defuzzification needs the output's). Rules are numbered from 1 without gaps, a * stands for an input
+ * the rule doesn't depend on.
+ */
+public class RegulatorConfig {
+    /**
+     * Names of the variables.
+     */
+    public static final String DISTANCE = "distance", ANGLE = "angle", VELOCITY = "velocity";
+
+    /**
+     * Default acceleration time modifier in milliseconds.
+     */
+    public static final double DEFAULT_MIN_ACCEL_TIME = 500.0;
+
+    /**
+     * The configuration the regulators are created with:
+     *  - DN, DZ, DP - distance negative/zero/positive,
+     *  - AN, AZ, AP - angle negative/zero/positive,
+     *  - VN, VZ, VP - velocity negative/zero/positive.
+     *
+     * The rules are Sugeno-style: strengths are combined with min, rules sharing the consequent with max,
+     * and the output is the average of the velocity sets' singletons weighted by their activations.
+     */
+    public static final RegulatorConfig DEFAULT;
+
+    static {
+        final FuzzySet DN = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -100.0, -25.0, 0.0),
+            DZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -25.0, 0.0, 25.0),
+            DP = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, 25.0, 100.0),
+            AN = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -Math.PI/2.0, -Math.PI/6.0, 0.0),
+            AZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -Math.PI/6.0, 0.0, Math.PI/6.0),
+            AP = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, Math.PI/6.0, Math.PI/2.0),
+            VN = new FuzzySet(FuzzySet.MembershipType.RisingSlope, 0.0, 0.5/6.0, 1.0/6.0),
+            VZ = new FuzzySet(FuzzySet.MembershipType.Pyramidal, -0.5/6.0, 0.0, 0.5/6.0),
+            VP = new FuzzySet(FuzzySet.MembershipType.FallingSlope, -1.0/6.0, -0.5/6.0, 0.0);
+
+        DEFAULT = new RegulatorConfig(new RuleBase(
+                new LinguisticVariable[] {
+                        new LinguisticVariable(DISTANCE).addTerm("DN", DN).addTerm("DZ", DZ).addTerm("DP", DP),
+                        new LinguisticVariable(ANGLE).addTerm("AN", AN).addTerm("AZ", AZ).addTerm("AP", AP)
+                },
+                new LinguisticVariable(VELOCITY).addTerm("VN", VN).addTerm("VZ", VZ).addTerm("VP", VP))
+                // Negative velocity (VN):
+                .addRule("VN", "DN", "AN")
+                .addRule("VN", "DZ", "AN")
+                .addRule("VN", "DP", "AN")
+                .addRule("VN", "DP", "AZ")
+                // Zero velocity (VZ):
+                .addRule("VZ", "DZ", "AZ")
+                // Positive velocity (VP):
+                .addRule("VP", "DN", "AZ")
+                .addRule("VP", "DN", "AP")
+                .addRule("VP", "DZ", "AP")
+                .addRule("VP", "DP", "AP"),
+                TNorm.MIN, SNorm.MAX, Defuzzification.WEIGHTED_AVERAGE, DEFAULT_MIN_ACCEL_TIME);
+    }
+
+    private final RuleBase rules;
+    private final TNorm and;
+    private final SNorm or;
+    private final Defuzzification defuzzification;
+
+    /**
+     * Acceleration time modifier in milliseconds: the crane is accelerated so that it would reach
+     * the target velocity in this time.
+     */
+    private final double minAccelTime;
+
+    /**
+     * The rules compiled.
+     */
+    private final InferenceEngine engine;
+
+    /**
+     * Create a configuration, compiling the rules.
+     *
+     * @param rules - rules with two inputs (distance to the destination and angle) and the target velocity
+     *              as the output. Must not be modified afterwards.
+     * @param and - t-norm combining antecedents.
+     * @param or - s-norm aggregating rules with the same consequent.
+     * @param defuzzification - method of computing the target velocity.
+     * @param minAccelTime - acceleration time modifier in milliseconds.
+     *
+     * @throws IllegalArgumentException - when the rules don't have two inputs, the acceleration time isn't positive,
+     * or the rules can't be compiled.
+     */
+    public RegulatorConfig(final RuleBase rules, final TNorm and, final SNorm or,
+                           final Defuzzification defuzzification, final double minAccelTime)
+            throws IllegalArgumentException
+    {
+        if (rules.getInputCount() != 2) {
+            throw new IllegalArgumentException("RegulatorConfig: expected 2 inputs (distance and angle), got "
+                    + rules.getInputCount() + "!");
+        }
+        if (!(minAccelTime > 0.0) || Double.isInfinite(minAccelTime)) {
+            throw new IllegalArgumentException("RegulatorConfig: 'minAccelTime' must be positive and finite!");
+        }
+
+        this.rules = rules;
+        this.and = and;
+        this.or = or;
+        this.defuzzification = defuzzification;
+        this.minAccelTime = minAccelTime;
+
+        engine = rules.compile(and, or, defuzzification);
+    }
+
+    /**
+     * Load a configuration from a properties file.
+     *
+     * @param file - the file.
+     *
+     * @return - the configuration (compiled).
+     *
+     * @throws IOException - when the file can't be read or isn't a valid configuration.
+     */
+    public static RegulatorConfig load(final Path file) throws IOException {
+        final Properties properties = new Properties();
+        try (final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        try {
+            return fromProperties(properties);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("RegulatorConfig: " + file + " is not a valid configuration ("
+                    + exception.getMessage() + ")", exception);
+        }
+    }
+
+    /**
+     * Create a configuration from properties (in the format of the configuration files).
+     *
+     * @param properties - the properties.
+     *
+     * @return - the configuration (compiled).
+     *
+     * @throws IllegalArgumentException - when a property is missing or malformed.
+     */
+    public static RegulatorConfig fromProperties(final Properties properties) throws IllegalArgumentException {
+        final LinguisticVariable distance = parseVariable(properties, DISTANCE),
+                angle = parseVariable(properties, ANGLE),
+                velocity = parseVariable(properties, VELOCITY);
+
+        final RuleBase rules = new RuleBase(new LinguisticVariable[] { distance, angle }, velocity);
+        for (int r = 1; properties.getProperty("rule." + r) != null; ++r) {
+            final String rule = properties.getProperty("rule." + r).trim();
+
+            final int arrow = rule.indexOf("->");
+            final String[] antecedents = arrow < 0 ? new String[0] : rule.substring(0, arrow).trim().split("\\s+");
+            if (antecedents.length != 2) {
+                throw new IllegalArgumentException("RegulatorConfig: rule." + r
+                        + " must look like '<distance term> <angle term> -> <velocity term>'!");
+            }
+
+            for (int i = 0; i < antecedents.length; ++i) {
+                if (antecedents[i].equals("*")) {
+                    antecedents[i] = null;
+                }
+            }
+            rules.addRule(rule.substring(arrow + 2).trim(), antecedents);
+        }
+
+        if (rules.getRuleCount() == 0) {
+            throw new IllegalArgumentException("RegulatorConfig: no rules (expected rule.1, rule.2...)!");
+        }
+
+        return new RegulatorConfig(rules,
+                parseEnum(TNorm.class, properties, "tnorm"),
+                parseEnum(SNorm.class, properties, "snorm"),
+                parseEnum(Defuzzification.class, properties, "defuzzification"),
+                parseDouble(properties.getProperty("minAccelTime", Double.toString(DEFAULT_MIN_ACCEL_TIME)),
+                        "minAccelTime"));
+    }
+
+    /**
+     * Parse a variable and its terms.
+     */
+    private static LinguisticVariable parseVariable(final Properties properties, final String name)
+            throws IllegalArgumentException
+    {
+        final String range = properties.getProperty(name + ".range");
+        final LinguisticVariable variable;
+        if (range == null) {
+            variable = new LinguisticVariable(name);
+        }
+        else {
+            final String[] bounds = split(range);
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("RegulatorConfig: " + name + ".range must be 'min, max'!");
+            }
+            variable = new LinguisticVariable(name,
+                    parseDouble(bounds[0], name + ".range"), parseDouble(bounds[1], name + ".range"));
+        }
+
+        final String terms = properties.getProperty(name + ".terms");
+        if (terms == null) {
+            throw new IllegalArgumentException("RegulatorConfig: " + name + ".terms is missing!");
+        }
+
+        for (final String term : split(terms)) {
+            final String key = name + "." + term;
+            final String set = properties.getProperty(key);
+            if (set == null) {
+                throw new IllegalArgumentException("RegulatorConfig: " + key + " is missing!");
+            }
+
+            final String[] values = split(set);
+            if (values.length != 4) {
+                throw new IllegalArgumentException("RegulatorConfig: " + key + " must be 'type, start, edge, end'!");
+            }
+
+            final FuzzySet.MembershipType type;
+            try {
+                type = FuzzySet.MembershipType.valueOf(values[0]);
+            } catch (IllegalArgumentException exception) {
+                throw new IllegalArgumentException("RegulatorConfig: " + key + " has an unknown type '"
+                        + values[0] + "'!");
+            }
+
+            variable.addTerm(term, new FuzzySet(type,
+                    parseDouble(values[1], key), parseDouble(values[2], key), parseDouble(values[3], key)));
+        }
+
+        return variable;
+    }
+
+    private static String[] split(final String list) {
+        return list.trim().split("\\s*,\\s*");
+    }
+
+    private static double parseDouble(final String value, final String key) throws IllegalArgumentException {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("RegulatorConfig: " + key + " has a malformed number '"
+                    + value + "'!");
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(final Class<E> type, final Properties properties,
+                                                   final String key)
+            throws IllegalArgumentException
+    {
+        final String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("RegulatorConfig: " + key + " is missing!");
+        }
+
+        try {
+            return Enum.valueOf(type, value.trim());
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException("RegulatorConfig: " + key + " has an unknown value '"
+                    + value.trim() + "'!");
+        }
+    }
+
+    /**
+     * Save the configuration to a properties file (replacing any previous contents).
+     *
+     * @param file - the file to write.
+     *
+     * @throws IOException - when the file can't be written.
+     */
+    public void save(final Path file) throws IOException {
+        try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (final String line : toLines()) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return - the configuration in the file format, line by line (in the order they're saved in).
+     */
+    private List<String> toLines() {
+        final List<String> lines = new ArrayList<>();
+
+        lines.add("minAccelTime = " + minAccelTime);
+        lines.add("tnorm = " + and.name());
+        lines.add("snorm = " + or.name());
+        lines.add("defuzzification = " + defuzzification.name());
+
+        final LinguisticVariable[] variables = { rules.getInput(0), rules.getInput(1), rules.getOutput() };
+        for (final LinguisticVariable variable : variables) {
+            lines.add("");
+            if (variable.isBounded()) {
+                lines.add(variable.getName() + ".range = " + variable.getMin() + ", " + variable.getMax());
+            }
+
+            final StringBuilder terms = new StringBuilder();
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                terms.append(t == 0 ? "" : ", ").append(variable.getTermName(t));
+            }
+            lines.add(variable.getName() + ".terms = " + terms);
+
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                final FuzzySet set = variable.getTerm(t);
+                lines.add(variable.getName() + "." + variable.getTermName(t) + " = " + set.getMembershipType()
+                        + ", " + set.getStart() + ", " + set.getEdge() + ", " + set.getEnd());
+            }
+        }
+
+        lines.add("");
+        for (int r = 0; r < rules.getRuleCount(); ++r) {
+            final StringBuilder rule = new StringBuilder("rule." + (r + 1) + " =");
+            for (int i = 0; i < rules.getInputCount(); ++i) {
+                final int term = rules.getAntecedent(r, i);
+                rule.append(' ').append(term < 0 ? "*" : rules.getInput(i).getTermName(term));
+            }
+            rule.append(" -> ").append(rules.getOutput().getTermName(rules.getConsequent(r)));
+
+            lines.add(rule.toString());
+        }
+
+        return lines;
+    }
+
+    /**
+     * @return - the compiled rules.
+     */
+    public InferenceEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return - the rules.
+     */
+    public RuleBase getRules() {
+        return rules;
+    }
+
+    /**
+     * @return - t-norm combining antecedents.
+     */
+    public TNorm getTNorm() {
+        return and;
+    }
+
+    /**
+     * @return - s-norm aggregating rules with the same consequent.
+     */
+    public SNorm getSNorm() {
+        return or;
+    }
+
+    /**
+     * @return - method of computing the target velocity.
+     */
+    public Defuzzification getDefuzzification() {
+        return defuzzification;
+    }
+
+    /**
+     * @return - acceleration time modifier in milliseconds.
+     */
+    public double getMinAccelTime() {
+        return minAccelTime;
+    }
+
+    /**
+     * @return - a 64-bit hash (FNV-1a) of the configuration in the file format, the same on every platform.
+     * Equal configurations have equal fingerprints, e.g. to tell whether something derived from
+     * a configuration (such as a saved ControlSurface) is still up to date.
+     */
+    public long getFingerprint() {
+        long hash = 0xCBF29CE484222325L;
+        for (final String line : toLines()) {
+            for (final byte b : (line + "\n").getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+        }
+
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder text = new StringBuilder();
+        for (final String line : toLines()) {
+            text.append(line).append(System.lineSeparator());
+        }
+
+        return text.toString();
+    }
+}
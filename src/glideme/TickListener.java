@@ -0,0 +1,23 @@
+package glideme;
+
+/**
+ * Observer of a world, notified by the thread advancing it after every tick.
+ *
+ * The state is passed as primitives so that notifying costs no allocation. Listeners run on the world's
+ * thread, inside refresh(): they must be quick and must not block (hand the data off to another thread
+ * if there's anything slow to do).
+ */
+public interface TickListener {
+    /**
+     * Called after a tick has been fully simulated.
+     *
+     * @param tick - number of the tick.
+     * @param destination - crane's destination during the tick.
+     * @param position - crane's position after the tick.
+     * @param velocity - crane's velocity after the tick.
+     * @param acceleration - crane's acceleration after the tick.
+     * @param angle - crane's angle after the tick.
+     */
+    void onTick(long tick, double destination, double position, double velocity, double acceleration,
+                double angle);
+}
@@ -1,5 +1,12 @@
 package glideme;
 
+import glideme.metrics.SimulationMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Encapsulates the invariants and state of the modelled world, that is:
  *  - crane's track length,
@@ -8,9 +15,11 @@ package glideme;
  *
  * The world is uni-dimensional, location is given by a single element vector.
  *
- * It would be nice to achieve access synchronization using atomics,
- * but Java's stdlib does only support integral values. Therefore
- * we need to synchronize method calls.
+ * The crane's state has a single writer (the thread advancing the world) and any number of readers
+ * (the UI, telemetry...). It's published through a sequence lock: the writer bumps a sequence number
+ * to an odd value, stores the quantities (as raw bits of doubles, since Java's atomics only support
+ * integral values) and bumps it again to an even value. Readers retry whenever the sequence was odd
+ * or changed while they were copying, so they always see a consistent state, and never block the writer.
  */
 public class World {
     /**
@@ -23,10 +32,18 @@ public class World {
      */
     public static final int TRACK_LENGTH = 100;
 
+    /**
+     * Where every crane starts (still, in balance) and its first destination, in units from the track's start.
+     */
+    public static final double START_POSITION = 50.0;
+
     /**
      * Holds current physical quantities associated with the crane.
+     *
+     * Instances are plain mutable value holders: the world keeps its own copy and hands out
+     * snapshots, so that a state can be reused between ticks without generating garbage.
      */
-    public class CraneState
+    public static class CraneState
     {
         /**
          * Crane's position on the track as a distance from its start (in units).
@@ -44,11 +61,27 @@ public class World {
         public double acceleration;
 
         /**
-         * Crane's offset from its balance point (perpendicular to the floor) in radians.
-         * Negative values mean that the crane leans in the direction opposite to the velocity.
+         * Crane's offset from its balance point (perpendicular to the floor) in radians. The sign depends
+         * on the world's plant model (see World.getAngleDirection()):
+         *  - Physics: positive values mean that the load is displaced towards the end of the track, so a crane
+         *    accelerating towards the end (its load trailing behind) has a negative angle,
+         *  - PendulumPhysics: positive values mean that the load is displaced towards the start of the track,
+         *    so the same crane has a positive angle.
          */
         public double angle;
 
+        /**
+         * Number of the tick that produced this state (0 for the world's initial state).
+         */
+        public long tick;
+
+        /**
+         * Construct a crane's state with all quantities set to zero (e.g. to be filled in later).
+         */
+        public CraneState()
+        {
+        }
+
         /**
          * Construct a crane's state.
          *
@@ -63,99 +96,349 @@ public class World {
             this.acceleration = acceleration;
             this.angle = angle;
         }
+
+        /**
+         * Overwrite this state with the values of another one.
+         *
+         * @param other - the state to copy.
+         *
+         * @return - this state.
+         */
+        public CraneState set(final CraneState other)
+        {
+            position = other.position;
+            velocity = other.velocity;
+            acceleration = other.acceleration;
+            angle = other.angle;
+            tick = other.tick;
+
+            return this;
+        }
     }
 
     /**
-     * Current state of the crane.
-     * The crane always starts at position 50, still, in balance.
+     * Indices of the published quantities.
      */
-    private CraneState craneState = new CraneState(50.0, 0.0, 0.0, 0.0);
+    private static final int POSITION = 0, VELOCITY = 1, ACCELERATION = 2, ANGLE = 3, TICK = 4, QUANTITIES = 5;
+
+    /**
+     * Current state of the crane, as seen by the writer.
+     * The crane always starts at START_POSITION, still, in balance.
+     * It's updated in place, the object itself never leaves the world.
+     */
+    private final CraneState craneState = new CraneState(START_POSITION, 0.0, 0.0, 0.0);
+
+    /**
+     * Current state of the crane, as seen by the readers (raw bits of the doubles and the tick, indexed as above).
+     */
+    private final AtomicLongArray published = new AtomicLongArray(QUANTITIES);
+
+    /**
+     * Sequence number guarding the published state: odd while the writer's storing new values.
+     */
+    private final AtomicLong sequence = new AtomicLong();
 
     /**
      * Crane's destination point (as a distance in units from the track's start).
      * At the beginning it's always where the crane starts.
      */
-    private double destPoint = 50.0;
+    private volatile double destPoint = START_POSITION;
+
+    /**
+     * Thread waiting for the destination to change (or null).
+     */
+    private volatile Thread waiter = null;
+
+    /**
+     * Laws of physics applied to this world (they carry state between ticks).
+     */
+    private final PlantModel plant;
+
+    /**
+     * Controller of the crane in this world.
+     */
+    private final Controller controller;
+
+    /**
+     * Listeners notified after every tick. Copy-on-write: the array is replaced, never modified,
+     * so that the world's thread can iterate it without locking.
+     */
+    private volatile TickListener[] listeners = NO_LISTENERS;
+
+    private static final TickListener[] NO_LISTENERS = new TickListener[0];
+
+    /**
+     * Metrics the ticks' durations are recorded into (or null).
+     */
+    private volatile SimulationMetrics metrics = null;
+
+    /**
+     * Create a world with the crane resting at the start point.
+     */
+    public World() {
+        this(new Regulator());
+    }
+
+    /**
+     * Create a world with the crane resting at the start point, controlled by the given controller
+     * (e.g. a fuzzy Regulator).
+     *
+     * @param controller - the controller, used by this world only.
+     */
+    public World(final Controller controller) {
+        this(new Physics(), controller);
+    }
+
+    /**
+     * Create a world with the crane resting at the start point, governed by the given physics and controlled
+     * by the given controller.
+     *
+     * @param plant - the laws of physics (with their time step), used by this world only.
+     * @param controller - the controller, used by this world only.
+     */
+    public World(final PlantModel plant, final Controller controller) {
+        this.plant = plant;
+        this.controller = controller;
+
+        publish();
+    }
+
+    /**
+     * @return - length of a tick in milliseconds (simulated time, depends on the world's physics).
+     */
+    public double getTimeStep() {
+        return plant.getTimeStep();
+    }
+
+    /**
+     * @return - the direction along the track a positive angle displaces the load in (1 towards the end
+     * of the track, -1 towards its start), which depends on the world's physics.
+     */
+    public int getAngleDirection() {
+        return plant.getAngleDirection();
+    }
 
     /**
      * Determine updated values of physical quantities for current time quantum.
      */
     public void refresh() {
-        /*System.out.printf("dest=%f, d=%f, v=%f, acc=%f, a=%f\n",
-                destPoint,
-                craneState.position,
-                craneState.velocity,
-                craneState.acceleration,
-                craneState.angle);*/
+        // The new tick number is published along with the first quantities it changes.
+        ++craneState.tick;
 
-        Physics.update(this);
-        Regulator.update(this);
+        // The destination is latched for the whole tick: the tick then depends on a single value of it
+        // (the one the listeners are told about), even if it's changed concurrently.
+        final double destination = destPoint;
+
+        final SimulationMetrics currentMetrics = metrics;
+        if (currentMetrics == null || !currentMetrics.isEnabled()) {
+            plant.update(this);
+            controller.update(this, destination);
+            notifyListeners(destination);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        plant.update(this);
+        final long physicsDone = System.nanoTime();
+        controller.update(this, destination);
+        final long regulatorDone = System.nanoTime();
+        notifyListeners(destination);
+
+        currentMetrics.recordTick(start, physicsDone, regulatorDone, System.nanoTime());
     }
 
     /**
-     * Atomically update the crane's state.
+     * Notify the listeners of a finished tick.
+     *
+     * @param destination - the destination in effect for the tick.
+     */
+    private void notifyListeners(final double destination) {
+        final TickListener[] current = listeners;
+        for (final TickListener listener : current) {
+            listener.onTick(craneState.tick, destination, craneState.position, craneState.velocity,
+                    craneState.acceleration, craneState.angle);
+        }
+    }
+
+    /**
+     * Record the duration of the ticks (and their steps) into the given metrics.
+     *
+     * @param newMetrics - the metrics, or null to stop recording.
+     */
+    public void setMetrics(final SimulationMetrics newMetrics) {
+        metrics = newMetrics;
+    }
+
+    /**
+     * Register a listener notified after every tick (on the thread advancing the world).
+     *
+     * @param listener - the listener.
      */
     synchronized
-    public void update(final CraneState newCraneState) {
-        assert(newCraneState.position >= 0);
-        assert(newCraneState.angle >= -Math.PI/2.0 && newCraneState.angle <= Math.PI/2.0);
+    public void addTickListener(final TickListener listener) {
+        final TickListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
 
-        craneState = newCraneState;
+        listeners = updated;
     }
 
     /**
-     * Atomically update the crane's position, velocity and angle.
-     * To avoid changing some of these quantities, pass null instead of a new value.
+     * Unregister a listener. It may still be notified of a tick in progress.
+     *
+     * @param listener - the listener.
      */
     synchronized
-    public void update(Double newPosition, Double newVelocity, Double newAcceleration, Double newAngle) {
-        if (newPosition == null)
-        {
-            newPosition = craneState.position;
-        }
+    public void removeTickListener(final TickListener listener) {
+        for (int i = 0; i < listeners.length; ++i) {
+            if (listeners[i] == listener) {
+                final TickListener[] updated = new TickListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
 
-        if (newVelocity == null)
-        {
-            newVelocity = craneState.velocity;
+                listeners = updated;
+                return;
+            }
         }
+    }
 
-        if (newAcceleration == null)
-        {
-            newAcceleration = craneState.acceleration;
-        }
+    /**
+     * Publish the writer's copy of the state to the readers.
+     */
+    private void publish() {
+        final long seq = sequence.get();
 
-        if (newAngle == null)
-        {
-            newAngle = craneState.angle;
-        }
+        // Ordered stores are enough here: each one is guaranteed to be visible after the ones before it.
+        sequence.lazySet(seq + 1);
+        published.lazySet(POSITION, Double.doubleToRawLongBits(craneState.position));
+        published.lazySet(VELOCITY, Double.doubleToRawLongBits(craneState.velocity));
+        published.lazySet(ACCELERATION, Double.doubleToRawLongBits(craneState.acceleration));
+        published.lazySet(ANGLE, Double.doubleToRawLongBits(craneState.angle));
+        published.lazySet(TICK, craneState.tick);
+        sequence.lazySet(seq + 2);
+    }
 
-        final CraneState newState = new CraneState(newPosition, newVelocity, newAcceleration, newAngle);
-        update(newState);
+    /**
+     * Atomically update the crane's state.
+     * Only the thread advancing the world may call the update methods. They don't change the tick number.
+     *
+     * @param newCraneState - the state to copy into the world (the object itself is not retained).
+     */
+    public void update(final CraneState newCraneState) {
+        update(newCraneState.position, newCraneState.velocity, newCraneState.acceleration, newCraneState.angle);
     }
 
     /**
-     * Change the crane's destination point.
+     * Atomically update all of the crane's physical quantities.
+     */
+    public void update(final double newPosition, final double newVelocity, final double newAcceleration,
+                       final double newAngle) {
+        assert(newPosition >= 0);
+        assert(newAngle >= -Math.PI/2.0 && newAngle <= Math.PI/2.0);
+
+        craneState.position = newPosition;
+        craneState.velocity = newVelocity;
+        craneState.acceleration = newAcceleration;
+        craneState.angle = newAngle;
+
+        publish();
+    }
+
+    /**
+     * Atomically update the crane's position, velocity and angle, leaving acceleration unchanged.
+     */
+    public void updateMotion(final double newPosition, final double newVelocity, final double newAngle) {
+        update(newPosition, newVelocity, craneState.acceleration, newAngle);
+    }
+
+    /**
+     * Atomically update the crane's acceleration, leaving other quantities unchanged.
+     */
+    public void updateAcceleration(final double newAcceleration) {
+        craneState.acceleration = newAcceleration;
+
+        publish();
+    }
+
+    /**
+     * Change the crane's destination point. May be called from any thread.
      */
-    synchronized
     public void setDestination(final double newDestination) {
         assert(newDestination >= 0.0);
         assert(newDestination <= TRACK_LENGTH);
 
         destPoint = newDestination;
+
+        final Thread waiting = waiter;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
     }
 
     /**
-     * Get current crane state.
+     * Park the calling thread until the destination differs from the given one (e.g. while the crane
+     * is settled and there's nothing to simulate). Only one thread (the one advancing the world) may wait.
+     *
+     * @param destination - the destination the crane has settled at.
+     *
+     * @return - false if the thread was interrupted while waiting.
+     */
+    public boolean awaitDestinationChange(final double destination) {
+        final Thread current = Thread.currentThread();
+        waiter = current;
+
+        // Both fields are volatile: either setDestination() sees the waiter, or we see the new destination.
+        try {
+            while (destPoint == destination) {
+                if (current.isInterrupted()) {
+                    return false;
+                }
+                LockSupport.park(this);
+            }
+
+            return true;
+        }
+        finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Get a snapshot of current crane state.
+     * Allocates a new object on every call, code run each tick should use getCraneState(CraneState) instead.
      */
-    synchronized
     public CraneState getCraneState() {
-        return craneState;
+        return getCraneState(new CraneState());
+    }
+
+    /**
+     * Copy a consistent snapshot of current crane state into the given object. May be called from any thread,
+     * never blocks the writer (it may spin for a moment if the state is being updated right now).
+     *
+     * @param into - the state to overwrite.
+     *
+     * @return - the given state object.
+     */
+    public CraneState getCraneState(final CraneState into) {
+        long before, after;
+
+        do {
+            before = sequence.get();
+
+            into.position = Double.longBitsToDouble(published.get(POSITION));
+            into.velocity = Double.longBitsToDouble(published.get(VELOCITY));
+            into.acceleration = Double.longBitsToDouble(published.get(ACCELERATION));
+            into.angle = Double.longBitsToDouble(published.get(ANGLE));
+            into.tick = published.get(TICK);
+
+            after = sequence.get();
+        } while ((before & 1) != 0 || before != after);
+
+        return into;
     }
 
     /**
      * Get current destination point.
      */
-    synchronized
     public double getDestination() {
         return destPoint;
     }
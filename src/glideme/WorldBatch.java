@@ -0,0 +1,277 @@
+package glideme;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fleet of independent cranes stored column-wise ("struct of arrays").
+ *
+ * Every physical quantity of all the cranes is kept in a separate array, so the batched physics and regulation
+ * steps sweep plain primitive arrays in tight loops instead of chasing one World object graph per crane.
+ * Cranes are processed in blocks of BLOCK: a block is advanced by all the requested ticks before moving on
+ * to the next one, so its columns stay in the L1 cache for the whole run. Blocks are independent, hence
+ * the batch can be split between threads without any synchronization.
+ *
+ * The dynamics are exactly those of World (a crane of a batch follows the same trajectory as a World would).
+ * Unlike World, a batch does not publish its state to other threads while it's being advanced:
+ * it must not be accessed concurrently with run().
+ */
+public class WorldBatch {
+    /**
+     * Number of cranes processed together.
+     */
+    public static final int BLOCK = 256;
+
+    /**
+     * Minimal number of blocks per parallel task.
+     */
+    private static final int MIN_BLOCKS_PER_TASK = 4;
+
+    /**
+     * Number of ticks between checks whether a block has settled.
+     */
+    private static final int QUIESCENCE_CHECK_INTERVAL = 64;
+
+    /**
+     * Columns of the cranes' quantities (see World.CraneState) and destinations.
+     * The previous acceleration is Physics' own state.
+     */
+    final double[] position, velocity, acceleration, angle, destination, prevAcceleration;
+
+    /**
+     * Number of ticks the batch has been advanced by.
+     */
+    private long tick = 0;
+
+    /**
+     * Creates the regulators, one per thread advancing the batch.
+     */
+    private final RegulatorFactory regulators;
+
+    /**
+     * Criteria of a crane having settled (or null to never skip any).
+     */
+    private Quiescence quiescence = null;
+
+    /**
+     * Creates a regulator for every thread advancing the batch (regulators keep per-thread workspaces).
+     */
+    public interface RegulatorFactory {
+        Regulator create();
+    }
+
+    /**
+     * Create a batch of cranes, all resting at the start point, regulated by fuzzy reasoning
+     * with the default configuration.
+     *
+     * @param size - number of cranes.
+     */
+    public WorldBatch(final int size) {
+        this(size, RegulatorConfig.DEFAULT, null);
+    }
+
+    /**
+     * Create a batch of cranes, all resting at the start point, regulated with the default configuration.
+     *
+     * @param size - number of cranes.
+     * @param surface - precomputed control surface used by the regulators (or null to run the fuzzy reasoning).
+     */
+    public WorldBatch(final int size, final ControlSurface surface) {
+        this(size, RegulatorConfig.DEFAULT, surface);
+    }
+
+    /**
+     * Create a batch of cranes, all resting at the start point.
+     *
+     * @param size - number of cranes.
+     * @param config - configuration of the regulators.
+     * @param surface - precomputed control surface used by the regulators (or null to run the fuzzy reasoning).
+     */
+    public WorldBatch(final int size, final RegulatorConfig config, final ControlSurface surface) {
+        this(size, new RegulatorFactory() {
+            @Override
+            public Regulator create() {
+                return new Regulator(config, surface);
+            }
+        });
+    }
+
+    /**
+     * Create a batch of cranes, all resting at the start point.
+     *
+     * @param size - number of cranes.
+     * @param regulators - creates the regulators (e.g. of a subclass, or sharing a tuned configuration).
+     */
+    public WorldBatch(final int size, final RegulatorFactory regulators) {
+        position = new double[size];
+        velocity = new double[size];
+        acceleration = new double[size];
+        angle = new double[size];
+        destination = new double[size];
+        prevAcceleration = new double[size];
+
+        for (int i = 0; i < size; ++i) {
+            position[i] = World.START_POSITION;
+            destination[i] = World.START_POSITION;
+        }
+
+        this.regulators = regulators;
+    }
+
+    /**
+     * @return - number of cranes in the batch.
+     */
+    public int size() {
+        return position.length;
+    }
+
+    /**
+     * Change a crane's destination point.
+     *
+     * @param crane - index of the crane.
+     * @param newDestination - the new destination.
+     */
+    public void setDestination(final int crane, final double newDestination) {
+        assert(newDestination >= 0.0);
+        assert(newDestination <= World.TRACK_LENGTH);
+
+        destination[crane] = newDestination;
+    }
+
+    /**
+     * @param crane - index of the crane.
+     *
+     * @return - the crane's destination point.
+     */
+    public double getDestination(final int crane) {
+        return destination[crane];
+    }
+
+    /**
+     * Copy a crane's state into the given object.
+     *
+     * @param crane - index of the crane.
+     * @param into - the state to overwrite.
+     *
+     * @return - the given state object.
+     */
+    public World.CraneState getCraneState(final int crane, final World.CraneState into) {
+        into.position = position[crane];
+        into.velocity = velocity[crane];
+        into.acceleration = acceleration[crane];
+        into.angle = angle[crane];
+        into.tick = tick;
+
+        return into;
+    }
+
+    /**
+     * Advance all the cranes by the given number of ticks on the current thread.
+     *
+     * @param ticks - number of time quanta to simulate.
+     */
+    public void run(final long ticks) {
+        run(0, size(), ticks, regulators.create());
+        tick += ticks;
+    }
+
+    /**
+     * Advance all the cranes by the given number of ticks, splitting the batch between the pool's workers.
+     *
+     * @param ticks - number of time quanta to simulate.
+     * @param pool - the pool to run on.
+     */
+    public void run(final long ticks, final ForkJoinPool pool) {
+        final int blocks = (size() + BLOCK - 1) / BLOCK;
+        final int blocksPerTask = Math.max(MIN_BLOCKS_PER_TASK, blocks / (4 * pool.getParallelism()));
+
+        pool.invoke(new Slice(0, blocks, blocksPerTask, ticks));
+        tick += ticks;
+    }
+
+    /**
+     * Advance a range of cranes, block after block.
+     *
+     * @param from - index of the first crane.
+     * @param to - index past the last crane.
+     * @param ticks - number of time quanta to simulate.
+     * @param regulator - the regulator to use (confined to the current thread).
+     */
+    private void run(final int from, final int to, final long ticks, final Regulator regulator) {
+        for (int block = from; block < to; block += BLOCK) {
+            final int end = Math.min(block + BLOCK, to);
+
+            for (long t = 0; t < ticks; ++t) {
+                if (t % QUIESCENCE_CHECK_INTERVAL == 0 && isSettled(block, end)) {
+                    break;
+                }
+
+                Physics.update(this, block, end);
+                regulator.update(this, block, end);
+            }
+        }
+    }
+
+    /**
+     * Check whether all the cranes of a range have settled.
+     *
+     * @param from - index of the first crane.
+     * @param to - index past the last crane.
+     *
+     * @return - true if skipping is enabled and all the cranes have settled.
+     */
+    private boolean isSettled(final int from, final int to) {
+        final Quiescence criteria = quiescence;
+        if (criteria == null) {
+            return false;
+        }
+
+        for (int i = from; i < to; ++i) {
+            if (!criteria.isSettled(destination[i], position[i], velocity[i], acceleration[i], angle[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Skip blocks whose cranes have all settled.
+     *
+     * A block is checked every QUIESCENCE_CHECK_INTERVAL ticks; once all of its cranes are found settled,
+     * it isn't advanced any further during the current run(). The batch's tick counter advances regardless.
+     *
+     * @param criteria - criteria of a crane having settled (or null to always simulate all the cranes).
+     */
+    public void setQuiescence(final Quiescence criteria) {
+        quiescence = criteria;
+    }
+
+    /**
+     * A range of blocks, split in halves until it's small enough to be simulated directly.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private class Slice extends RecursiveAction {
+        private final int fromBlock, toBlock, blocksPerTask;
+        private final long ticks;
+
+        Slice(final int fromBlock, final int toBlock, final int blocksPerTask, final long ticks) {
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+            this.blocksPerTask = blocksPerTask;
+            this.ticks = ticks;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock <= blocksPerTask) {
+                run(fromBlock * BLOCK, Math.min(toBlock * BLOCK, size()), ticks, regulators.create());
+                return;
+            }
+
+            final int middle = (fromBlock + toBlock) >>> 1;
+            invokeAll(new Slice(fromBlock, middle, blocksPerTask, ticks),
+                    new Slice(middle, toBlock, blocksPerTask, ticks));
+        }
+    }
+}
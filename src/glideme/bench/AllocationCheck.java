@@ -0,0 +1,164 @@
+package glideme.bench;
+
+import glideme.Physics;
+import glideme.Regulator;
+import glideme.World;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Verifies that the per-tick simulation paths don't generate garbage once they're warmed up.
+ *
+ * Every checked operation is run for a while (so that the JIT gets to compile it), then the bytes
+ * allocated by the current thread are counted over a long run of calls. Exits with a non-zero status
+ * when any of the operations allocates in steady state.
+ */
+public class AllocationCheck {
+    /**
+     * Number of calls made before measuring.
+     */
+    private static final int WARMUP_CALLS = 200000;
+
+    /**
+     * Number of calls measured.
+     */
+    private static final int MEASURED_CALLS = 1000000;
+
+    /**
+     * Number of times the measurement is repeated.
+     */
+    private static final int MEASURED_ROUNDS = 3;
+
+    /**
+     * A single checked operation.
+     */
+    private interface Operation {
+        void call(int i);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Measure how many bytes an operation allocates per call in steady state.
+     *
+     * @param operation - the operation to measure.
+     *
+     * @return - the average number of bytes allocated per call.
+     */
+    private static double bytesPerCall(final Operation operation) {
+        for (int i = 0; i < WARMUP_CALLS; ++i) {
+            operation.call(i);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        long least = Long.MAX_VALUE;
+
+        // One-off allocations (e.g. made while the JIT swaps compiled code) aren't steady state,
+        // so the best of a few rounds is reported.
+        for (int round = 0; round < MEASURED_ROUNDS; ++round) {
+            final long before = THREADS.getThreadAllocatedBytes(threadId);
+
+            for (int i = 0; i < MEASURED_CALLS; ++i) {
+                operation.call(i);
+            }
+
+            // The counter call itself allocates nothing, so whatever was counted comes from the operation.
+            least = Math.min(least, THREADS.getThreadAllocatedBytes(threadId) - before);
+        }
+
+        return least / (double) MEASURED_CALLS;
+    }
+
+    /**
+     * Check a single operation and report the result.
+     *
+     * @param name - operation's name used in the report.
+     * @param operation - the operation to check.
+     *
+     * @return - true if the operation doesn't allocate in steady state.
+     */
+    private static boolean check(final String name, final Operation operation) {
+        final double bytes = bytesPerCall(operation);
+        final boolean ok = bytes == 0.0;
+
+        System.out.printf("%-24s %10.3f B/call  %s%n", name, bytes, ok ? "OK" : "ALLOCATES");
+        return ok;
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - ignored.
+     */
+    public static void main(String[] args) {
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.err.println("AllocationCheck: thread allocation counting is not supported by this JVM.");
+            System.exit(2);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        final World world = new World();
+        final Physics physics = new Physics();
+        final Regulator regulator = new Regulator();
+        final World.CraneState state = new World.CraneState();
+
+        boolean ok = check("World.update", new Operation() {
+            @Override
+            public void call(int i) {
+                world.update(50.0 + (i & 15), 0.001, 0.0, 0.0);
+            }
+        });
+
+        ok &= check("World.updateMotion", new Operation() {
+            @Override
+            public void call(int i) {
+                world.updateMotion(50.0 + (i & 15), 0.001, 0.0);
+            }
+        });
+
+        ok &= check("World.updateAcceleration", new Operation() {
+            @Override
+            public void call(int i) {
+                world.updateAcceleration((i & 15) * 1e-6);
+            }
+        });
+
+        ok &= check("World.getCraneState", new Operation() {
+            @Override
+            public void call(int i) {
+                world.getCraneState(state);
+            }
+        });
+
+        ok &= check("Physics.update", new Operation() {
+            @Override
+            public void call(int i) {
+                world.update(50.0, 0.0, (i & 1) == 0 ? 1e-6 : -1e-6, 0.0);
+                physics.update(world);
+            }
+        });
+
+        ok &= check("Regulator.update", new Operation() {
+            @Override
+            public void call(int i) {
+                world.update(50.0 + (i & 15), 0.001, 0.0, (i & 7) * 0.1 - 0.35);
+                world.setDestination(i & 63);
+                regulator.update(world);
+            }
+        });
+
+        final World swinging = new World();
+        ok &= check("World.refresh", new Operation() {
+            @Override
+            public void call(int i) {
+                if ((i & 8191) == 0) {
+                    swinging.setDestination((i >>> 13) % (World.TRACK_LENGTH + 1));
+                }
+                swinging.refresh();
+            }
+        });
+
+        System.exit(ok ? 0 : 1);
+    }
+}
@@ -0,0 +1,28 @@
+package glideme.bench;
+
+/**
+ * A micro-benchmark run by BenchmarkRunner.
+ */
+public interface Benchmark {
+    /**
+     * @return - benchmark's name (unique within the suite).
+     */
+    String getName();
+
+    /**
+     * Prepare the benchmarked objects and inputs. Not measured.
+     *
+     * @param scenario - the input distribution to use.
+     */
+    void setUp(Scenario scenario);
+
+    /**
+     * Perform the benchmarked operation the given number of times.
+     *
+     * @param operations - number of operations to perform.
+     *
+     * @return - a value depending on the results of all the operations
+     * (consumed by the runner, so that the operations can't be optimized out).
+     */
+    double run(int operations);
+}
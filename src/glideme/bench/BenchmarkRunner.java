@@ -0,0 +1,229 @@
+package glideme.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the simulation benchmark suite, reporting time and allocated bytes per operation,
+ * and optionally checks the results against a saved baseline.
+ *
+ * Every benchmark is run for each scenario: first a number of warm-up iterations (so that the JIT compiles
+ * the code), then measured iterations. Time per operation is the median over the measured iterations;
+ * allocated bytes are counted per thread by the JVM, the same way JMH's GC profiler does it.
+ *
+ * The benchmarks module (benchmarks/pom.xml) runs the same suite under JMH; this runner is the fallback needing
+ * nothing but the sources, and keeps the baseline check.
+ *
+ * Usage: BenchmarkRunner [options]
+ *   --filter REGEX          run only benchmarks whose name matches
+ *   --scenario NAME         run only the given scenario (SETTLED or SWINGING)
+ *   --warmup N              warm-up iterations (default 5)
+ *   --iterations N          measured iterations (default 10)
+ *   --ops N                 operations per iteration (default 1000000)
+ *   --save FILE             save the results as a baseline
+ *   --baseline FILE         compare the results with a baseline, exit with status 1 on regression
+ *   --tolerance FRACTION    allowed slow-down relative to the baseline (default 0.10)
+ */
+public class BenchmarkRunner {
+    /**
+     * Allocation above the baseline's (in bytes per operation) that counts as a regression.
+     */
+    private static final double ALLOCATION_TOLERANCE = 0.5;
+
+    /**
+     * Keeps the benchmarks' results alive, so that they can't be optimized out.
+     */
+    static volatile double sink;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private String filter = ".*";
+    private Scenario[] scenarios = Scenario.values();
+    private int warmup = 5, iterations = 10, operations = 1000000;
+    private Path save = null, baseline = null;
+    private double tolerance = 0.10;
+
+    /**
+     * Result of a single benchmark in a single scenario.
+     */
+    private static class Result {
+        final String key;
+        final double nanosPerOp, minNanosPerOp, bytesPerOp;
+
+        Result(final String key, final double nanosPerOp, final double minNanosPerOp, final double bytesPerOp) {
+            this.key = key;
+            this.nanosPerOp = nanosPerOp;
+            this.minNanosPerOp = minNanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    /**
+     * Measure a benchmark.
+     */
+    private Result measure(final Benchmark benchmark, final Scenario scenario) {
+        benchmark.setUp(scenario);
+
+        for (int i = 0; i < warmup; ++i) {
+            sink = benchmark.run(operations);
+        }
+
+        final long threadId = Thread.currentThread().getId();
+        final double[] nanos = new double[iterations];
+        long bytes = Long.MAX_VALUE;
+
+        for (int i = 0; i < iterations; ++i) {
+            final long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            final long start = System.nanoTime();
+
+            sink = benchmark.run(operations);
+
+            nanos[i] = (System.nanoTime() - start) / (double) operations;
+            // One-off allocations (e.g. by the JIT swapping code) aren't steady state, take the best iteration.
+            bytes = Math.min(bytes, THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore);
+        }
+
+        Arrays.sort(nanos);
+        return new Result(benchmark.getName() + "." + scenario, nanos[iterations / 2], nanos[0],
+                bytes / (double) operations);
+    }
+
+    /**
+     * Run the suite.
+     *
+     * @return - the results.
+     */
+    private List<Result> runAll() {
+        final Pattern pattern = Pattern.compile(filter);
+        final List<Result> results = new ArrayList<>();
+
+        System.out.printf("%-34s %12s %12s %10s%n", "benchmark", "ns/op", "min ns/op", "B/op");
+
+        for (final Benchmark benchmark : SimulationBenchmarks.all()) {
+            if (!pattern.matcher(benchmark.getName()).matches()) {
+                continue;
+            }
+
+            for (final Scenario scenario : scenarios) {
+                final Result result = measure(benchmark, scenario);
+                results.add(result);
+
+                System.out.printf("%-34s %12.3f %12.3f %10.3f%n",
+                        result.key, result.nanosPerOp, result.minNanosPerOp, result.bytesPerOp);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Save the results as a baseline.
+     */
+    private void save(final List<Result> results) throws IOException {
+        final Properties properties = new Properties();
+        for (final Result result : results) {
+            properties.setProperty(result.key + ".ns", Double.toString(result.nanosPerOp));
+            properties.setProperty(result.key + ".bytes", Double.toString(result.bytesPerOp));
+        }
+
+        try (final OutputStream out = Files.newOutputStream(save)) {
+            properties.store(out, "glideme benchmark baseline");
+        }
+    }
+
+    /**
+     * Compare the results with a baseline.
+     *
+     * @return - true if none of the benchmarks regressed.
+     */
+    private boolean compare(final List<Result> results) throws IOException {
+        final Properties properties = new Properties();
+        try (final InputStream in = Files.newInputStream(baseline)) {
+            properties.load(in);
+        }
+
+        boolean ok = true;
+        for (final Result result : results) {
+            final String nanos = properties.getProperty(result.key + ".ns"),
+                    bytes = properties.getProperty(result.key + ".bytes");
+            if (nanos == null || bytes == null) {
+                System.out.printf("%-34s not in the baseline%n", result.key);
+                continue;
+            }
+
+            final double baseNanos = Double.parseDouble(nanos), baseBytes = Double.parseDouble(bytes);
+            final boolean slower = result.nanosPerOp > baseNanos * (1.0 + tolerance),
+                    allocates = result.bytesPerOp > baseBytes + ALLOCATION_TOLERANCE;
+
+            if (slower || allocates) {
+                ok = false;
+                System.out.printf("%-34s REGRESSION: %.3f ns/op (baseline %.3f), %.3f B/op (baseline %.3f)%n",
+                        result.key, result.nanosPerOp, baseNanos, result.bytesPerOp, baseBytes);
+            }
+        }
+
+        return ok;
+    }
+
+    /**
+     * Parse command-line options.
+     *
+     * @throws IllegalArgumentException - on unknown or incomplete options.
+     */
+    private void parse(final String[] args) throws IllegalArgumentException {
+        for (int i = 0; i < args.length; ++i) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("BenchmarkRunner: missing value of " + args[i]);
+            }
+
+            final String value = args[++i];
+            switch (args[i - 1]) {
+                case "--filter": filter = value; break;
+                case "--scenario": scenarios = new Scenario[] {Scenario.valueOf(value)}; break;
+                case "--warmup": warmup = Integer.parseInt(value); break;
+                case "--iterations": iterations = Integer.parseInt(value); break;
+                case "--ops": operations = Integer.parseInt(value); break;
+                case "--save": save = Paths.get(value); break;
+                case "--baseline": baseline = Paths.get(value); break;
+                case "--tolerance": tolerance = Double.parseDouble(value); break;
+                default: throw new IllegalArgumentException("BenchmarkRunner: unknown option " + args[i - 1]);
+            }
+        }
+
+        if (iterations <= 0 || operations <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("BenchmarkRunner: iteration and operation counts must be positive!");
+        }
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - options, see the class description.
+     */
+    public static void main(String[] args) throws IOException {
+        final BenchmarkRunner runner = new BenchmarkRunner();
+        runner.parse(args);
+
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        final List<Result> results = runner.runAll();
+
+        if (runner.save != null) {
+            runner.save(results);
+        }
+
+        if (runner.baseline != null && !runner.compare(results)) {
+            System.exit(1);
+        }
+    }
+}
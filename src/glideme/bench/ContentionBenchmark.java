@@ -0,0 +1,152 @@
+package glideme.bench;
+
+import glideme.World;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the writer's throughput when the crane's state is read concurrently by several threads,
+ * for the lock-free publication used by World and for a monitor-guarded state (the way World used to work).
+ *
+ * Usage: ContentionBenchmark [seconds per run] [max reader count]
+ */
+public class ContentionBenchmark {
+    /**
+     * Readers store a value derived from what they've read here, so that the reads aren't optimized out.
+     */
+    static volatile double sink;
+
+    /**
+     * State publication scheme under test.
+     */
+    private interface StateCell {
+        void write(double position, double velocity, double acceleration, double angle);
+        void read(World.CraneState into);
+    }
+
+    /**
+     * The crane's state published by World's sequence lock.
+     */
+    private static class LockFreeCell implements StateCell {
+        private final World world = new World();
+
+        @Override
+        public void write(double position, double velocity, double acceleration, double angle) {
+            world.update(position, velocity, acceleration, angle);
+        }
+
+        @Override
+        public void read(World.CraneState into) {
+            world.getCraneState(into);
+        }
+    }
+
+    /**
+     * The crane's state guarded by a monitor.
+     */
+    private static class SynchronizedCell implements StateCell {
+        private final World.CraneState state = new World.CraneState();
+
+        @Override
+        synchronized
+        public void write(double position, double velocity, double acceleration, double angle) {
+            state.position = position;
+            state.velocity = velocity;
+            state.acceleration = acceleration;
+            state.angle = angle;
+        }
+
+        @Override
+        synchronized
+        public void read(World.CraneState into) {
+            into.set(state);
+        }
+    }
+
+    /**
+     * Run the writer and the given number of readers against a cell for a while.
+     *
+     * @param cell - the publication scheme under test.
+     * @param readers - number of concurrent reader threads.
+     * @param millis - duration of the run.
+     *
+     * @return - {writes per second, reads per second (all readers together)}.
+     */
+    private static double[] measure(final StateCell cell, final int readers, final long millis)
+            throws InterruptedException
+    {
+        final AtomicLong reads = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[readers];
+
+        for (int r = 0; r < readers; ++r) {
+            threads[r] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    final World.CraneState state = new World.CraneState();
+                    long count = 0;
+                    double total = 0;
+
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    while (!Thread.currentThread().isInterrupted()) {
+                        cell.read(state);
+                        total += state.position - state.angle;
+                        ++count;
+                    }
+
+                    reads.addAndGet(count);
+                    sink = total;
+                }
+            });
+            threads[r].setDaemon(true);
+            threads[r].start();
+        }
+
+        start.countDown();
+
+        final long deadline = System.nanoTime() + millis * 1000000L;
+        long writes = 0;
+        while ((writes & 1023) != 0 || System.nanoTime() < deadline) {
+            final double x = writes & 1023;
+            cell.write(x, x * 1e-3, x * 1e-6, x * 1e-4);
+            ++writes;
+        }
+
+        for (final Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+
+        final double seconds = millis / 1000.0;
+        return new double[] {writes / seconds, reads.get() / seconds};
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - optional run duration in seconds and maximal number of readers.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final long millis = (long) (1000 * (args.length > 0 ? Double.parseDouble(args[0]) : 2.0));
+        final int maxReaders = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        System.out.printf("%-8s %8s %16s %16s%n", "scheme", "readers", "writes/s", "reads/s");
+
+        for (int readers = 0; readers <= maxReaders; readers = readers == 0 ? 1 : readers * 2) {
+            for (final StateCell cell : new StateCell[] {new SynchronizedCell(), new LockFreeCell()}) {
+                // The first run warms the code up, the second one is reported.
+                measure(cell, readers, millis / 4);
+                final double[] result = measure(cell, readers, millis);
+
+                System.out.printf("%-8s %8d %16.0f %16.0f%n",
+                        cell instanceof LockFreeCell ? "seqlock" : "monitor", readers, result[0], result[1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package glideme.bench;
+
+import glideme.ControlSurface;
+import glideme.Controller;
+import glideme.PendulumPhysics;
+import glideme.Physics;
+import glideme.PidController;
+import glideme.PlantModel;
+import glideme.Quiescence;
+import glideme.Regulator;
+import glideme.RegulatorConfig;
+import glideme.World;
+import glideme.fuzzy.Defuzzification;
+import glideme.fuzzy.FuzzySet;
+import glideme.fuzzy.LinguisticVariable;
+import glideme.fuzzy.RuleBase;
+import glideme.sweep.RobustnessSweep;
+import glideme.sweep.SplitMix64;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs the same scenarios with every controller on every plant model and compares them side by side:
+ * cost of a tick (time and allocation) and quality of control (settling time, overshoot, swing).
+ *
+ * A scenario moves the crane from a random start to a random destination and runs it for the whole horizon
+ * (so every controller runs the same number of ticks). Settling time is the time after which the crane stays
+ * within RobustnessSweep.DEFAULT_BAND until the end. The cheapest controller that settles in all scenarios
+ * without swinging beyond the limit is recommended for every plant.
+ *
+ * Usage: ControllerComparison [options]
+ *   --scenarios N           number of scenarios (default 50)
+ *   --horizon SECONDS       simulated time per scenario (default 60)
+ *   --swing-limit RADIANS   the largest acceptable swing (default 0.35)
+ *   --seed N                seed of the scenarios (default 1)
+ */
+public class ControllerComparison {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Create a fresh instance for every world (plants and controllers keep state between ticks).
+     */
+    private interface PlantFactory {
+        PlantModel create();
+    }
+
+    private interface ControllerFactory {
+        Controller create();
+    }
+
+    /**
+     * Results of a controller on a plant.
+     */
+    private static class Result {
+        long ticks = 0, nanos = 0, bytes = 0;
+        int unsettled = 0;
+        double settlingTime = 0.0, maxSettlingTime = 0.0, overshoot = 0.0, maxSwing = 0.0;
+    }
+
+    private final long[][] scenarios;
+    private final double horizon;
+
+    /**
+     * @param scenarios - start positions and destinations (as raw double bits).
+     * @param horizon - simulated time per scenario in milliseconds.
+     */
+    private ControllerComparison(final long[][] scenarios, final double horizon) {
+        this.scenarios = scenarios;
+        this.horizon = horizon;
+    }
+
+    /**
+     * Run all scenarios with a controller on a plant.
+     */
+    private Result run(final PlantFactory plant, final ControllerFactory controller) {
+        final Result result = new Result();
+        final Quiescence band = RobustnessSweep.DEFAULT_BAND;
+        final World.CraneState state = new World.CraneState();
+        final long threadId = Thread.currentThread().getId();
+
+        for (final long[] scenario : scenarios) {
+            final double start = Double.longBitsToDouble(scenario[0]);
+            final double destination = Double.longBitsToDouble(scenario[1]);
+
+            final World world = new World(plant.create(), controller.create());
+            world.update(start, 0.0, 0.0, 0.0);
+            world.setDestination(destination);
+
+            final long ticks = (long) Math.ceil(horizon / world.getTimeStep());
+            final double direction = Math.signum(destination - start);
+            long settledAt = 0;
+            double overshoot = 0.0, swing = 0.0;
+
+            final long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            final long before = System.nanoTime();
+            for (long t = 1; t <= ticks; ++t) {
+                world.refresh();
+                world.getCraneState(state);
+
+                overshoot = Math.max(overshoot, (state.position - destination) * direction);
+                swing = Math.max(swing, Math.abs(state.angle));
+                if (!band.isSettled(destination, state.position, state.velocity, state.acceleration,
+                        state.angle)) {
+                    settledAt = t;
+                }
+            }
+            result.nanos += System.nanoTime() - before;
+            result.bytes += THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+            result.ticks += ticks;
+
+            if (settledAt == ticks) {
+                ++result.unsettled;
+            }
+            else {
+                final double settlingTime = settledAt * world.getTimeStep();
+                result.settlingTime += settlingTime;
+                result.maxSettlingTime = Math.max(result.maxSettlingTime, settlingTime);
+            }
+            result.overshoot = Math.max(result.overshoot, overshoot);
+            result.maxSwing = Math.max(result.maxSwing, swing);
+        }
+
+        final int settled = scenarios.length - result.unsettled;
+        result.settlingTime = settled == 0 ? Double.NaN : result.settlingTime / settled;
+
+        return result;
+    }
+
+    /**
+     * Turn a configuration into a Mamdani one: the same rules, defuzzified by the centroid of the output sets
+     * (clipped by the rules' strengths) rather than by the weighted average of their singletons.
+     *
+     * @param config - the configuration.
+     *
+     * @return - the Mamdani configuration, its output bounded by the extent of the output sets.
+     */
+    private static RegulatorConfig toMamdani(final RegulatorConfig config) {
+        final RuleBase rules = config.getRules();
+        final LinguisticVariable velocity = rules.getOutput();
+
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t < velocity.getTermCount(); ++t) {
+            final FuzzySet set = velocity.getTerm(t);
+            min = Math.min(min, set.getStart());
+            max = Math.max(max, set.getEnd());
+        }
+
+        final LinguisticVariable bounded = new LinguisticVariable(velocity.getName(), min, max);
+        for (int t = 0; t < velocity.getTermCount(); ++t) {
+            bounded.addTerm(velocity.getTermName(t), velocity.getTerm(t));
+        }
+
+        final RuleBase mamdani = new RuleBase(new LinguisticVariable[] { rules.getInput(0), rules.getInput(1) },
+                bounded);
+        for (int r = 0; r < rules.getRuleCount(); ++r) {
+            final String[] antecedents = new String[rules.getInputCount()];
+            for (int i = 0; i < antecedents.length; ++i) {
+                final int term = rules.getAntecedent(r, i);
+                antecedents[i] = term < 0 ? null : rules.getInput(i).getTermName(term);
+            }
+            mamdani.addRule(velocity.getTermName(rules.getConsequent(r)), antecedents);
+        }
+
+        return new RegulatorConfig(mamdani, config.getTNorm(), config.getSNorm(), Defuzzification.CENTROID,
+                config.getMinAccelTime());
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - options, see the class description.
+     */
+    public static void main(String[] args) {
+        int scenarioCount = 50;
+        double horizon = 60.0, swingLimit = 0.35;
+        long seed = 1;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--scenarios": scenarioCount = Integer.parseInt(args[i + 1]); break;
+                case "--horizon": horizon = Double.parseDouble(args[i + 1]); break;
+                case "--swing-limit": swingLimit = Double.parseDouble(args[i + 1]); break;
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("ControllerComparison: unknown option " + args[i]);
+            }
+        }
+
+        if (!THREADS.isThreadAllocatedMemorySupported()) {
+            System.err.println("Allocation measurement isn't supported by this JVM.");
+            System.exit(1);
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        final SplitMix64 random = new SplitMix64(seed);
+        final long[][] scenarios = new long[scenarioCount][];
+        for (int s = 0; s < scenarioCount; ++s) {
+            final double start = random.nextDouble(0.0, World.TRACK_LENGTH);
+            double destination;
+            do {
+                destination = random.nextDouble(0.0, World.TRACK_LENGTH);
+            } while (Math.abs(destination - start) < 10.0);
+
+            scenarios[s] = new long[] { Double.doubleToRawLongBits(start), Double.doubleToRawLongBits(destination) };
+        }
+
+        final ControlSurface surface = ControlSurface.sample(new Regulator(), 201, 201);
+
+        final String[] plantNames = { "Euler (Physics)", "pendulum RK4, 10 ms" };
+        final PlantFactory[] plants = {
+                new PlantFactory() {
+                    @Override
+                    public PlantModel create() {
+                        return new Physics();
+                    }
+                },
+                new PlantFactory() {
+                    @Override
+                    public PlantModel create() {
+                        return new PendulumPhysics(PendulumPhysics.Integrator.RK4, 10.0);
+                    }
+                }
+        };
+
+        final RegulatorConfig mamdani = toMamdani(RegulatorConfig.DEFAULT);
+
+        final String[] controllerNames = { "fuzzy", "fuzzy, sampled surface", "fuzzy, Mamdani", "PID" };
+        final ControllerFactory[] controllers = {
+                new ControllerFactory() {
+                    @Override
+                    public Controller create() {
+                        return new Regulator();
+                    }
+                },
+                new ControllerFactory() {
+                    @Override
+                    public Controller create() {
+                        return new Regulator(surface);
+                    }
+                },
+                new ControllerFactory() {
+                    @Override
+                    public Controller create() {
+                        return new Regulator(mamdani, null);
+                    }
+                },
+                new ControllerFactory() {
+                    @Override
+                    public Controller create() {
+                        return new PidController();
+                    }
+                }
+        };
+
+        final ControllerComparison comparison = new ControllerComparison(scenarios, horizon * 1000.0);
+
+        System.out.printf("%d scenarios of %.0f s, swing limit %.3f rad%n", scenarioCount, horizon, swingLimit);
+        for (int p = 0; p < plants.length; ++p) {
+            System.out.printf("%n%s%n%-24s %9s %7s %9s %9s %10s %9s %9s%n", plantNames[p], "controller", "ns/tick",
+                    "B/tick", "settle s", "max s", "unsettled", "overshoot", "swing");
+
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < controllers.length; ++c) {
+                // Warm up, then measure.
+                comparison.run(plants[p], controllers[c]);
+                final Result result = comparison.run(plants[p], controllers[c]);
+
+                final double nanosPerTick = result.nanos / (double) result.ticks;
+                System.out.printf("%-24s %9.1f %7.2f %9.2f %9.2f %10d %9.3f %9.4f%n", controllerNames[c],
+                        nanosPerTick, result.bytes / (double) result.ticks, result.settlingTime / 1000.0,
+                        result.maxSettlingTime / 1000.0, result.unsettled, result.overshoot, result.maxSwing);
+
+                if (result.unsettled == 0 && result.maxSwing <= swingLimit && nanosPerTick < bestCost) {
+                    best = c;
+                    bestCost = nanosPerTick;
+                }
+            }
+
+            System.out.println(best < 0 ? "No controller meets the limits."
+                    : "Cheapest controller meeting the limits: " + controllerNames[best]);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package glideme.bench;
+
+import glideme.PendulumPhysics;
+import glideme.Regulator;
+import glideme.World;
+
+/**
+ * Compares PendulumPhysics' integration schemes at various time steps: the swing's error after a simulated
+ * stretch of a prescribed acceleration profile, and the computing time per simulated second.
+ *
+ * The profile changes every PROFILE_STEP milliseconds (a multiple of all the tested steps), so that every run
+ * sees exactly the same input and the differences come from the integration alone. The reference is
+ * Dormand-Prince at 1 ms with a very tight tolerance.
+ *
+ * Usage: IntegratorAccuracy [simulated seconds]
+ */
+public class IntegratorAccuracy {
+    /**
+     * Interval between changes of the acceleration profile in milliseconds.
+     */
+    private static final double PROFILE_STEP = 50.0;
+
+    /**
+     * Tested time steps in milliseconds.
+     */
+    private static final double[] STEPS = {1.0, 5.0, 10.0, 25.0, 50.0};
+
+    /**
+     * Repetitions of every timed run.
+     */
+    private static final int REPETITIONS = 200;
+
+    static volatile double sink;
+
+    /**
+     * Stands in for the regulator, applying the acceleration profile.
+     */
+    private static class Profile extends Regulator {
+        private final double timeStep;
+        private double time = 0.0;
+
+        Profile(final double timeStep) {
+            this.timeStep = timeStep;
+        }
+
+        @Override
+        public void update(final World world, final double destination) {
+            // The acceleration set now applies to the next tick.
+            time += timeStep;
+
+            final long segment = (long) Math.floor(time / PROFILE_STEP + 1e-9);
+            world.updateAcceleration(((segment / 40) % 2 == 0 ? 3e-4 : -3e-4) * Math.sin(0.37 * segment));
+        }
+    }
+
+    /**
+     * Simulate the profile.
+     *
+     * @return - the final angle.
+     */
+    private static double simulate(final PendulumPhysics physics, final double millis) {
+        final World world = new World(physics, new Profile(physics.getTimeStep()));
+        final long ticks = Math.round(millis / physics.getTimeStep());
+
+        for (long i = 0; i < ticks; ++i) {
+            world.refresh();
+        }
+
+        return world.getCraneState().angle;
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - simulated seconds (10 by default).
+     */
+    public static void main(String[] args) {
+        final double millis = 1000.0 * (args.length > 0 ? Double.parseDouble(args[0]) : 10.0);
+
+        final double reference = simulate(new PendulumPhysics(PendulumPhysics.Integrator.DORMAND_PRINCE, 1.0,
+                PendulumPhysics.DEFAULT_ROPE_LENGTH, PendulumPhysics.DEFAULT_DAMPING, 1e-13), millis);
+
+        // Warm up every scheme before anything is timed.
+        for (final PendulumPhysics.Integrator integrator : PendulumPhysics.Integrator.values()) {
+            for (final double step : STEPS) {
+                sink = simulate(new PendulumPhysics(integrator, step), millis);
+            }
+        }
+
+        System.out.printf("%-20s %8s %12s %16s%n", "integrator", "step ms", "angle error", "us per sim. s");
+
+        for (final PendulumPhysics.Integrator integrator : PendulumPhysics.Integrator.values()) {
+            for (final double step : STEPS) {
+                double angle = 0.0;
+
+                final long start = System.nanoTime();
+                for (int i = 0; i < REPETITIONS; ++i) {
+                    angle = simulate(new PendulumPhysics(integrator, step), millis);
+                }
+                final double elapsed = (System.nanoTime() - start) / (double) REPETITIONS;
+
+                sink = angle;
+                System.out.printf("%-20s %8.0f %12.2e %16.1f%n", integrator, step, Math.abs(angle - reference),
+                        elapsed / 1000.0 / (millis / 1000.0));
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package glideme.bench;
+
+import glideme.World;
+import glideme.engine.SimulationEngine;
+
+/**
+ * Input distributions benchmarks are run against: states recorded from real simulations.
+ */
+public enum Scenario {
+    /**
+     * The crane resting at its destination: all inputs are (nearly) constant,
+     * branches are perfectly predictable.
+     */
+    SETTLED {
+        @Override
+        World prepare() {
+            final World world = new World();
+            world.setDestination(80.0);
+            SimulationEngine.runUntilSettled(world, 10000000L);
+
+            return world;
+        }
+
+        @Override
+        void steer(final World world, final int tick) {
+            // The destination never changes.
+        }
+    },
+
+    /**
+     * The crane travelling back and forth along the track and swinging:
+     * inputs cover most of the fuzzy sets' ranges.
+     */
+    SWINGING {
+        @Override
+        World prepare() {
+            return new World();
+        }
+
+        @Override
+        void steer(final World world, final int tick) {
+            if (tick % SWING_PERIOD == 0) {
+                world.setDestination((tick / SWING_PERIOD) % 2 == 0 ? 10.0 : 90.0);
+            }
+        }
+    };
+
+    /**
+     * Number of ticks after which the destination changes when swinging.
+     */
+    private static final int SWING_PERIOD = 3000;
+
+    /**
+     * States of a crane and its destinations recorded tick after tick.
+     */
+    public static class Trace {
+        public final double[] position, velocity, acceleration, angle, destination;
+
+        Trace(final int length) {
+            position = new double[length];
+            velocity = new double[length];
+            acceleration = new double[length];
+            angle = new double[length];
+            destination = new double[length];
+        }
+
+        /**
+         * @return - number of recorded ticks.
+         */
+        public int length() {
+            return position.length;
+        }
+    }
+
+    /**
+     * @return - a world in the scenario's starting state.
+     */
+    abstract World prepare();
+
+    /**
+     * Change the world's destination as the scenario requires.
+     *
+     * @param world - the world.
+     * @param tick - number of ticks since the world was prepared.
+     */
+    abstract void steer(World world, int tick);
+
+    /**
+     * Simulate the scenario and record it.
+     *
+     * @param length - number of ticks to record.
+     *
+     * @return - the recorded trace.
+     */
+    public Trace record(final int length) {
+        final World world = prepare();
+        final World.CraneState state = new World.CraneState();
+        final Trace trace = new Trace(length);
+
+        for (int i = 0; i < length; ++i) {
+            steer(world, i);
+            world.refresh();
+            world.getCraneState(state);
+
+            trace.position[i] = state.position;
+            trace.velocity[i] = state.velocity;
+            trace.acceleration[i] = state.acceleration;
+            trace.angle[i] = state.angle;
+            trace.destination[i] = world.getDestination();
+        }
+
+        return trace;
+    }
+
+    /**
+     * Create a world that keeps following the scenario when advanced through the returned stepper.
+     *
+     * @return - a stepper advancing a freshly prepared world by one tick per call.
+     */
+    public Runnable stepper() {
+        final World world = prepare();
+
+        return new Runnable() {
+            private int tick = 0;
+
+            @Override
+            public void run() {
+                steer(world, tick++);
+                world.refresh();
+            }
+        };
+    }
+}
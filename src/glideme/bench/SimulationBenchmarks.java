@@ -0,0 +1,189 @@
+package glideme.bench;
+
+import glideme.Physics;
+import glideme.Regulator;
+import glideme.World;
+import glideme.fuzzy.FuzzySet;
+
+/**
+ * Benchmarks of the simulation's hot path, from a single fuzzy set up to a whole tick.
+ *
+ * Inputs come from traces recorded in the given scenario and are replayed cyclically,
+ * so that branch prediction sees realistic data rather than a single repeated value.
+ */
+public class SimulationBenchmarks {
+    /**
+     * Length of the replayed traces (a power of two, for cheap wrapping).
+     */
+    private static final int TRACE_LENGTH = 8192;
+
+    /**
+     * A fuzzy set shaped like the regulator's "distance zero".
+     */
+    private static final FuzzySet DISTANCE_ZERO =
+            new FuzzySet(FuzzySet.MembershipType.Pyramidal, -25.0, 0.0, 25.0);
+
+    private SimulationBenchmarks() {}
+
+    /**
+     * Base for benchmarks replaying a recorded trace.
+     */
+    private static abstract class TraceBenchmark implements Benchmark {
+        private final String name;
+        protected Scenario.Trace trace;
+
+        TraceBenchmark(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void setUp(final Scenario scenario) {
+            trace = scenario.record(TRACE_LENGTH);
+        }
+
+        /**
+         * Set the world to the state recorded at the given position of the trace.
+         */
+        protected void load(final World world, final int i) {
+            world.update(trace.position[i], trace.velocity[i], trace.acceleration[i], trace.angle[i]);
+            world.setDestination(trace.destination[i]);
+        }
+    }
+
+    /**
+     * @return - all benchmarks of the suite.
+     */
+    public static Benchmark[] all() {
+        return new Benchmark[] {
+            new TraceBenchmark("FuzzySet.grade") {
+                @Override
+                public double run(final int operations) {
+                    double sum = 0.0;
+                    for (int op = 0; op < operations; ++op) {
+                        final int i = op & (TRACE_LENGTH - 1);
+                        sum += DISTANCE_ZERO.grade(trace.destination[i] - trace.position[i]);
+                    }
+                    return sum;
+                }
+            },
+
+            new TraceBenchmark("FuzzySet.grade[]") {
+                private final double[] in = new double[TRACE_LENGTH], out = new double[TRACE_LENGTH];
+
+                @Override
+                public void setUp(final Scenario scenario) {
+                    super.setUp(scenario);
+                    for (int i = 0; i < TRACE_LENGTH; ++i) {
+                        in[i] = trace.destination[i] - trace.position[i];
+                    }
+                }
+
+                @Override
+                public double run(final int operations) {
+                    // One operation is a single point, graded in chunks of the whole trace.
+                    double sum = 0.0;
+                    for (int done = 0; done < operations; done += TRACE_LENGTH) {
+                        final int n = Math.min(TRACE_LENGTH, operations - done);
+                        DISTANCE_ZERO.grade(in, out, n);
+                        sum += out[n - 1];
+                    }
+                    return sum;
+                }
+            },
+
+            new TraceBenchmark("FuzzySet.peakValue") {
+                private final FuzzySet[] sets = new FuzzySet[TRACE_LENGTH];
+
+                @Override
+                public void setUp(final Scenario scenario) {
+                    super.setUp(scenario);
+
+                    // Sets of all the types, around the recorded distances: a single constant set would let
+                    // the JIT hoist its peak out of the loop, leaving only the additions to be measured.
+                    final FuzzySet.MembershipType[] types = FuzzySet.MembershipType.values();
+                    for (int i = 0; i < TRACE_LENGTH; ++i) {
+                        final double distance = trace.destination[i] - trace.position[i];
+                        sets[i] = new FuzzySet(types[i % types.length], distance - 25.0, distance, distance + 25.0);
+                    }
+                }
+
+                @Override
+                public double run(final int operations) {
+                    double sum = 0.0;
+                    for (int op = 0; op < operations; ++op) {
+                        sum += sets[op & (TRACE_LENGTH - 1)].peakValue();
+                    }
+                    return sum;
+                }
+            },
+
+            new TraceBenchmark("World.update") {
+                private final World world = new World();
+
+                @Override
+                public double run(final int operations) {
+                    for (int op = 0; op < operations; ++op) {
+                        final int i = op & (TRACE_LENGTH - 1);
+                        world.update(trace.position[i], trace.velocity[i], trace.acceleration[i], trace.angle[i]);
+                    }
+                    return world.getCraneState().position;
+                }
+            },
+
+            new TraceBenchmark("Physics.update") {
+                private final World world = new World();
+                private final Physics physics = new Physics();
+
+                @Override
+                public double run(final int operations) {
+                    for (int op = 0; op < operations; ++op) {
+                        load(world, op & (TRACE_LENGTH - 1));
+                        physics.update(world);
+                    }
+                    return world.getCraneState().angle;
+                }
+            },
+
+            new TraceBenchmark("Regulator.update") {
+                private final World world = new World();
+                private final Regulator regulator = new Regulator();
+
+                @Override
+                public double run(final int operations) {
+                    for (int op = 0; op < operations; ++op) {
+                        load(world, op & (TRACE_LENGTH - 1));
+                        regulator.update(world);
+                    }
+                    return world.getCraneState().acceleration;
+                }
+            },
+
+            new Benchmark() {
+                private Runnable stepper;
+
+                @Override
+                public String getName() {
+                    return "World.refresh";
+                }
+
+                @Override
+                public void setUp(final Scenario scenario) {
+                    stepper = scenario.stepper();
+                }
+
+                @Override
+                public double run(final int operations) {
+                    for (int op = 0; op < operations; ++op) {
+                        stepper.run();
+                    }
+                    return operations;
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+package glideme.engine;
+
+import glideme.Quiescence;
+import glideme.World;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Advances many independent worlds at once, spreading them over all available cores.
+ *
+ * The fleet is split into contiguous slices which are stepped by fork-join workers.
+ * Every slice runs all the requested ticks for each of its worlds before moving on
+ * to the next one, so a world's state stays in a single core's cache while it's being simulated.
+ * Worlds share no mutable state, hence no synchronization is needed between the slices.
+ */
+public class FleetRunner {
+    /**
+     * How many slices per worker thread the fleet is split into (more slices balance load better).
+     */
+    private static final int SLICES_PER_WORKER = 4;
+
+    /**
+     * Pool executing the slices.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a runner using one worker per available processor.
+     */
+    public FleetRunner() {
+        this(new ForkJoinPool());
+    }
+
+    /**
+     * Create a runner using the given pool.
+     *
+     * @param pool - the pool executing the simulation.
+     */
+    public FleetRunner(final ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Advance every world of the fleet by the given number of ticks and wait until all of them are done.
+     *
+     * @param worlds - the fleet. Each world must not be advanced by anyone else in the meantime.
+     * @param ticks - number of time quanta to simulate.
+     *
+     * @throws IllegalArgumentException - when the number of ticks is negative.
+     */
+    public void run(final World[] worlds, final long ticks) throws IllegalArgumentException {
+        run(worlds, ticks, null);
+    }
+
+    /**
+     * Advance every world of the fleet by the given number of ticks, skipping the ones whose cranes have settled,
+     * and wait until all of them are done.
+     *
+     * Worlds are checked before each of their ticks; once a crane is found settled, its world isn't advanced
+     * any further during this run (so its tick counter falls behind the others'). A destination changed
+     * in the meantime is picked up by the next run.
+     *
+     * @param worlds - the fleet. Each world must not be advanced by anyone else in the meantime.
+     * @param ticks - number of time quanta to simulate.
+     * @param quiescence - criteria of a crane having settled (or null to simulate all the worlds).
+     *
+     * @throws IllegalArgumentException - when the number of ticks is negative.
+     */
+    public void run(final World[] worlds, final long ticks, final Quiescence quiescence)
+            throws IllegalArgumentException
+    {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("FleetRunner: 'ticks' must not be negative!");
+        }
+
+        final int threshold = Math.max(1, worlds.length / (pool.getParallelism() * SLICES_PER_WORKER));
+
+        pool.invoke(new Slice(worlds, 0, worlds.length, ticks, threshold, quiescence));
+    }
+
+    /**
+     * Stop the worker threads, waiting for the pending work to finish.
+     *
+     * @throws InterruptedException - when interrupted while waiting.
+     */
+    public void shutdown() throws InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * A contiguous range of the fleet, split in halves until it's small enough to be simulated directly.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private static class Slice extends RecursiveAction {
+        private final World[] worlds;
+        private final int from, to;
+        private final long ticks;
+        private final int threshold;
+        private final Quiescence quiescence;
+
+        Slice(final World[] worlds, final int from, final int to, final long ticks, final int threshold,
+              final Quiescence quiescence) {
+            this.worlds = worlds;
+            this.from = from;
+            this.to = to;
+            this.ticks = ticks;
+            this.threshold = threshold;
+            this.quiescence = quiescence;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                if (quiescence == null) {
+                    for (int i = from; i < to; ++i) {
+                        SimulationEngine.run(worlds[i], ticks);
+                    }
+                }
+                else {
+                    final World.CraneState state = new World.CraneState();
+                    for (int i = from; i < to; ++i) {
+                        for (long t = 0; t < ticks && !quiescence.isSettled(worlds[i], state); ++t) {
+                            worlds[i].refresh();
+                        }
+                    }
+                }
+                return;
+            }
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new Slice(worlds, from, middle, ticks, threshold, quiescence),
+                    new Slice(worlds, middle, to, ticks, threshold, quiescence));
+        }
+    }
+}
@@ -0,0 +1,367 @@
+package glideme.engine;
+
+import glideme.Regulator;
+import glideme.RegulatorConfig;
+import glideme.TickListener;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journal of a world's inputs: every change of the destination and of the regulator's configuration, keyed
+ * by the number of the tick it took effect in.
+ *
+ * A world's ticks depend on nothing but its destination (latched at the start of each tick) and its regulator's
+ * configuration (latched by the regulator for each tick, see Regulator.setConfig), so the journal of a session
+ * is enough to re-execute it exactly - see Replay. To be replayable, the journal has to be registered
+ * as a TickListener of a fresh world, before its first tick. Configuration changes are only recorded when
+ * the journal is given the world's regulator; a configuration other than RegulatorConfig.DEFAULT used
+ * by the first tick is recorded as a change in it.
+ *
+ * Recording costs a comparison or two per tick (and an ordered store of the tick number), entries are only
+ * appended when an input changes. The journal may be read and saved from any thread while it's being
+ * recorded; that gives a journal of the session up to some recent tick.
+ *
+ * File layout (little endian): a 32 byte header (magic and version as ints; number of the first recorded
+ * tick, number of the last one and number of entries as longs), then the entries, each being a tick number
+ * (a long) and a destination (a double). Then the number of configuration changes (a long) and the changes,
+ * each being a tick number (a long), the length of the configuration (an int) and the configuration
+ * in the properties format (UTF-8). Version 1 files end after the destination entries.
+ */
+public class InputJournal implements TickListener {
+    /**
+     * File format identification.
+     */
+    private static final int MAGIC = 0x474C494A, VERSION = 2;
+
+    /**
+     * Sizes in bytes.
+     */
+    private static final int HEADER_SIZE = 32, ENTRY_SIZE = 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Entries: ticks and the destinations that took effect in them.
+     */
+    private long[] ticks = new long[INITIAL_CAPACITY];
+    private double[] destinations = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * The first and the last recorded tick (0 until a tick is recorded).
+     */
+    private long firstTick = 0;
+    private final AtomicLong lastTick = new AtomicLong();
+
+    /**
+     * Destination of the last recorded tick (owned by the recording thread).
+     */
+    private double lastDestination = Double.NaN;
+
+    /**
+     * A configuration and the tick it took effect in.
+     */
+    private static class ConfigChange {
+        final long tick;
+        final RegulatorConfig config;
+
+        ConfigChange(final long tick, final RegulatorConfig config) {
+            this.tick = tick;
+            this.config = config;
+        }
+    }
+
+    private final List<ConfigChange> configChanges = new ArrayList<>();
+
+    /**
+     * Regulator whose configuration is recorded (or null), and the configuration of the last recorded tick
+     * (owned by the recording thread).
+     */
+    private final Regulator regulator;
+    private RegulatorConfig lastConfig = RegulatorConfig.DEFAULT;
+
+    /**
+     * Create an empty journal recording the destination only (for worlds whose regulator's configuration
+     * never changes).
+     */
+    public InputJournal() {
+        this(null);
+    }
+
+    /**
+     * Create an empty journal recording the destination and the configuration of the world's regulator.
+     *
+     * @param regulator - the regulator of the world the journal is registered with (or null not to record
+     *                  the configuration).
+     */
+    public InputJournal(final Regulator regulator) {
+        this.regulator = regulator;
+    }
+
+    /**
+     * Record a tick (only its destination and the regulator's configuration matter).
+     */
+    @Override
+    public void onTick(final long tick, final double destination, final double position, final double velocity,
+                       final double acceleration, final double angle) {
+        if (destination != lastDestination) {
+            lastDestination = destination;
+            append(tick, destination);
+        }
+
+        if (regulator != null) {
+            final RegulatorConfig config = regulator.getUsedConfig();
+            if (config != lastConfig && config != null) {
+                lastConfig = config;
+                appendConfig(tick, config);
+            }
+        }
+
+        lastTick.lazySet(tick);
+    }
+
+    /**
+     * Append an entry.
+     */
+    synchronized
+    private void append(final long tick, final double destination) {
+        if (size == 0) {
+            firstTick = tick;
+        }
+
+        if (size == ticks.length) {
+            ticks = Arrays.copyOf(ticks, 2 * size);
+            destinations = Arrays.copyOf(destinations, 2 * size);
+        }
+
+        ticks[size] = tick;
+        destinations[size] = destination;
+        ++size;
+    }
+
+    /**
+     * Append a configuration change.
+     */
+    synchronized
+    private void appendConfig(final long tick, final RegulatorConfig config) {
+        configChanges.add(new ConfigChange(tick, config));
+    }
+
+    /**
+     * @return - number of the first recorded tick (1 if the journal was started with a fresh world,
+     * 0 if nothing was recorded yet).
+     */
+    synchronized
+    public long getFirstTick() {
+        return firstTick;
+    }
+
+    /**
+     * @return - number of the last recorded tick.
+     */
+    public long getLastTick() {
+        return lastTick.get();
+    }
+
+    /**
+     * @return - number of entries (destination changes, counting the initial destination).
+     */
+    synchronized
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i - index of the entry.
+     *
+     * @return - number of the tick the entry's destination took effect in.
+     */
+    synchronized
+    public long getTick(final int i) {
+        return ticks[i];
+    }
+
+    /**
+     * @param i - index of the entry.
+     *
+     * @return - the entry's destination.
+     */
+    synchronized
+    public double getDestination(final int i) {
+        return destinations[i];
+    }
+
+    /**
+     * @return - number of configuration changes.
+     */
+    synchronized
+    public int getConfigChangeCount() {
+        return configChanges.size();
+    }
+
+    /**
+     * @param i - index of the configuration change.
+     *
+     * @return - number of the tick the configuration took effect in.
+     */
+    synchronized
+    public long getConfigChangeTick(final int i) {
+        return configChanges.get(i).tick;
+    }
+
+    /**
+     * @param i - index of the configuration change.
+     *
+     * @return - the configuration.
+     */
+    synchronized
+    public RegulatorConfig getConfig(final int i) {
+        return configChanges.get(i).config;
+    }
+
+    /**
+     * Save the journal (replacing any previous contents of the file).
+     *
+     * @param file - the file to write.
+     *
+     * @throws IOException - when the file can't be written.
+     */
+    public void save(final Path file) throws IOException {
+        final ByteBuffer buffer;
+
+        synchronized (this) {
+            // The last tick is read first: every entry up to it has been appended by now.
+            final long last = lastTick.get();
+            int count = size;
+            while (count > 0 && ticks[count - 1] > last) {
+                --count;
+            }
+
+            final List<byte[]> configs = new ArrayList<>();
+            int configSize = 8;
+            for (final ConfigChange change : configChanges) {
+                if (change.tick > last) {
+                    break;
+                }
+                configs.add(change.config.toString().getBytes(StandardCharsets.UTF_8));
+                configSize += 12 + configs.get(configs.size() - 1).length;
+            }
+
+            buffer = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * count + configSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(firstTick).putLong(last).putLong(count);
+            for (int i = 0; i < count; ++i) {
+                buffer.putLong(ticks[i]).putDouble(destinations[i]);
+            }
+
+            buffer.putLong(configs.size());
+            for (int i = 0; i < configs.size(); ++i) {
+                buffer.putLong(configChanges.get(i).tick).putInt(configs.get(i).length).put(configs.get(i));
+            }
+        }
+        buffer.flip();
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Load a journal saved before. It can be replayed, or extended by recording further ticks of the world
+     * it was recorded from (the destination only).
+     *
+     * @param file - the file to read.
+     *
+     * @return - the journal.
+     *
+     * @throws IOException - when the file can't be read or isn't a valid journal.
+     */
+    public static InputJournal load(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                    || (buffer.getInt(4) != 1 && buffer.getInt(4) != VERSION)) {
+                throw new IOException("InputJournal: " + file + " is not an input journal!");
+            }
+            final boolean hasConfigs = buffer.getInt(4) != 1;
+
+            final long count = buffer.getLong(24);
+            if (count < 0 || (hasConfigs && buffer.limit() < HEADER_SIZE + ENTRY_SIZE * count + 8)
+                    || (!hasConfigs && buffer.limit() != HEADER_SIZE + ENTRY_SIZE * count)) {
+                throw new IOException("InputJournal: " + file + " is truncated or corrupted!");
+            }
+
+            final InputJournal journal = new InputJournal();
+            buffer.position(HEADER_SIZE);
+            for (long i = 0; i < count; ++i) {
+                final long tick = buffer.getLong();
+                final double destination = buffer.getDouble();
+
+                if (i > 0 && tick <= journal.ticks[journal.size - 1]) {
+                    throw new IOException("InputJournal: " + file + " has entries out of order!");
+                }
+                journal.append(tick, destination);
+                journal.lastDestination = destination;
+            }
+
+            final long configCount = hasConfigs ? buffer.getLong() : 0;
+            for (long i = 0; i < configCount; ++i) {
+                if (buffer.remaining() < 12) {
+                    throw new IOException("InputJournal: " + file + " is truncated or corrupted!");
+                }
+                final long tick = buffer.getLong();
+                final int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("InputJournal: " + file + " is truncated or corrupted!");
+                }
+                final byte[] text = new byte[length];
+                buffer.get(text);
+
+                if (i > 0 && tick <= journal.configChanges.get(journal.configChanges.size() - 1).tick) {
+                    throw new IOException("InputJournal: " + file + " has entries out of order!");
+                }
+                journal.appendConfig(tick, parseConfig(new String(text, StandardCharsets.UTF_8), file));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("InputJournal: " + file + " is truncated or corrupted!");
+            }
+
+            journal.firstTick = buffer.getLong(8);
+            journal.lastTick.set(buffer.getLong(16));
+
+            return journal;
+        }
+    }
+
+    /**
+     * Parse a journalled configuration.
+     */
+    private static RegulatorConfig parseConfig(final String text, final Path file) throws IOException {
+        final Properties properties = new Properties();
+        properties.load(new StringReader(text));
+
+        try {
+            return RegulatorConfig.fromProperties(properties);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("InputJournal: " + file + " has an invalid configuration ("
+                    + exception.getMessage() + ")", exception);
+        }
+    }
+}
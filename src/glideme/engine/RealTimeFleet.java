@@ -0,0 +1,488 @@
+package glideme.engine;
+
+import glideme.Quiescence;
+import glideme.Regulator;
+import glideme.World;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a fleet of cranes in real time: every crane's control loop advances its world once per period,
+ * all of them in step with the wall clock, on a handful of carrier threads.
+ *
+ * A single timer thread (the one calling run()) keeps a hashed timer wheel of the cranes' next ticks. At every
+ * period (kept by a TickScheduler), it takes the cranes due from the wheel, links them into chunks and hands
+ * the chunks to the carriers, which claim them one by one. A crane finishing its tick pushes itself onto
+ * a completion stack, from which the timer puts it back into the wheel: due at the next tick, or a little
+ * later if the crane has settled (it's then only checked every SETTLED_RECHECK_TICKS ticks, until its
+ * destination changes). Handing off a tick costs no allocation and no lock, so the fleet's size is limited
+ * by the carriers' CPU time rather than by the number of threads.
+ *
+ * Every crane's tick has a deadline: the end of its period. A tick finishing after it is late; a tick
+ * whose chunk no carrier has even started by then is skipped (its crane runs the next tick instead and falls
+ * behind the wall clock). Both count as deadline misses, per crane.
+ *
+ * Usage: RealTimeFleet [options]
+ *   --cranes N              number of cranes (default 10000)
+ *   --carriers N            number of carrier threads (default: number of processors)
+ *   --seconds N             how long to run (default 10)
+ *   --period MICROS         tick period (default 1000)
+ */
+public class RealTimeFleet {
+    /**
+     * Number of cranes in a chunk handed to a carrier.
+     */
+    private static final int CHUNK = 32;
+
+    /**
+     * Number of slots of the timer wheel (a power of two).
+     */
+    private static final int WHEEL_SIZE = 256;
+
+    /**
+     * How often a settled crane is checked for a new destination, in ticks.
+     */
+    public static final int SETTLED_RECHECK_TICKS = 50;
+
+    /**
+     * Bits of a claim holding the index of the next chunk (the rest holds the tick).
+     */
+    private static final int INDEX_BITS = 32;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    /**
+     * A crane's control loop.
+     */
+    private static class Crane {
+        private final World world;
+        private final World.CraneState state = new World.CraneState();
+
+        /**
+         * Tick the crane is (or will be) run at, and the tick it's due next (set when it's finished).
+         */
+        private long tick, nextTick;
+
+        /**
+         * Deadline of the current tick on the System.nanoTime() scale.
+         */
+        private long deadline;
+
+        /**
+         * Next crane in the same wheel slot or chunk, and next crane on the completion stack.
+         */
+        private Crane next, nextCompleted;
+
+        /**
+         * Statistics: ticks run, of them late, and ticks skipped.
+         */
+        private long ran = 0, late = 0, skipped = 0;
+
+        Crane(final World world) {
+            this.world = world;
+        }
+
+        /**
+         * Run the tick (on a carrier).
+         */
+        void run(final Quiescence quiescence) {
+            if (quiescence != null && quiescence.isSettled(world, state)) {
+                nextTick = tick + SETTLED_RECHECK_TICKS;
+            }
+            else {
+                world.refresh();
+                nextTick = tick + 1;
+            }
+
+            ++ran;
+            if (System.nanoTime() - deadline > 0) {
+                ++late;
+            }
+        }
+    }
+
+    private final Crane[] cranes;
+    private final long periodNanos;
+    private final Quiescence quiescence;
+
+    /**
+     * The wheel (used by the timer thread only): cranes due at tick t are linked in slot t % WHEEL_SIZE,
+     * together with the ones due WHEEL_SIZE ticks later, etc.
+     */
+    private final Crane[] wheel = new Crane[WHEEL_SIZE];
+
+    /**
+     * The current tick of the wheel (used by the timer thread only).
+     */
+    private long currentTick = 0;
+
+    /**
+     * Number of cranes handed to the carriers and not collected from the completion stack yet
+     * (used by the timer thread only).
+     */
+    private int inFlight = 0;
+
+    /**
+     * Heads of the chunks of the current tick and their number, written by the timer before publishing
+     * the claim.
+     */
+    private final Crane[] chunks;
+    private volatile int chunkCount = 0;
+
+    /**
+     * The current tick (high bits) and index of the next chunk to be claimed (low bits).
+     * The tick makes a carrier's stale claim fail once the timer has moved on and reused the chunks.
+     */
+    private final AtomicLong claim = new AtomicLong();
+
+    /**
+     * Cranes that finished their tick, linked through nextCompleted.
+     */
+    private final AtomicReference<Crane> completed = new AtomicReference<>();
+
+    private final Thread[] carriers;
+    private volatile boolean running = true;
+
+    /**
+     * Statistics of the timer: periods it missed entirely (more than TickScheduler's catch-up).
+     */
+    private volatile long droppedTicks = 0;
+
+    /**
+     * Create a fleet and start its carriers.
+     *
+     * @param worlds - the cranes' worlds. Each world must not be advanced by anyone else.
+     * @param periodNanos - tick period in nanoseconds.
+     * @param carrierCount - number of carrier threads.
+     * @param quiescence - criteria of a crane having settled (or null to simulate all the cranes every tick).
+     *
+     * @throws IllegalArgumentException - when the period or the number of carriers isn't positive.
+     */
+    public RealTimeFleet(final World[] worlds, final long periodNanos, final int carrierCount,
+                         final Quiescence quiescence) throws IllegalArgumentException
+    {
+        if (periodNanos <= 0 || carrierCount <= 0) {
+            throw new IllegalArgumentException(
+                    "RealTimeFleet: 'periodNanos' and 'carrierCount' must be positive!");
+        }
+
+        this.periodNanos = periodNanos;
+        this.quiescence = quiescence;
+
+        cranes = new Crane[worlds.length];
+        for (int i = 0; i < worlds.length; ++i) {
+            cranes[i] = new Crane(worlds[i]);
+            schedule(cranes[i], 0);
+        }
+        chunks = new Crane[(worlds.length + CHUNK - 1) / CHUNK];
+
+        carriers = new Thread[carrierCount];
+        for (int c = 0; c < carrierCount; ++c) {
+            carriers[c] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    carry();
+                }
+            }, "glideme-fleet-carrier-" + c);
+            carriers[c].setDaemon(true);
+            carriers[c].start();
+        }
+    }
+
+    /**
+     * Put a crane into the wheel.
+     */
+    private void schedule(final Crane crane, final long tick) {
+        crane.tick = tick;
+
+        final int slot = (int) (tick & (WHEEL_SIZE - 1));
+        crane.next = wheel[slot];
+        wheel[slot] = crane;
+    }
+
+    /**
+     * Run the fleet in real time for the given number of ticks (the calling thread becomes the timer), then wait
+     * for the cranes' ticks in progress to finish.
+     *
+     * @param ticks - number of periods to run.
+     */
+    public void run(final long ticks) {
+        final long end = currentTick + ticks;
+        final TickScheduler scheduler = new TickScheduler(periodNanos, 1);
+
+        if (ticks > 0) {
+            scheduler.run(new Runnable() {
+                @Override
+                public void run() {
+                    advance(scheduler.getScheduledNanos() + periodNanos);
+                    if (currentTick >= end) {
+                        scheduler.stop();
+                    }
+                }
+            });
+        }
+
+        droppedTicks += scheduler.getDroppedTickCount();
+
+        // Take back what hasn't been started and wait for the rest.
+        takeBack(currentTick);
+        while (inFlight > 0) {
+            collect(currentTick);
+            LockSupport.parkNanos(10000L);
+        }
+    }
+
+    /**
+     * Start the next tick: collect the finished cranes, and hand the due ones to the carriers.
+     *
+     * @param deadline - end of the tick's period on the System.nanoTime() scale (taken from the schedule, so
+     *                 that the timer waking up late doesn't move the cranes' deadlines).
+     */
+    private void advance(final long deadline) {
+        final long tick = currentTick++;
+
+        // Cranes of the previous tick no carrier got to are run now (they've missed their deadline).
+        takeBack(tick);
+        collect(tick);
+
+        // The wheel's slot holds the cranes due now (linked into due), and some due in later rounds.
+        Crane due = null;
+        final int slot = (int) (tick & (WHEEL_SIZE - 1));
+        Crane crane = wheel[slot];
+        wheel[slot] = null;
+        while (crane != null) {
+            final Crane following = crane.next;
+            if (crane.tick <= tick) {
+                crane.next = due;
+                due = crane;
+            }
+            else {
+                crane.next = wheel[slot];
+                wheel[slot] = crane;
+            }
+            crane = following;
+        }
+
+        // Split them into chunks (each chain ends with null).
+        int count = 0;
+        while (due != null) {
+            chunks[count++] = due;
+
+            Crane last = due;
+            last.tick = tick;
+            last.deadline = deadline;
+            ++inFlight;
+            for (int i = 1; i < CHUNK && last.next != null; ++i) {
+                last = last.next;
+                last.tick = tick;
+                last.deadline = deadline;
+                ++inFlight;
+            }
+
+            due = last.next;
+            last.next = null;
+        }
+
+        chunkCount = count;
+        claim.set((tick << INDEX_BITS) | 0);
+        for (final Thread carrier : carriers) {
+            LockSupport.unpark(carrier);
+        }
+    }
+
+    /**
+     * Stop the carriers from claiming chunks of the current tick, and put the cranes of the chunks
+     * not claimed yet back into the wheel (they've skipped their tick).
+     *
+     * @param tick - the tick to schedule them at.
+     */
+    private void takeBack(final long tick) {
+        final long previous = claim.getAndSet(claim.get() | INDEX_MASK);
+        final int count = chunkCount;
+
+        for (int c = (int) Math.min(previous & INDEX_MASK, count); c < count; ++c) {
+            Crane crane = chunks[c];
+            while (crane != null) {
+                final Crane following = crane.next;
+
+                ++crane.skipped;
+                --inFlight;
+                schedule(crane, tick);
+
+                crane = following;
+            }
+        }
+    }
+
+    /**
+     * Put the cranes that finished their tick back into the wheel.
+     *
+     * @param tick - the current tick (the earliest they can be scheduled at).
+     */
+    private void collect(final long tick) {
+        Crane crane = completed.getAndSet(null);
+        while (crane != null) {
+            final Crane following = crane.nextCompleted;
+
+            --inFlight;
+            schedule(crane, Math.max(tick, crane.nextTick));
+
+            crane = following;
+        }
+    }
+
+    /**
+     * Run claimed chunks until shut down (on a carrier).
+     */
+    private void carry() {
+        while (running) {
+            final long current = claim.get();
+            final long index = current & INDEX_MASK;
+            if (index >= chunkCount) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            // Read the chunk before claiming it: if the claim succeeds, the timer hasn't reused it meanwhile.
+            Crane crane = chunks[(int) index];
+            if (!claim.compareAndSet(current, current + 1)) {
+                continue;
+            }
+
+            while (crane != null) {
+                final Crane following = crane.next;
+                crane.run(quiescence);
+
+                Crane head;
+                do {
+                    head = completed.get();
+                    crane.nextCompleted = head;
+                } while (!completed.compareAndSet(head, crane));
+
+                crane = following;
+            }
+        }
+    }
+
+    /**
+     * Stop the carriers (after run() has returned).
+     */
+    public void shutdown() {
+        running = false;
+        for (final Thread carrier : carriers) {
+            LockSupport.unpark(carrier);
+        }
+    }
+
+    /**
+     * @return - number of cranes.
+     */
+    public int getCraneCount() {
+        return cranes.length;
+    }
+
+    /**
+     * Statistics are exact between runs (and approximate during one).
+     *
+     * @param crane - index of the crane.
+     *
+     * @return - number of ticks the crane has run.
+     */
+    public long getTickCount(final int crane) {
+        return cranes[crane].ran;
+    }
+
+    /**
+     * @param crane - index of the crane.
+     *
+     * @return - number of the crane's ticks that missed their deadline (finished late, or skipped).
+     */
+    public long getMissCount(final int crane) {
+        return cranes[crane].late + cranes[crane].skipped;
+    }
+
+    /**
+     * @param crane - index of the crane.
+     *
+     * @return - fraction of the crane's ticks that missed their deadline (0 if it hasn't had any).
+     */
+    public double getMissRate(final int crane) {
+        final long scheduled = cranes[crane].ran + cranes[crane].skipped;
+        return scheduled == 0 ? 0.0 : getMissCount(crane) / (double) scheduled;
+    }
+
+    /**
+     * @return - number of periods the timer missed entirely (all cranes fell behind the wall clock by them).
+     */
+    public long getDroppedTickCount() {
+        return droppedTicks;
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - options, see the class description.
+     */
+    public static void main(String[] args) {
+        int craneCount = 10000, carrierCount = Runtime.getRuntime().availableProcessors();
+        double seconds = 10.0;
+        long periodMicros = 1000;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--cranes": craneCount = Integer.parseInt(args[i + 1]); break;
+                case "--carriers": carrierCount = Integer.parseInt(args[i + 1]); break;
+                case "--seconds": seconds = Double.parseDouble(args[i + 1]); break;
+                case "--period": periodMicros = Long.parseLong(args[i + 1]); break;
+                default: throw new IllegalArgumentException("RealTimeFleet: unknown option " + args[i]);
+            }
+        }
+
+        final Random random = new Random(1);
+        final World[] worlds = new World[craneCount];
+        for (int i = 0; i < craneCount; ++i) {
+            worlds[i] = new World(new Regulator());
+            worlds[i].setDestination(random.nextDouble() * World.TRACK_LENGTH);
+        }
+
+        final RealTimeFleet fleet = new RealTimeFleet(worlds, periodMicros * 1000L, carrierCount,
+                Quiescence.DEFAULT);
+        final long ticks = (long) (seconds * 1e6 / periodMicros);
+
+        System.out.printf("%d cranes on %d carriers, %d us period, %.0f s%n", craneCount, carrierCount,
+                periodMicros, seconds);
+
+        // Send every crane somewhere else once a second, so that they don't all settle.
+        final long ticksPerSecond = 1000000L / periodMicros;
+        final long start = System.nanoTime();
+        for (long done = 0; done < ticks; done += ticksPerSecond) {
+            fleet.run(Math.min(ticksPerSecond, ticks - done));
+            for (final World world : worlds) {
+                if (random.nextInt(4) == 0) {
+                    world.setDestination(random.nextDouble() * World.TRACK_LENGTH);
+                }
+            }
+        }
+        final double elapsed = (System.nanoTime() - start) / 1e9;
+
+        fleet.shutdown();
+
+        final double[] rates = new double[craneCount];
+        long ran = 0, missed = 0;
+        for (int i = 0; i < craneCount; ++i) {
+            rates[i] = fleet.getMissRate(i);
+            ran += fleet.getTickCount(i);
+            missed += fleet.getMissCount(i);
+        }
+        Arrays.sort(rates);
+
+        System.out.printf("%.1f s, %d crane ticks run (%.0f/s), %d missed, %d timer ticks dropped%n", elapsed,
+                ran, ran / elapsed, missed, fleet.getDroppedTickCount());
+        System.out.printf("per-crane miss rate: median %.4f%%, p99 %.4f%%, max %.4f%%%n",
+                100.0 * rates[craneCount / 2], 100.0 * rates[Math.min(craneCount - 1, (int) (craneCount * 0.99))],
+                100.0 * rates[craneCount - 1]);
+    }
+}
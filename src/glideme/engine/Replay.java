@@ -0,0 +1,124 @@
+package glideme.engine;
+
+import glideme.Regulator;
+import glideme.RegulatorConfig;
+import glideme.World;
+import glideme.telemetry.TelemetryRecorder;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Re-executes journalled sessions.
+ *
+ * The journal's destination and configuration changes are applied to a fresh world (and its regulator) right
+ * before the ticks they took effect in, and the ticks run back-to-back, without waiting for the wall clock.
+ * Since the simulation is deterministic, the world goes through exactly the same (bit for bit) states as
+ * the recorded one did, only much faster: a long session can be re-run in seconds, e.g. to bisect a controller
+ * regression.
+ */
+public class Replay {
+    private Replay() {}
+
+    /**
+     * Replay a whole journal.
+     *
+     * @param journal - the journal to replay.
+     * @param world - a fresh world (one that hasn't been advanced yet) to replay the journal in.
+     * @param regulator - the world's regulator, with the default configuration (may be null if the journal
+     *                  has no configuration changes).
+     *
+     * @throws IllegalArgumentException - when the world isn't fresh, the journal wasn't started with
+     * a fresh world, or its configuration changes can't be applied.
+     */
+    public static void run(final InputJournal journal, final World world, final Regulator regulator)
+            throws IllegalArgumentException
+    {
+        run(journal, world, regulator, journal.getLastTick());
+    }
+
+    /**
+     * Replay a journal up to the given tick.
+     *
+     * @param journal - the journal to replay.
+     * @param world - a fresh world (one that hasn't been advanced yet) to replay the journal in.
+     * @param regulator - the world's regulator, with the default configuration (may be null if the journal
+     *                  has no configuration changes).
+     * @param untilTick - number of the last tick to replay.
+     *
+     * @throws IllegalArgumentException - when the world isn't fresh, the journal wasn't started with
+     * a fresh world, or its configuration changes can't be applied.
+     */
+    public static void run(final InputJournal journal, final World world, final Regulator regulator,
+                           final long untilTick)
+            throws IllegalArgumentException
+    {
+        if (world.getCraneState().tick != 0) {
+            throw new IllegalArgumentException("Replay: the world has already been advanced!");
+        }
+        if (journal.size() != 0 && journal.getFirstTick() != 1) {
+            throw new IllegalArgumentException("Replay: the journal wasn't started with a fresh world!");
+        }
+
+        final int configCount = journal.getConfigChangeCount();
+        if (configCount != 0 && regulator == null) {
+            throw new IllegalArgumentException("Replay: the journal changes the configuration, "
+                    + "the world's regulator is needed!");
+        }
+        if (regulator != null && regulator.getConfig() != RegulatorConfig.DEFAULT
+                && (configCount == 0 || journal.getConfigChangeTick(0) != 1)) {
+            throw new IllegalArgumentException("Replay: the regulator must start with the default configuration!");
+        }
+
+        int next = 0, nextConfig = 0;
+        final int size = journal.size();
+
+        for (long tick = 1; tick <= untilTick; ++tick) {
+            if (next < size && journal.getTick(next) == tick) {
+                world.setDestination(journal.getDestination(next++));
+            }
+            if (nextConfig < configCount && journal.getConfigChangeTick(nextConfig) == tick) {
+                regulator.setConfig(journal.getConfig(nextConfig++));
+            }
+
+            world.refresh();
+        }
+    }
+
+    /**
+     * Replay a saved journal, print the final state and optionally record the replayed session's telemetry.
+     *
+     * @param args - the journal file and, optionally, a telemetry file to record into.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: Replay JOURNAL [TELEMETRY]");
+            System.exit(2);
+        }
+
+        final InputJournal journal = InputJournal.load(Paths.get(args[0]));
+        final Regulator regulator = new Regulator();
+        final World world = new World(regulator);
+
+        TelemetryRecorder recorder = null;
+        if (args.length == 2) {
+            recorder = new TelemetryRecorder(Paths.get(args[1]),
+                    Math.max(1, Math.min(TelemetryRecorder.MAX_CAPACITY, journal.getLastTick())));
+            world.addTickListener(recorder);
+        }
+
+        final long start = System.nanoTime();
+        run(journal, world, regulator);
+        final long elapsed = System.nanoTime() - start;
+
+        if (recorder != null) {
+            recorder.close();
+        }
+
+        final World.CraneState state = world.getCraneState();
+        System.out.printf("replayed %d ticks (%d destination changes, %d configuration changes) in %.3f s%n",
+                state.tick, journal.size(), journal.getConfigChangeCount(), elapsed / 1e9);
+        System.out.printf("tick=%d, dest=%s, d=%s, v=%s, acc=%s, a=%s%n", state.tick, world.getDestination(),
+                state.position, state.velocity, state.acceleration, state.angle);
+    }
+}
@@ -0,0 +1,112 @@
+package glideme.engine;
+
+import glideme.World;
+
+/**
+ * Advances worlds without any user interface and without waiting for the wall clock.
+ *
+ * Each tick runs the same physics and regulation step as the real-time loop does,
+ * but ticks are executed back-to-back, so a simulated second costs only as much
+ * as computing a thousand steps. Intended for regression runs and offline analysis.
+ */
+public class SimulationEngine {
+    /**
+     * Default tolerance used to decide whether the crane has come to rest.
+     */
+    public static final double DEFAULT_EPSILON = 1e-6;
+
+    private SimulationEngine() {}
+
+    /**
+     * Advance the world by the given number of ticks as fast as possible.
+     *
+     * @param world - the world to advance.
+     * @param ticks - number of time quanta to simulate.
+     *
+     * @throws IllegalArgumentException - when the number of ticks is negative.
+     */
+    public static void run(final World world, final long ticks) throws IllegalArgumentException {
+        if (ticks < 0) {
+            throw new IllegalArgumentException("SimulationEngine: 'ticks' must not be negative!");
+        }
+
+        for (long i = 0; i < ticks; ++i) {
+            world.refresh();
+        }
+    }
+
+    /**
+     * Advance the world until the crane comes to rest (using the default tolerance)
+     * or the tick limit is reached.
+     *
+     * @param world - the world to advance.
+     * @param maxTicks - upper limit on the number of simulated time quanta.
+     *
+     * @return - number of ticks simulated before the crane came to rest, or -1 if it did not stop in time.
+     */
+    public static long runUntilSettled(final World world, final long maxTicks) {
+        return runUntilSettled(world, maxTicks, DEFAULT_EPSILON);
+    }
+
+    /**
+     * Advance the world until the crane comes to rest or the tick limit is reached.
+     * The crane is at rest when both its velocity and acceleration are within the tolerance.
+     * Note that the fuzzy regulator may bring the crane to rest slightly off the destination
+     * and with a residual angle, so callers interested in accuracy should check those separately.
+     *
+     * @param world - the world to advance.
+     * @param maxTicks - upper limit on the number of simulated time quanta.
+     * @param epsilon - tolerance applied to each of the checked quantities.
+     *
+     * @return - number of ticks simulated before the crane came to rest, or -1 if it did not stop in time.
+     *
+     * @throws IllegalArgumentException - when the tick limit or the tolerance is negative.
+     */
+    public static long runUntilSettled(final World world, final long maxTicks, final double epsilon)
+            throws IllegalArgumentException
+    {
+        if (maxTicks < 0 || epsilon < 0) {
+            throw new IllegalArgumentException(
+                    "SimulationEngine: 'maxTicks' and 'epsilon' must not be negative!");
+        }
+
+        final World.CraneState state = new World.CraneState();
+
+        // The regulator only reacts to a new destination during a tick, so at least one tick
+        // must be simulated before a crane standing still can be considered settled.
+        for (long i = 1; i <= maxTicks; ++i) {
+            world.refresh();
+
+            if (isSettled(world.getCraneState(state), epsilon)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Check whether the crane has come to rest.
+     *
+     * @param world - the world to check.
+     * @param epsilon - tolerance applied to each of the checked quantities.
+     *
+     * @return - true if both velocity and acceleration are within the tolerance.
+     */
+    public static boolean isSettled(final World world, final double epsilon) {
+        return isSettled(world.getCraneState(), epsilon);
+    }
+
+    /**
+     * Check whether the crane in the given state is at rest.
+     *
+     * @param state - the crane's state.
+     * @param epsilon - tolerance applied to each of the checked quantities.
+     *
+     * @return - true if both velocity and acceleration are within the tolerance.
+     */
+    private static boolean isSettled(final World.CraneState state, final double epsilon) {
+        return Math.abs(state.velocity) <= epsilon
+                && Math.abs(state.acceleration) <= epsilon;
+    }
+}
@@ -0,0 +1,273 @@
+package glideme.engine;
+
+import glideme.metrics.LatencyHistogram;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a task at a fixed rate, in step with the wall clock.
+ *
+ * Deadlines are kept on the System.nanoTime() scale and never drift: tick N is due exactly N periods after start,
+ * however long the previous ticks or wake-ups took. The thread parks until shortly before a deadline and spins
+ * for the rest, since parking alone is only as precise as the OS timer. When the loop falls behind (the task took
+ * too long, the thread was descheduled...) the missed ticks are run back-to-back to catch up, but at most
+ * maxCatchUp of them at once; anything beyond that is dropped, so that a long stall doesn't turn into
+ * a long burst.
+ *
+ * Wake-up lateness (how long after its deadline a tick actually started) is measured and exposed.
+ */
+public class TickScheduler {
+    /**
+     * How long before a deadline the thread stops parking and starts spinning, in nanoseconds.
+     */
+    public static final long DEFAULT_SPIN_NANOS = 100000L;
+
+    /**
+     * Tick period in nanoseconds.
+     */
+    private final long periodNanos;
+
+    /**
+     * Maximal number of ticks run back-to-back after falling behind.
+     */
+    private final int maxCatchUp;
+
+    /**
+     * How long before a deadline the thread starts spinning.
+     */
+    private final long spinNanos;
+
+    /**
+     * Set to stop the loop.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Set by the task (on the loop thread) to restart the schedule after it has been idle.
+     */
+    private boolean resyncRequested = false;
+
+    /**
+     * When the tick being run was due (written and read by the loop thread only).
+     */
+    private long scheduledNanos = 0;
+
+    /**
+     * Statistics (written by the loop thread only): ticks run, ticks dropped, number of wake-ups,
+     * sum of wake-up lateness, sum of its squares (in microseconds^2, to avoid overflow) and the largest lateness.
+     */
+    private volatile long ticks = 0, droppedTicks = 0, wakeUps = 0, totalLateness = 0, maxLateness = 0;
+    private volatile double totalSquaredLatenessMicros = 0.0;
+
+    /**
+     * Histogram every wake-up's lateness is recorded into (or null).
+     */
+    private volatile LatencyHistogram latenessHistogram = null;
+
+    /**
+     * Create a scheduler spinning for the default time before each deadline.
+     *
+     * @param periodNanos - tick period in nanoseconds.
+     * @param maxCatchUp - maximal number of ticks run back-to-back after falling behind.
+     *
+     * @throws IllegalArgumentException - when the period or the catch-up limit isn't positive.
+     */
+    public TickScheduler(final long periodNanos, final int maxCatchUp) throws IllegalArgumentException {
+        this(periodNanos, maxCatchUp, DEFAULT_SPIN_NANOS);
+    }
+
+    /**
+     * Create a scheduler.
+     *
+     * @param periodNanos - tick period in nanoseconds.
+     * @param maxCatchUp - maximal number of ticks run back-to-back after falling behind.
+     * @param spinNanos - how long before a deadline the thread stops parking and starts spinning
+     *                  (0 to never spin, at least the period to never park).
+     *
+     * @throws IllegalArgumentException - when the period or the catch-up limit isn't positive,
+     * or spinning time is negative.
+     */
+    public TickScheduler(final long periodNanos, final int maxCatchUp, final long spinNanos)
+            throws IllegalArgumentException
+    {
+        if (periodNanos <= 0 || maxCatchUp <= 0 || spinNanos < 0) {
+            throw new IllegalArgumentException(
+                    "TickScheduler: 'periodNanos' and 'maxCatchUp' must be positive, 'spinNanos' non-negative!");
+        }
+
+        this.periodNanos = periodNanos;
+        this.maxCatchUp = maxCatchUp;
+        this.spinNanos = spinNanos;
+    }
+
+    /**
+     * Run the task every period on the current thread, until stopped or interrupted.
+     *
+     * @param task - the task to run.
+     */
+    public void run(final Runnable task) {
+        long deadline = System.nanoTime() + periodNanos;
+
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            if (!waitUntil(deadline)) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final long lateness = now - deadline;
+
+            // Ticks due by now: the one we've waited for and any missed ones.
+            final long due = lateness / periodNanos + 1;
+            final long run = Math.min(due, maxCatchUp);
+
+            long ran = 0;
+            while (ran < run) {
+                scheduledNanos = deadline + ran * periodNanos;
+                task.run();
+                ++ran;
+
+                if (resyncRequested) {
+                    break;
+                }
+            }
+
+            if (resyncRequested) {
+                // The task has been idle on purpose: start afresh rather than catch up.
+                resyncRequested = false;
+                deadline = System.nanoTime() + periodNanos;
+                record(lateness, ran, 0);
+            }
+            else {
+                deadline += due * periodNanos;
+                record(lateness, run, due - run);
+            }
+        }
+    }
+
+    /**
+     * When the tick being run was due: on the schedule's grid, not when the thread actually woke up (ticks run
+     * back-to-back to catch up were due a period apart). To be called by the task.
+     *
+     * @return - the tick's due time on the System.nanoTime() scale.
+     */
+    public long getScheduledNanos() {
+        return scheduledNanos;
+    }
+
+    /**
+     * Restart the schedule from now, instead of catching up with the ticks missed so far.
+     * To be called by the task after it has deliberately blocked (e.g. waiting for work while idle).
+     */
+    public void resync() {
+        resyncRequested = true;
+    }
+
+    /**
+     * Make the loop return after the current tick.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Wait until the deadline: park most of the time, spin at the end.
+     *
+     * @param deadline - the deadline on the System.nanoTime() scale.
+     *
+     * @return - false if the thread was interrupted or the scheduler was stopped while waiting.
+     */
+    private boolean waitUntil(final long deadline) {
+        long remaining;
+
+        while ((remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(this, remaining - spinNanos);
+
+            if (stopped || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+
+        while (deadline - System.nanoTime() > 0) {
+            // Spin.
+        }
+
+        return true;
+    }
+
+    /**
+     * Update statistics after a wake-up.
+     */
+    private void record(final long lateness, final long run, final long dropped) {
+        ticks += run;
+        droppedTicks += dropped;
+        ++wakeUps;
+        totalLateness += lateness;
+        totalSquaredLatenessMicros += (lateness / 1000.0) * (lateness / 1000.0);
+        if (lateness > maxLateness) {
+            maxLateness = lateness;
+        }
+
+        final LatencyHistogram histogram = latenessHistogram;
+        if (histogram != null) {
+            histogram.record(lateness);
+        }
+    }
+
+    /**
+     * Record the lateness of every wake-up into a histogram (in nanoseconds).
+     *
+     * @param histogram - the histogram, or null to stop recording.
+     */
+    public void setLatenessHistogram(final LatencyHistogram histogram) {
+        latenessHistogram = histogram;
+    }
+
+    /**
+     * @return - tick period in nanoseconds.
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    /**
+     * @return - number of ticks run so far.
+     */
+    public long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * @return - number of ticks dropped because the loop fell behind by more than the catch-up limit.
+     */
+    public long getDroppedTickCount() {
+        return droppedTicks;
+    }
+
+    /**
+     * @return - average wake-up lateness in nanoseconds.
+     */
+    public double getMeanLatenessNanos() {
+        final long n = wakeUps;
+        return n == 0 ? 0.0 : totalLateness / (double) n;
+    }
+
+    /**
+     * @return - standard deviation of wake-up lateness (i.e. tick jitter) in nanoseconds.
+     */
+    public double getLatenessDeviationNanos() {
+        final long n = wakeUps;
+        if (n == 0) {
+            return 0.0;
+        }
+
+        final double meanMicros = totalLateness / 1000.0 / n;
+        return 1000.0 * Math.sqrt(Math.max(0.0, totalSquaredLatenessMicros / n - meanMicros * meanMicros));
+    }
+
+    /**
+     * @return - the largest wake-up lateness in nanoseconds.
+     */
+    public long getMaxLatenessNanos() {
+        return maxLateness;
+    }
+}
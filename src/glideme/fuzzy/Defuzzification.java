@@ -0,0 +1,18 @@
+package glideme.fuzzy;
+
+/**
+ * Methods of turning the fuzzy output of the inference into a crisp value.
+ */
+public enum Defuzzification {
+    /**
+     * Sugeno-style: the average of the output terms' representative values (singletons, see FuzzySet.peakValue)
+     * weighted by the terms' degrees of activation.
+     */
+    WEIGHTED_AVERAGE,
+
+    /**
+     * Mamdani-style: the centroid of the union of output sets clipped (or scaled, depending on the t-norm)
+     * to their degrees of activation. Computed on a sampled universe, so the output variable must be bounded.
+     */
+    CENTROID
+}
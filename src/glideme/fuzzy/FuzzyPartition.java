@@ -0,0 +1,261 @@
+package glideme.fuzzy;
+
+import java.util.Arrays;
+
+/**
+ * Fuzzy sets covering a universe, indexed so that the sets with a non-zero degree of membership at a point
+ * can be found without grading all of them.
+ *
+ * The sets' support bounds split the universe into cells: the breakpoints themselves and the open intervals
+ * between them. Within a cell the same sets are non-zero everywhere, so the active sets of every cell are
+ * computed up front; a query only has to locate the point's cell - by binary search over the breakpoints,
+ * or by a single division when they are evenly spaced - and grade the few sets found there.
+ * With the usual overlapping piecewise-linear sets that's at most two of them, however many the partition has.
+ *
+ * Partitions are immutable and may be shared between threads.
+ */
+public class FuzzyPartition {
+    /**
+     * The sets, in the order they were given.
+     */
+    private final FuzzySet[] sets;
+
+    /**
+     * Distinct finite support bounds of the sets, ascending.
+     */
+    private final double[] breakpoints;
+
+    /**
+     * Active sets of every cell, flattened: cell c's sets are cellSets[cellStart[c]] to cellSets[cellStart[c + 1]].
+     * Cell 0 precedes the first breakpoint, cell 2k + 1 is breakpoint k and cell 2k + 2 follows it.
+     */
+    private final int[] cellStart, cellSets;
+
+    /**
+     * The largest number of sets active in any cell.
+     */
+    private final int maxActive;
+
+    /**
+     * Whether the breakpoints are evenly spaced (cells are then located in constant time),
+     * the first of them and the inverse of the spacing.
+     */
+    private final boolean uniform;
+    private final double origin, inverseSpacing;
+
+    /**
+     * Index the given sets.
+     *
+     * @param sets - the sets (their order defines the indices returned by activate()).
+     *
+     * @throws IllegalArgumentException - when there are no sets.
+     */
+    public FuzzyPartition(final FuzzySet... sets) throws IllegalArgumentException {
+        if (sets.length == 0) {
+            throw new IllegalArgumentException("FuzzyPartition: at least one set is required!");
+        }
+
+        this.sets = sets.clone();
+
+        // Collect the finite support bounds.
+        final double[] bounds = new double[2 * sets.length];
+        int count = 0;
+        for (final FuzzySet set : sets) {
+            if (!Double.isInfinite(set.getSupportLow())) {
+                bounds[count++] = set.getSupportLow();
+            }
+            if (!Double.isInfinite(set.getSupportHigh())) {
+                bounds[count++] = set.getSupportHigh();
+            }
+        }
+        Arrays.sort(bounds, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; ++i) {
+            if (distinct == 0 || bounds[i] != bounds[distinct - 1]) {
+                bounds[distinct++] = bounds[i];
+            }
+        }
+        breakpoints = Arrays.copyOf(bounds, distinct);
+
+        // Find the active sets of every cell.
+        final int cells = 2 * distinct + 1;
+        cellStart = new int[cells + 1];
+        final int[] active = new int[cells * sets.length];
+        int total = 0, widest = 0;
+
+        for (int c = 0; c < cells; ++c) {
+            cellStart[c] = total;
+
+            for (int s = 0; s < sets.length; ++s) {
+                if (isActive(sets[s], c)) {
+                    active[total++] = s;
+                }
+            }
+
+            widest = Math.max(widest, total - cellStart[c]);
+        }
+        cellStart[cells] = total;
+        cellSets = Arrays.copyOf(active, total);
+        maxActive = widest;
+
+        // Check whether the breakpoints are evenly spaced.
+        boolean even = distinct >= 2;
+        final double spacing = even ? (breakpoints[distinct - 1] - breakpoints[0]) / (distinct - 1) : 0.0;
+        for (int k = 1; even && k < distinct; ++k) {
+            even = Math.abs(breakpoints[k] - breakpoints[k - 1] - spacing) <= 1e-9 * spacing;
+        }
+        uniform = even && spacing > 0.0;
+        origin = distinct > 0 ? breakpoints[0] : 0.0;
+        inverseSpacing = uniform ? 1.0 / spacing : 0.0;
+    }
+
+    /**
+     * Index the terms of a linguistic variable.
+     *
+     * @param variable - the variable.
+     *
+     * @throws IllegalArgumentException - when the variable has no terms.
+     */
+    public FuzzyPartition(final LinguisticVariable variable) throws IllegalArgumentException {
+        this(termsOf(variable));
+    }
+
+    private static FuzzySet[] termsOf(final LinguisticVariable variable) {
+        final FuzzySet[] terms = new FuzzySet[variable.getTermCount()];
+        for (int t = 0; t < terms.length; ++t) {
+            terms[t] = variable.getTerm(t);
+        }
+
+        return terms;
+    }
+
+    /**
+     * Decide whether a set has a non-zero degree of membership in a cell.
+     */
+    private boolean isActive(final FuzzySet set, final int cell) {
+        if (cell % 2 == 1) {
+            // A breakpoint: just grade it.
+            return set.grade(breakpoints[cell / 2]) > 0.0;
+        }
+
+        // An open interval: the set is non-zero all over it iff it lies within the set's support.
+        final double from = cell == 0 ? Double.NEGATIVE_INFINITY : breakpoints[cell / 2 - 1];
+        final double to = cell / 2 == breakpoints.length ? Double.POSITIVE_INFINITY : breakpoints[cell / 2];
+
+        return set.getSupportLow() <= from && to <= set.getSupportHigh();
+    }
+
+    /**
+     * Find the sets with a non-zero degree of membership of the given point.
+     *
+     * @param point - the point.
+     * @param indices - array the indices of the active sets are stored in (at least getMaxActive() long).
+     * @param grades - array their degrees of membership are stored in (at least getMaxActive() long).
+     *
+     * @return - number of active sets (0 for NaN).
+     */
+    public int activate(final double point, final int[] indices, final double[] grades) {
+        return activate(point, indices, grades, 0);
+    }
+
+    /**
+     * Find the sets with a non-zero degree of membership of the given point, storing them from the given offset
+     * (e.g. to collect the active sets of several partitions in the same arrays).
+     *
+     * @param point - the point.
+     * @param indices - array the indices of the active sets are stored in (at least offset + getMaxActive() long).
+     * @param grades - array their degrees of membership are stored in (at least offset + getMaxActive() long).
+     * @param offset - index the first active set is stored at.
+     *
+     * @return - number of active sets (0 for NaN).
+     */
+    public int activate(final double point, final int[] indices, final double[] grades, final int offset) {
+        final int cell = cellOf(point);
+        if (cell < 0) {
+            return 0;
+        }
+
+        int count = 0;
+        for (int i = cellStart[cell], end = cellStart[cell + 1]; i < end; ++i) {
+            final int s = cellSets[i];
+            final double grade = sets[s].grade(point);
+
+            if (grade > 0.0) {
+                indices[offset + count] = s;
+                grades[offset + count] = grade;
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return - index of the cell the point falls into (-1 for NaN).
+     */
+    private int cellOf(final double point) {
+        if (Double.isNaN(point)) {
+            return -1;
+        }
+
+        // Index of the last breakpoint not greater than the point (-1 if there's none).
+        int k;
+        if (uniform) {
+            final double position = (point - origin) * inverseSpacing;
+            k = position < 0.0 ? -1 : (int) Math.min(position, breakpoints.length - 1);
+
+            // Rounding may put the point next to its actual interval.
+            while (k >= 0 && breakpoints[k] > point) {
+                --k;
+            }
+            while (k + 1 < breakpoints.length && breakpoints[k + 1] <= point) {
+                ++k;
+            }
+        }
+        else {
+            // Branch-free binary search (the comparison's outcome is a coin toss for the CPU's predictor).
+            k = -1;
+            for (int step = Integer.highestOneBit(breakpoints.length); step > 0; step >>>= 1) {
+                final int probe = k + step;
+                k = probe < breakpoints.length && breakpoints[probe] <= point ? probe : k;
+            }
+        }
+
+        if (k < 0) {
+            return 0;
+        }
+
+        return breakpoints[k] == point ? 2 * k + 1 : 2 * k + 2;
+    }
+
+    /**
+     * @return - number of sets in the partition.
+     */
+    public int size() {
+        return sets.length;
+    }
+
+    /**
+     * @param index - index of the set.
+     *
+     * @return - the set.
+     */
+    public FuzzySet getSet(final int index) {
+        return sets[index];
+    }
+
+    /**
+     * @return - the largest number of sets that can be active at once.
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * @return - true if the breakpoints are evenly spaced, so that points are located in constant time.
+     */
+    public boolean isUniform() {
+        return uniform;
+    }
+}
@@ -48,9 +48,21 @@ public class FuzzySet {
     private final MembershipType membershipType;
 
     /**
-     * Characteristic points of the membership function.
+     * Characteristic points of the membership function (start and end are infinite when unspecified).
      */
-    private final Double start, edge, end;
+    private final double start, edge, end;
+
+    /**
+     * The function in a uniform, branch-free form: it's zero outside of [low, high] and elsewhere
+     * min(1, (x - riseStart)/riseWidth, (fallEnd - x)/fallWidth). Pieces the function lacks are
+     * neutralized by an infinite start/end (the quotient is then infinite, i.e. never the minimum).
+     */
+    private final double low, high, riseStart, riseWidth, fallEnd, fallWidth;
+
+    /**
+     * The most representative value of the set.
+     */
+    private final double peak;
 
     /**
      * Create a fuzzy set given by a piecewise-linear membership function.
@@ -65,16 +77,71 @@ public class FuzzySet {
     public FuzzySet(final MembershipType membershipType, final Double start, final Double edge, final Double end)
             throws IllegalArgumentException
     {
-        if (edge == null || (start == null && end == null))
+        this(membershipType,
+                start == null ? Double.NEGATIVE_INFINITY : start,
+                edge == null ? Double.NaN : edge,
+                end == null ? Double.POSITIVE_INFINITY : end);
+    }
+
+    /**
+     * Create a fuzzy set given by a piecewise-linear membership function.
+     *
+     * @param membershipType - membership function type.
+     * @param start - start point of the left piece of the function (-infinity if there's none).
+     * @param edge - the coordinate of the edge.
+     * @param end - end point of the right piece of the function (+infinity if there's none).
+     *
+     * @throws IllegalArgumentException - when edge isn't finite, both start and end are infinite,
+     * or the points are out of order.
+     */
+    public FuzzySet(final MembershipType membershipType, final double start, final double edge, final double end)
+            throws IllegalArgumentException
+    {
+        if (Double.isNaN(edge) || Double.isInfinite(edge)
+                || (start == Double.NEGATIVE_INFINITY && end == Double.POSITIVE_INFINITY))
         {
             throw new IllegalArgumentException(
                     "FuzzySet: 'edge' and at least one of 'start' and 'end' arguments must be specified!");
         }
+        if (!(start <= edge && edge <= end)) {
+            throw new IllegalArgumentException("FuzzySet: expected 'start' <= 'edge' <= 'end'!");
+        }
 
         this.membershipType = membershipType;
         this.start = start;
         this.edge = edge;
         this.end = end;
+
+        low = start;
+        high = end;
+
+        // A falling slope is constant before the edge, so is a rising slope after it.
+        // Infinite or vertical pieces are treated as constant, too.
+        final boolean rises = membershipType != MembershipType.FallingSlope
+                && start != Double.NEGATIVE_INFINITY && start < edge;
+        final boolean falls = membershipType != MembershipType.RisingSlope
+                && end != Double.POSITIVE_INFINITY && edge < end;
+
+        riseStart = rises ? start : Double.NEGATIVE_INFINITY;
+        riseWidth = rises ? edge - start : 1.0;
+        fallEnd = falls ? end : Double.POSITIVE_INFINITY;
+        fallWidth = falls ? end - edge : 1.0;
+
+        if (membershipType == MembershipType.Pyramidal) {
+            // In case of a pyramidal function, the edge is the most representative.
+            peak = edge;
+        }
+        else if (membershipType == MembershipType.FallingSlope) {
+            // In case of an infinite falling slope, it's technically -infinity,
+            // but as it's not very helpful, we return the edge.
+            // Otherwise (in case of a finite falling slope), it's a middle value between start and edge.
+            peak = start == Double.NEGATIVE_INFINITY ? edge : (start + edge)/2.0;
+        }
+        else {
+            // Analogically to the falling slope case, for an infinite rising slope it's an edge
+            // and for a finite one it's a mean of edge and end.
+            peak = end == Double.POSITIVE_INFINITY ? edge : (edge + end)/2.0;
+        }
     }
 
     /**
@@ -86,28 +153,81 @@ public class FuzzySet {
      */
     public double grade(final double point)
     {
-        if (point == edge)
-        {
-            return 1.0;
-        }
+        // Written as a single conditional expression, so that it compiles to a conditional move.
+        return point >= low && point <= high
+                ? Math.min(1.0, Math.min((point - riseStart)/riseWidth, (fallEnd - point)/fallWidth))
+                : 0.0;
+    }
 
-        else if (point < edge) {
-            // We are either on a constant...
-            if (membershipType == MembershipType.FallingSlope) {
-                return (start == null || point >= start)? 1.0 : 0.0;
-            }
+    /**
+     * Determines the degrees of membership of many points at once.
+     * Gives the same results as calling grade(double) for every point, but the loop has no data-dependent
+     * branches and no calls, so it's friendly to the JIT's loop unrolling and vectorization.
+     *
+     * @param in - the points checked.
+     * @param out - the array the degrees of membership are stored in (may be the same as in).
+     * @param n - number of points to process (from the beginning of the arrays).
+     */
+    public void grade(final double[] in, final double[] out, final int n)
+    {
+        final double low = this.low, high = this.high,
+                riseStart = this.riseStart, riseWidth = this.riseWidth,
+                fallEnd = this.fallEnd, fallWidth = this.fallWidth;
 
-            // ... or rising piece of the function (or before it).
-            return point >= start? (point - start)/(edge - start) : 0.0;
+        for (int i = 0; i < n; ++i) {
+            final double point = in[i];
+            out[i] = point >= low && point <= high
+                    ? Math.min(1.0, Math.min((point - riseStart)/riseWidth, (fallEnd - point)/fallWidth))
+                    : 0.0;
         }
+    }
 
-        // We are either on a constant...
-        if (membershipType == MembershipType.RisingSlope) {
-            return (end == null || point <= end)? 1.0 : 0.0;
-        }
+    /**
+     * @return - membership function type.
+     */
+    public MembershipType getMembershipType()
+    {
+        return membershipType;
+    }
+
+    /**
+     * @return - start point of the left piece of the function (-infinity if there's none).
+     */
+    public double getStart()
+    {
+        return start;
+    }
+
+    /**
+     * @return - the coordinate of the edge.
+     */
+    public double getEdge()
+    {
+        return edge;
+    }
+
+    /**
+     * @return - end point of the right piece of the function (+infinity if there's none).
+     */
+    public double getEnd()
+    {
+        return end;
+    }
 
-        // ... or falling part of the function (or after it).
-        return point <= end? (end - point)/(end - edge) : 0.0;
+    /**
+     * @return - the lower bound of the set's support (the degree of membership is zero below it).
+     */
+    double getSupportLow()
+    {
+        return low;
+    }
+
+    /**
+     * @return - the upper bound of the set's support (the degree of membership is zero above it).
+     */
+    double getSupportHigh()
+    {
+        return high;
     }
 
     /**
@@ -117,27 +237,6 @@ public class FuzzySet {
      */
     public double peakValue()
     {
-        // In case of a pyramidal function, the edge is the most representative.
-        if (membershipType == MembershipType.Pyramidal) {
-            return edge;
-        }
-        else if (membershipType == MembershipType.FallingSlope) {
-            // In case of an infinite falling slope, it's technically -infinity,
-            // but as it's not very helpful, we return the edge.
-            if (start == null) {
-                return edge;
-            }
-
-            // Otherwise (in case of a finite falling slope), it's a middle value between start and edge.
-            return (start + edge)/2.0;
-        }
-
-        // Analogically to the falling slope case, for an infinite rising slope it's an edge
-        // and for a finite one it's a mean of edge and end.
-        if (end == null) {
-            return edge;
-        }
-
-        return (edge + end)/2.0;
+        return peak;
     }
 }
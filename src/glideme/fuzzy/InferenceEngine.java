@@ -0,0 +1,630 @@
+package glideme.fuzzy;
+
+/**
+ * A rule base compiled into flat primitive tables.
+ *
+ * Evaluation fuzzifies every input against its terms, computes each rule's strength with the t-norm,
+ * aggregates strengths of rules sharing a consequent with the s-norm and defuzzifies the result.
+ * In a large rule base, a single input is only graded against the terms its FuzzyPartition reports active,
+ * and only rules of those terms are fired (looked up by their antecedents): a rule with a zero antecedent
+ * has zero strength, which would leave the aggregation unchanged anyway. Small rule bases and batches
+ * are evaluated densely, since branch-free sweeps over everything are faster there.
+ * The engine itself is immutable and may be shared between threads; all scratch memory lives in
+ * a Workspace (or a BatchWorkspace when evaluating many inputs at once), which has to be confined
+ * to a single thread.
+ */
+public class InferenceEngine {
+    /**
+     * Scratch memory used during evaluation. Create one per thread with newWorkspace().
+     */
+    public static class Workspace {
+        /**
+         * Degrees of membership of the inputs to every input term (flattened, see termInput).
+         */
+        final double[] grades;
+
+        /**
+         * Aggregated activation of every output term.
+         */
+        final double[] activations;
+
+        /**
+         * Terms active for the current inputs, input after input, and their degrees of membership.
+         */
+        final int[] active;
+        final double[] activeGrades;
+
+        /**
+         * Keys of every input's options (see keyStart), input after input, where each input's options end
+         * and the option chosen for each input.
+         */
+        final int[] options, optionEnd, choice;
+
+        /**
+         * Rules fired for the current inputs and their strengths.
+         */
+        final int[] fired;
+        final double[] strengths;
+
+        Workspace(final int termCount, final int inputCount, final int outputTermCount, final int ruleCount) {
+            grades = new double[termCount];
+            activations = new double[outputTermCount];
+            active = new int[termCount];
+            activeGrades = new double[termCount];
+            options = new int[termCount + inputCount];
+            optionEnd = new int[inputCount];
+            choice = new int[inputCount];
+            fired = new int[ruleCount];
+            strengths = new double[ruleCount];
+        }
+    }
+
+    /**
+     * Scratch memory used during batch evaluation. Create one per thread with newBatchWorkspace().
+     */
+    public static class BatchWorkspace {
+        /**
+         * Maximal number of inputs evaluated at once.
+         */
+        final int capacity;
+
+        /**
+         * Degrees of membership to every input term, a column per term.
+         */
+        final double[][] grades;
+
+        /**
+         * Activation of every output term, a column per term.
+         */
+        final double[][] activations;
+
+        /**
+         * Strengths of the rule being evaluated.
+         */
+        final double[] strengths;
+
+        /**
+         * Activations of the output terms for a single input (used by centroid defuzzification).
+         */
+        final double[] single;
+
+        BatchWorkspace(final int capacity, final int termCount, final int outputTermCount) {
+            this.capacity = capacity;
+            grades = new double[termCount][capacity];
+            activations = new double[outputTermCount][capacity];
+            strengths = new double[capacity];
+            single = new double[outputTermCount];
+        }
+    }
+
+    /**
+     * Smallest rule base evaluated sparsely: with fewer rules, grading every term and firing every rule
+     * (which is branch-free) is faster than finding the active ones.
+     */
+    static final int SPARSE_MIN_RULES = 32;
+
+    /**
+     * Largest number of possible antecedent combinations (i.e. the size of the rule index) of a sparse engine.
+     */
+    static final int MAX_KEYS = 1 << 16;
+
+    private final TNorm and;
+    private final SNorm or;
+    private final Defuzzification defuzzification;
+
+    private final int inputCount;
+
+    /**
+     * Fuzzy sets of all input terms, input after input.
+     */
+    private final FuzzySet[] terms;
+
+    /**
+     * Index of every input's first term, and the input's terms indexed by their supports.
+     */
+    private final int[] termOffset;
+    private final FuzzyPartition[] partitions;
+
+    /**
+     * Rules indexed by their antecedents: every rule has a key, the sum over the inputs of the input's stride times
+     * 1 + the (local) index of the rule's term (0 if the rule doesn't depend on the input). Rules with key k are
+     * keyRules[keyStart[k]] to keyRules[keyStart[k + 1]], in rule order.
+     */
+    private final int[] strides, keyStart, keyRules;
+
+    /**
+     * Whether any rule doesn't depend on the input (the "any" key then has to be looked up, too).
+     */
+    private final boolean[] hasAny;
+
+    /**
+     * Whether only the rules of the active terms are fired (see SPARSE_MIN_RULES).
+     */
+    private final boolean sparse;
+
+    /**
+     * Index of the input each of the terms describes.
+     */
+    private final int[] termInput;
+
+    /**
+     * Rules' antecedents: inputCount consecutive entries per rule, each an index into the terms
+     * (or -1 if the rule doesn't depend on the input).
+     */
+    private final int[] antecedents;
+
+    /**
+     * Rules' consequents: index of the output term per rule.
+     */
+    private final int[] consequents;
+
+    /**
+     * Representative value of every output term (used by weighted average defuzzification).
+     */
+    private final double[] singletons;
+
+    /**
+     * Sampled output universe and the output terms' degrees of membership at every sample
+     * (term after term, used by centroid defuzzification).
+     */
+    private final double[] samples;
+    private final double[] sampleGrades;
+
+    InferenceEngine(final RuleBase rules, final TNorm and, final SNorm or, final Defuzzification defuzzification,
+                    final int centroidResolution)
+    {
+        this.and = and;
+        this.or = or;
+        this.defuzzification = defuzzification;
+
+        inputCount = rules.getInputCount();
+
+        // Flatten input terms, remembering where every input's terms start.
+        termOffset = new int[inputCount];
+        int termCount = 0;
+        for (int i = 0; i < inputCount; ++i) {
+            termOffset[i] = termCount;
+            termCount += rules.getInput(i).getTermCount();
+        }
+
+        terms = new FuzzySet[termCount];
+        termInput = new int[termCount];
+        for (int i = 0; i < inputCount; ++i) {
+            final LinguisticVariable input = rules.getInput(i);
+            for (int t = 0; t < input.getTermCount(); ++t) {
+                terms[termOffset[i] + t] = input.getTerm(t);
+                termInput[termOffset[i] + t] = i;
+            }
+        }
+
+        final int ruleCount = rules.getRuleCount();
+        antecedents = new int[ruleCount * inputCount];
+        consequents = new int[ruleCount];
+        for (int r = 0; r < ruleCount; ++r) {
+            for (int i = 0; i < inputCount; ++i) {
+                final int term = rules.getAntecedent(r, i);
+                antecedents[r * inputCount + i] = term < 0 ? -1 : termOffset[i] + term;
+            }
+            consequents[r] = rules.getConsequent(r);
+        }
+
+        partitions = new FuzzyPartition[inputCount];
+        for (int i = 0; i < inputCount; ++i) {
+            partitions[i] = new FuzzyPartition(rules.getInput(i));
+        }
+
+        // Index rules by their antecedents, unless there are too few of them or too many possible keys.
+        strides = new int[inputCount];
+        hasAny = new boolean[inputCount];
+        long keyCount = 1;
+        for (int i = 0; i < inputCount; ++i) {
+            strides[i] = (int) Math.min(keyCount, Integer.MAX_VALUE);
+            keyCount *= partitions[i].size() + 1;
+        }
+        sparse = ruleCount >= SPARSE_MIN_RULES && keyCount <= MAX_KEYS;
+
+        keyStart = new int[sparse ? (int) keyCount + 1 : 0];
+        keyRules = new int[sparse ? ruleCount : 0];
+        if (sparse) {
+            final int[] keys = new int[ruleCount];
+            for (int r = 0; r < ruleCount; ++r) {
+                for (int i = 0; i < inputCount; ++i) {
+                    final int term = antecedents[r * inputCount + i];
+                    if (term < 0) {
+                        hasAny[i] = true;
+                    }
+                    else {
+                        keys[r] += strides[i] * (term - termOffset[i] + 1);
+                    }
+                }
+                ++keyStart[keys[r] + 1];
+            }
+
+            for (int k = 0; k < keyCount; ++k) {
+                keyStart[k + 1] += keyStart[k];
+            }
+
+            final int[] filled = keyStart.clone();
+            for (int r = 0; r < ruleCount; ++r) {
+                keyRules[filled[keys[r]]++] = r;
+            }
+        }
+
+        final LinguisticVariable output = rules.getOutput();
+        final int outputTermCount = output.getTermCount();
+        singletons = new double[outputTermCount];
+        for (int t = 0; t < outputTermCount; ++t) {
+            singletons[t] = output.getTerm(t).peakValue();
+        }
+
+        if (defuzzification == Defuzzification.CENTROID) {
+            samples = new double[centroidResolution];
+            sampleGrades = new double[outputTermCount * centroidResolution];
+
+            final double step = (output.getMax() - output.getMin()) / (centroidResolution - 1);
+            for (int s = 0; s < centroidResolution; ++s) {
+                samples[s] = output.getMin() + s * step;
+                for (int t = 0; t < outputTermCount; ++t) {
+                    sampleGrades[t * centroidResolution + s] = output.getTerm(t).grade(samples[s]);
+                }
+            }
+        }
+        else {
+            samples = null;
+            sampleGrades = null;
+        }
+    }
+
+    /**
+     * @return - a new scratch memory for this engine.
+     */
+    public Workspace newWorkspace() {
+        return new Workspace(terms.length, inputCount, singletons.length, consequents.length);
+    }
+
+    /**
+     * @param capacity - maximal number of inputs to be evaluated at once.
+     *
+     * @return - a new scratch memory for batch evaluation with this engine.
+     */
+    public BatchWorkspace newBatchWorkspace(final int capacity) {
+        return new BatchWorkspace(capacity, terms.length, singletons.length);
+    }
+
+    /**
+     * @return - number of inputs the engine expects.
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * Evaluate the rules for the given crisp inputs.
+     *
+     * @param inputs - values of the input variables (in order of the rule base's inputs).
+     * @param workspace - scratch memory created by this engine.
+     *
+     * @return - the crisp output (NaN if none of the rules was activated).
+     */
+    public double evaluate(final double[] inputs, final Workspace workspace) {
+        if (!sparse) {
+            return evaluateDense(inputs, workspace);
+        }
+
+        // Grades of inactive terms are zero between evaluations; only the active ones are written (and cleared).
+        final double[] grades = workspace.grades;
+        final double[] activations = workspace.activations;
+        final int[] active = workspace.active;
+        final double[] activeGrades = workspace.activeGrades;
+
+        // Fuzzification: collect every input's options, i.e. the keys of its active terms (and 0 for "any").
+        final int[] options = workspace.options;
+        final int[] optionEnd = workspace.optionEnd;
+        int activeCount = 0, optionCount = 0;
+        boolean feasible = true;
+
+        for (int i = 0; i < inputCount; ++i) {
+            final int count = partitions[i].activate(inputs[i], active, activeGrades, activeCount);
+
+            for (int k = activeCount; k < activeCount + count; ++k) {
+                options[optionCount++] = strides[i] * (active[k] + 1);
+                active[k] += termOffset[i];
+                grades[active[k]] = activeGrades[k];
+            }
+            if (hasAny[i]) {
+                options[optionCount++] = 0;
+            }
+
+            optionEnd[i] = optionCount;
+            feasible &= optionCount > (i == 0 ? 0 : optionEnd[i - 1]);
+            activeCount += count;
+        }
+
+        // Reasoning: fire the rules of every combination of the options.
+        final int[] choice = workspace.choice;
+        int firedCount = 0;
+
+        for (int i = 0; i < inputCount; ++i) {
+            choice[i] = i == 0 ? 0 : optionEnd[i - 1];
+        }
+
+        while (feasible) {
+            int key = 0;
+            for (int i = 0; i < inputCount; ++i) {
+                key += options[choice[i]];
+            }
+
+            firedCount = fire(keyStart[key], keyStart[key + 1], grades, workspace, firedCount);
+
+            // Next combination (the first input's option changes the fastest).
+            int i = 0;
+            while (i < inputCount && ++choice[i] == optionEnd[i]) {
+                choice[i] = i == 0 ? 0 : optionEnd[i - 1];
+                ++i;
+            }
+            feasible = i < inputCount;
+        }
+
+        for (int k = 0; k < activeCount; ++k) {
+            grades[active[k]] = 0.0;
+        }
+
+        for (int t = 0; t < activations.length; ++t) {
+            activations[t] = 0.0;
+        }
+
+        final int[] fired = workspace.fired;
+        final double[] strengths = workspace.strengths;
+        if (or != SNorm.MAX) {
+            // Only the maximum is exactly order-independent in floating point: aggregate in rule order,
+            // as if every rule was fired.
+            sortFired(fired, strengths, firedCount);
+        }
+
+        for (int f = 0; f < firedCount; ++f) {
+            final int consequent = consequents[fired[f]];
+            activations[consequent] = or.apply(activations[consequent], strengths[f]);
+        }
+
+        // Defuzzification:
+        return defuzzification == Defuzzification.CENTROID ? centroid(activations) : weightedAverage(activations);
+    }
+
+    /**
+     * Evaluate the rules for the given crisp inputs, grading every term and firing every rule.
+     */
+    private double evaluateDense(final double[] inputs, final Workspace workspace) {
+        final double[] grades = workspace.grades;
+        final double[] activations = workspace.activations;
+
+        // Fuzzification:
+        for (int t = 0; t < terms.length; ++t) {
+            grades[t] = terms[t].grade(inputs[termInput[t]]);
+        }
+
+        // Reasoning:
+        for (int t = 0; t < activations.length; ++t) {
+            activations[t] = 0.0;
+        }
+
+        for (int r = 0, a = 0; r < consequents.length; ++r) {
+            // 1.0 is the identity of every t-norm.
+            double strength = 1.0;
+
+            for (final int end = a + inputCount; a < end; ++a) {
+                final int term = antecedents[a];
+                if (term >= 0) {
+                    strength = and.apply(strength, grades[term]);
+                }
+            }
+
+            final int consequent = consequents[r];
+            activations[consequent] = or.apply(activations[consequent], strength);
+        }
+
+        // Defuzzification:
+        return defuzzification == Defuzzification.CENTROID ? centroid(activations) : weightedAverage(activations);
+    }
+
+    /**
+     * Compute strengths of candidate rules, appending the ones with non-zero strength to the fired rules.
+     *
+     * @param from - index of the first candidate in the rule index.
+     * @param to - index past the last candidate.
+     * @param grades - degrees of membership to every input term.
+     * @param workspace - the workspace the fired rules are stored in.
+     * @param firedCount - number of rules fired so far.
+     *
+     * @return - number of rules fired now.
+     */
+    private int fire(final int from, final int to, final double[] grades, final Workspace workspace,
+                     int firedCount) {
+        for (int c = from; c < to; ++c) {
+            final int r = keyRules[c];
+
+            // 1.0 is the identity of every t-norm.
+            double strength = 1.0;
+
+            for (int a = r * inputCount, end = a + inputCount; a < end; ++a) {
+                final int term = antecedents[a];
+                if (term >= 0) {
+                    strength = and.apply(strength, grades[term]);
+                }
+            }
+
+            // Zero is the identity of every s-norm, such a rule wouldn't change the activations.
+            if (strength > 0.0) {
+                workspace.fired[firedCount] = r;
+                workspace.strengths[firedCount] = strength;
+                ++firedCount;
+            }
+        }
+
+        return firedCount;
+    }
+
+    /**
+     * Sort fired rules by their index (insertion sort, there are only a few of them).
+     */
+    private static void sortFired(final int[] fired, final double[] strengths, final int count) {
+        for (int f = 1; f < count; ++f) {
+            final int rule = fired[f];
+            final double strength = strengths[f];
+
+            int g = f - 1;
+            while (g >= 0 && fired[g] > rule) {
+                fired[g + 1] = fired[g];
+                strengths[g + 1] = strengths[g];
+                --g;
+            }
+            fired[g + 1] = rule;
+            strengths[g + 1] = strength;
+        }
+    }
+
+    /**
+     * Evaluate the rules for many crisp inputs at once.
+     * Every stage sweeps whole columns, which gives the same results as evaluate(double[], Workspace)
+     * called for every set of inputs, just faster.
+     *
+     * @param inputs - columns of values of the input variables (in order of the rule base's inputs).
+     * @param outputs - the column the crisp outputs are stored in.
+     * @param n - number of inputs to evaluate (from the beginning of the columns), at most the workspace's capacity.
+     * @param workspace - scratch memory created by this engine.
+     *
+     * @throws IllegalArgumentException - when there are more inputs than the workspace can hold.
+     */
+    public void evaluate(final double[][] inputs, final double[] outputs, final int n, final BatchWorkspace workspace)
+            throws IllegalArgumentException
+    {
+        if (n > workspace.capacity) {
+            throw new IllegalArgumentException("InferenceEngine: batch of " + n + " exceeds the workspace's capacity!");
+        }
+
+        final double[][] grades = workspace.grades;
+        final double[][] activations = workspace.activations;
+        final double[] strengths = workspace.strengths;
+
+        // Fuzzification:
+        for (int t = 0; t < terms.length; ++t) {
+            terms[t].grade(inputs[termInput[t]], grades[t], n);
+        }
+
+        // Reasoning:
+        for (final double[] activation : activations) {
+            for (int i = 0; i < n; ++i) {
+                activation[i] = 0.0;
+            }
+        }
+
+        for (int r = 0, a = 0; r < consequents.length; ++r) {
+            for (int i = 0; i < n; ++i) {
+                strengths[i] = 1.0;
+            }
+
+            for (final int end = a + inputCount; a < end; ++a) {
+                final int term = antecedents[a];
+                if (term >= 0) {
+                    conjunct(strengths, grades[term], n);
+                }
+            }
+
+            disjunct(activations[consequents[r]], strengths, n);
+        }
+
+        // Defuzzification:
+        if (defuzzification == Defuzzification.CENTROID) {
+            final double[] single = workspace.single;
+
+            for (int i = 0; i < n; ++i) {
+                for (int t = 0; t < single.length; ++t) {
+                    single[t] = activations[t][i];
+                }
+                outputs[i] = centroid(single);
+            }
+            return;
+        }
+
+        for (int i = 0; i < n; ++i) {
+            double weighted = 0.0, total = 0.0;
+
+            for (int t = 0; t < singletons.length; ++t) {
+                weighted += singletons[t] * activations[t][i];
+                total += activations[t][i];
+            }
+
+            outputs[i] = weighted / total;
+        }
+    }
+
+    /**
+     * Combine a column of strengths with a column of grades using the t-norm (in place).
+     */
+    private void conjunct(final double[] strengths, final double[] grades, final int n) {
+        if (and == TNorm.MIN) {
+            for (int i = 0; i < n; ++i) {
+                strengths[i] = Math.min(strengths[i], grades[i]);
+            }
+        }
+        else {
+            for (int i = 0; i < n; ++i) {
+                strengths[i] = and.apply(strengths[i], grades[i]);
+            }
+        }
+    }
+
+    /**
+     * Aggregate a column of strengths into a column of activations using the s-norm (in place).
+     */
+    private void disjunct(final double[] activations, final double[] strengths, final int n) {
+        if (or == SNorm.MAX) {
+            for (int i = 0; i < n; ++i) {
+                activations[i] = Math.max(activations[i], strengths[i]);
+            }
+        }
+        else {
+            for (int i = 0; i < n; ++i) {
+                activations[i] = or.apply(activations[i], strengths[i]);
+            }
+        }
+    }
+
+    /**
+     * @param activations - activation of every output term.
+     *
+     * @return - the average of the output singletons weighted by their activations.
+     */
+    private double weightedAverage(final double[] activations) {
+        double weighted = 0.0, total = 0.0;
+
+        for (int t = 0; t < activations.length; ++t) {
+            weighted += singletons[t] * activations[t];
+            total += activations[t];
+        }
+
+        return weighted / total;
+    }
+
+    /**
+     * @param activations - activation of every output term.
+     *
+     * @return - the centroid of the aggregated output set.
+     */
+    private double centroid(final double[] activations) {
+        final int resolution = samples.length;
+        double weighted = 0.0, total = 0.0;
+
+        for (int s = 0; s < resolution; ++s) {
+            double grade = 0.0;
+
+            for (int t = 0; t < activations.length; ++t) {
+                grade = or.apply(grade, and.apply(activations[t], sampleGrades[t * resolution + s]));
+            }
+
+            weighted += samples[s] * grade;
+            total += grade;
+        }
+
+        return weighted / total;
+    }
+}
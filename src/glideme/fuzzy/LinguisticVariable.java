@@ -0,0 +1,150 @@
+package glideme.fuzzy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A linguistic variable: a named quantity described by a list of named fuzzy sets (terms),
+ * e.g. "distance" described by "negative", "zero" and "positive".
+ *
+ * Terms keep the order in which they were added, the inference engine refers to them by that order.
+ */
+public class LinguisticVariable {
+    /**
+     * Variable's name.
+     */
+    private final String name;
+
+    /**
+     * Bounds of the variable's universe (NaN when unspecified).
+     */
+    private final double min, max;
+
+    /**
+     * Names of the terms.
+     */
+    private final List<String> termNames = new ArrayList<>();
+
+    /**
+     * Fuzzy sets describing the terms (in the same order as the names).
+     */
+    private final List<FuzzySet> terms = new ArrayList<>();
+
+    /**
+     * Create a variable with an unbounded universe.
+     *
+     * @param name - variable's name.
+     */
+    public LinguisticVariable(final String name) {
+        this.name = name;
+        this.min = Double.NaN;
+        this.max = Double.NaN;
+    }
+
+    /**
+     * Create a variable with a bounded universe (needed if it is to be defuzzified by its centroid).
+     *
+     * @param name - variable's name.
+     * @param min - the lowest value of the variable.
+     * @param max - the highest value of the variable.
+     *
+     * @throws IllegalArgumentException - when the bounds don't form a non-empty range.
+     */
+    public LinguisticVariable(final String name, final double min, final double max)
+            throws IllegalArgumentException
+    {
+        if (!(min < max)) {
+            throw new IllegalArgumentException("LinguisticVariable: 'min' must be lower than 'max'!");
+        }
+
+        this.name = name;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Add a term described by the given fuzzy set.
+     *
+     * @param termName - name of the term, unique within the variable.
+     * @param set - the fuzzy set describing the term.
+     *
+     * @return - this variable.
+     *
+     * @throws IllegalArgumentException - when a term of that name already exists.
+     */
+    public LinguisticVariable addTerm(final String termName, final FuzzySet set) throws IllegalArgumentException {
+        if (termNames.contains(termName)) {
+            throw new IllegalArgumentException(
+                    "LinguisticVariable: '" + name + "' already has a term called '" + termName + "'!");
+        }
+
+        termNames.add(termName);
+        terms.add(set);
+
+        return this;
+    }
+
+    /**
+     * @return - variable's name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return - true if the variable's universe is bounded.
+     */
+    public boolean isBounded() {
+        return !Double.isNaN(min);
+    }
+
+    /**
+     * @return - the lowest value of the variable (NaN if unbounded).
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * @return - the highest value of the variable (NaN if unbounded).
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * @return - number of terms.
+     */
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * @param index - index of the term.
+     *
+     * @return - the fuzzy set describing the term.
+     */
+    public FuzzySet getTerm(final int index) {
+        return terms.get(index);
+    }
+
+    /**
+     * @param index - index of the term.
+     *
+     * @return - name of the term.
+     */
+    public String getTermName(final int index) {
+        return termNames.get(index);
+    }
+
+    /**
+     * Find a term by its name.
+     *
+     * @param termName - name of the term.
+     *
+     * @return - index of the term, or -1 if there's no such term.
+     */
+    public int indexOf(final String termName) {
+        return termNames.indexOf(termName);
+    }
+}
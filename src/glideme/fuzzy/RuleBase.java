@@ -0,0 +1,193 @@
+package glideme.fuzzy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of fuzzy "IF input1 IS term AND input2 IS term ... THEN output IS term" rules.
+ *
+ * The rule base is only a description: before use it has to be compiled into an InferenceEngine,
+ * which evaluates the rules from flat tables without allocating anything.
+ */
+public class RuleBase {
+    /**
+     * Default number of samples of the output universe used by centroid defuzzification.
+     */
+    public static final int DEFAULT_CENTROID_RESOLUTION = 101;
+
+    /**
+     * Input variables (in the order antecedents are given in).
+     */
+    private final LinguisticVariable[] inputs;
+
+    /**
+     * Output variable.
+     */
+    private final LinguisticVariable output;
+
+    /**
+     * Antecedents of the rules: for each rule, index of the term of every input (or -1 if the input's irrelevant).
+     */
+    private final List<int[]> antecedents = new ArrayList<>();
+
+    /**
+     * Consequents of the rules: index of the output term of every rule.
+     */
+    private final List<Integer> consequents = new ArrayList<>();
+
+    /**
+     * Create an empty rule base.
+     *
+     * @param inputs - input variables.
+     * @param output - output variable.
+     *
+     * @throws IllegalArgumentException - when there are no inputs.
+     */
+    public RuleBase(final LinguisticVariable[] inputs, final LinguisticVariable output)
+            throws IllegalArgumentException
+    {
+        if (inputs.length == 0) {
+            throw new IllegalArgumentException("RuleBase: at least one input variable is required!");
+        }
+
+        this.inputs = inputs.clone();
+        this.output = output;
+    }
+
+    /**
+     * Add a rule.
+     *
+     * @param consequent - name of the output term the rule implies.
+     * @param antecedentTerms - names of terms of the input variables (in order of the inputs).
+     *                        A null means that the rule doesn't depend on that input.
+     *
+     * @return - this rule base.
+     *
+     * @throws IllegalArgumentException - when the number of antecedents doesn't match the number of inputs,
+     * or any of the terms doesn't exist.
+     */
+    public RuleBase addRule(final String consequent, final String... antecedentTerms)
+            throws IllegalArgumentException
+    {
+        if (antecedentTerms.length != inputs.length) {
+            throw new IllegalArgumentException("RuleBase: expected " + inputs.length + " antecedents, got "
+                    + antecedentTerms.length + "!");
+        }
+
+        final int consequentIndex = output.indexOf(consequent);
+        if (consequentIndex < 0) {
+            throw new IllegalArgumentException(
+                    "RuleBase: '" + output.getName() + "' has no term called '" + consequent + "'!");
+        }
+
+        final int[] rule = new int[inputs.length];
+        for (int i = 0; i < inputs.length; ++i) {
+            if (antecedentTerms[i] == null) {
+                rule[i] = -1;
+                continue;
+            }
+
+            rule[i] = inputs[i].indexOf(antecedentTerms[i]);
+            if (rule[i] < 0) {
+                throw new IllegalArgumentException(
+                        "RuleBase: '" + inputs[i].getName() + "' has no term called '" + antecedentTerms[i] + "'!");
+            }
+        }
+
+        antecedents.add(rule);
+        consequents.add(consequentIndex);
+
+        return this;
+    }
+
+    /**
+     * @return - number of input variables.
+     */
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * @param index - index of the input.
+     *
+     * @return - the input variable.
+     */
+    public LinguisticVariable getInput(final int index) {
+        return inputs[index];
+    }
+
+    /**
+     * @return - the output variable.
+     */
+    public LinguisticVariable getOutput() {
+        return output;
+    }
+
+    /**
+     * @return - number of rules.
+     */
+    public int getRuleCount() {
+        return consequents.size();
+    }
+
+    /**
+     * @param rule - index of the rule.
+     * @param input - index of the input.
+     *
+     * @return - index of the input's term in the rule's antecedent (or -1 if the rule doesn't depend on the input).
+     */
+    public int getAntecedent(final int rule, final int input) {
+        return antecedents.get(rule)[input];
+    }
+
+    /**
+     * @param rule - index of the rule.
+     *
+     * @return - index of the output term implied by the rule.
+     */
+    public int getConsequent(final int rule) {
+        return consequents.get(rule);
+    }
+
+    /**
+     * Compile the rules into an inference engine.
+     *
+     * @param and - t-norm combining antecedents (and the rule's strength with the output set when using centroids).
+     * @param or - s-norm aggregating rules with the same consequent.
+     * @param defuzzification - method of computing the crisp output.
+     *
+     * @return - the compiled engine.
+     *
+     * @throws IllegalArgumentException - when centroid defuzzification is requested for an unbounded output.
+     */
+    public InferenceEngine compile(final TNorm and, final SNorm or, final Defuzzification defuzzification)
+            throws IllegalArgumentException
+    {
+        return compile(and, or, defuzzification, DEFAULT_CENTROID_RESOLUTION);
+    }
+
+    /**
+     * Compile the rules into an inference engine.
+     *
+     * @param and - t-norm combining antecedents (and the rule's strength with the output set when using centroids).
+     * @param or - s-norm aggregating rules with the same consequent.
+     * @param defuzzification - method of computing the crisp output.
+     * @param centroidResolution - number of samples of the output universe (only used by centroid defuzzification).
+     *
+     * @return - the compiled engine.
+     *
+     * @throws IllegalArgumentException - when centroid defuzzification is requested for an unbounded output
+     * or with less than two samples.
+     */
+    public InferenceEngine compile(final TNorm and, final SNorm or, final Defuzzification defuzzification,
+                                   final int centroidResolution)
+            throws IllegalArgumentException
+    {
+        if (defuzzification == Defuzzification.CENTROID && (!output.isBounded() || centroidResolution < 2)) {
+            throw new IllegalArgumentException(
+                    "RuleBase: centroid defuzzification needs a bounded output and at least two samples!");
+        }
+
+        return new InferenceEngine(this, and, or, defuzzification, centroidResolution);
+    }
+}
@@ -0,0 +1,36 @@
+package glideme.fuzzy;
+
+/**
+ * Triangular conorms used as fuzzy disjunction (OR), i.e. to aggregate rules sharing a consequent.
+ */
+public enum SNorm {
+    /**
+     * Zadeh's (maximum) s-norm.
+     */
+    MAX {
+        @Override
+        public double apply(final double a, final double b) {
+            return Math.max(a, b);
+        }
+    },
+
+    /**
+     * Probabilistic sum s-norm.
+     */
+    PROBABILISTIC_SUM {
+        @Override
+        public double apply(final double a, final double b) {
+            return a + b - a * b;
+        }
+    };
+
+    /**
+     * Combine two degrees of membership.
+     *
+     * @param a - first degree of membership.
+     * @param b - second degree of membership.
+     *
+     * @return - degree of membership of the disjunction.
+     */
+    public abstract double apply(double a, double b);
+}
@@ -0,0 +1,36 @@
+package glideme.fuzzy;
+
+/**
+ * Triangular norms used as fuzzy conjunction (AND) of rule antecedents.
+ */
+public enum TNorm {
+    /**
+     * Zadeh's (minimum) t-norm.
+     */
+    MIN {
+        @Override
+        public double apply(final double a, final double b) {
+            return Math.min(a, b);
+        }
+    },
+
+    /**
+     * Algebraic product t-norm.
+     */
+    PRODUCT {
+        @Override
+        public double apply(final double a, final double b) {
+            return a * b;
+        }
+    };
+
+    /**
+     * Combine two degrees of membership.
+     *
+     * @param a - first degree of membership.
+     * @param b - second degree of membership.
+     *
+     * @return - degree of membership of the conjunction.
+     */
+    public abstract double apply(double a, double b);
+}
@@ -0,0 +1,230 @@
+package glideme.metrics;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values (latencies in nanoseconds), recorded lock-free from any number of threads.
+ *
+ * Buckets are laid out like HdrHistogram's: values below SUB_BUCKETS get a bucket each, above that every
+ * power of two is split into SUB_BUCKETS / 2 linear buckets. The relative error of a reported value is thus
+ * below 2 / SUB_BUCKETS (under 1.6%) over the whole range of longs, with a fixed number of buckets.
+ *
+ * Every thread records into its own shard (a Recorder), with plain ordered stores - no compare-and-swap,
+ * no contention, no allocation. Readers merge the shards when taking a snapshot. A snapshot taken while
+ * values are being recorded is not atomic, but every value it counts has been fully recorded.
+ */
+public class LatencyHistogram {
+    /**
+     * Number of linear buckets below the first power-of-two range (a power of two).
+     */
+    private static final int SUB_BUCKETS = 128, SUB_BUCKET_BITS = 7, HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /**
+     * Total number of buckets, enough for any non-negative long.
+     */
+    static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    /**
+     * Shards of all the threads that have recorded so far.
+     */
+    private final CopyOnWriteArrayList<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    /**
+     * The calling thread's shard.
+     */
+    private final ThreadLocal<Recorder> local = new ThreadLocal<Recorder>() {
+        @Override
+        protected Recorder initialValue() {
+            return newRecorder();
+        }
+    };
+
+    /**
+     * Counts at the last reset, subtracted from the snapshots (so that resetting never races with recording).
+     */
+    private volatile Snapshot baseline = null;
+
+    /**
+     * A shard of the histogram. Must only be used by a single thread at a time.
+     */
+    public static class Recorder {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong(), max = new AtomicLong();
+
+        private Recorder() {
+        }
+
+        /**
+         * Record a value.
+         *
+         * @param value - the value (negative values are recorded as 0).
+         */
+        public void record(final long value) {
+            final long v = Math.max(0L, value);
+            final int i = bucket(v);
+
+            // A single writer: ordered stores are enough, and much cheaper than atomic increments.
+            counts.lazySet(i, counts.get(i) + 1);
+            sum.lazySet(sum.get() + v);
+            if (v > max.get()) {
+                max.lazySet(v);
+            }
+        }
+    }
+
+    /**
+     * Merged contents of a histogram at some point in time.
+     */
+    public static class Snapshot {
+        private final long[] counts = new long[BUCKETS];
+        private long count = 0, sum = 0, max = 0;
+
+        private Snapshot() {
+        }
+
+        /**
+         * @return - number of recorded values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return - mean of the recorded values (0 if there are none).
+         */
+        public double getMean() {
+            return count == 0 ? 0.0 : sum / (double) count;
+        }
+
+        /**
+         * @return - the largest value recorded since the histogram was created
+         * (resetting doesn't affect it).
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile - the percentile, between 0 and 100.
+         *
+         * @return - the smallest value such that the given percentage of the recorded values are equivalent to it
+         * or below it (0 if there are no values).
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; ++i) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalentValue(i), max);
+                }
+            }
+
+            return max;
+        }
+    }
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram() {
+    }
+
+    /**
+     * Record a value into the calling thread's shard.
+     *
+     * @param value - the value (negative values are recorded as 0).
+     */
+    public void record(final long value) {
+        local.get().record(value);
+    }
+
+    /**
+     * Create a new shard, for a caller that wants to avoid looking up its thread's shard on every value.
+     *
+     * @return - the shard, to be used by a single thread at a time.
+     */
+    public Recorder newRecorder() {
+        final Recorder recorder = new Recorder();
+        recorders.add(recorder);
+
+        return recorder;
+    }
+
+    /**
+     * Merge the shards.
+     *
+     * @return - counts of the values recorded since the last reset.
+     */
+    public Snapshot snapshot() {
+        return merge(baseline);
+    }
+
+    /**
+     * Forget the values recorded so far (except for the maximum). May be called from any thread.
+     */
+    public void reset() {
+        baseline = merge(null);
+    }
+
+    /**
+     * Merge the shards, subtracting the given counts.
+     */
+    private Snapshot merge(final Snapshot base) {
+        final Snapshot snapshot = new Snapshot();
+
+        for (final Recorder recorder : recorders) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                snapshot.counts[i] += recorder.counts.get(i);
+            }
+            snapshot.sum += recorder.sum.get();
+            snapshot.max = Math.max(snapshot.max, recorder.max.get());
+        }
+
+        if (base != null) {
+            for (int i = 0; i < BUCKETS; ++i) {
+                snapshot.counts[i] -= base.counts[i];
+            }
+            snapshot.sum -= base.sum;
+        }
+
+        for (int i = 0; i < BUCKETS; ++i) {
+            snapshot.count += snapshot.counts[i];
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * @return - index of the bucket holding the given (non-negative) value.
+     */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        // Shift bringing the value into [HALF_SUB_BUCKETS, SUB_BUCKETS).
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * @return - the largest value falling into the given bucket.
+     */
+    static long highestEquivalentValue(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        final long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
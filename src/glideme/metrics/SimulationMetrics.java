@@ -0,0 +1,317 @@
+package glideme.metrics;
+
+import glideme.engine.TickScheduler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Run-time metrics of the simulation, exposed through JMX.
+ *
+ * Worlds record how long their ticks take (the whole refresh, and the physics and regulation steps
+ * within it) into lock-free histograms, each thread into its own shard. A tick scheduler records its
+ * wake-up lateness and the renderer reports its frames. Everything is merged only when an attribute is read.
+ *
+ * Recording can be toggled at run time (e.g. from JConsole). A disabled metrics object costs a world
+ * a single volatile read per tick; a world without metrics only checks for null.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+    /**
+     * Default name under which the metrics are registered.
+     */
+    public static final String DEFAULT_NAME = "glideme:type=SimulationMetrics";
+
+    /**
+     * Expected interval between rendered frames (JavaFX pulses at 60 Hz), in nanoseconds.
+     */
+    private static final long FRAME_PERIOD_NANOS = 1000000000L / 60;
+
+    private final LatencyHistogram refresh = new LatencyHistogram(),
+            physics = new LatencyHistogram(),
+            regulator = new LatencyHistogram(),
+            lateness = new LatencyHistogram();
+
+    /**
+     * Shards of the tick histograms used by each thread (looked up once per tick).
+     */
+    private final ThreadLocal<LatencyHistogram.Recorder[]> tickRecorders =
+            new ThreadLocal<LatencyHistogram.Recorder[]>() {
+                @Override
+                protected LatencyHistogram.Recorder[] initialValue() {
+                    return new LatencyHistogram.Recorder[] {
+                        refresh.newRecorder(), physics.newRecorder(), regulator.newRecorder()
+                    };
+                }
+            };
+
+    private volatile boolean enabled = true;
+
+    /**
+     * Scheduler whose lateness is recorded (or null).
+     */
+    private volatile TickScheduler scheduler = null;
+
+    /**
+     * Renderer's statistics (written by the GUI thread, and cleared by reset and setEnabled; a frame counted
+     * concurrently with that may get lost, which doesn't matter for statistics). A negative lastFrameTick
+     * starts over, not counting the gap since the previous frame.
+     */
+    private volatile long frames = 0, droppedFrames = 0, unrenderedStates = 0;
+    private volatile long lastFrameTick = -1;
+    private long lastFrameNanos = 0;
+
+    /**
+     * Tick count and time at the previous tick rate query.
+     */
+    private long rateTicks = 0, rateNanos = System.nanoTime();
+
+    /**
+     * Create enabled metrics.
+     */
+    public SimulationMetrics() {
+    }
+
+    /**
+     * Register the metrics with the platform's MBean server.
+     *
+     * @param name - the object name to register under (e.g. DEFAULT_NAME).
+     *
+     * @throws IllegalArgumentException - when the name is malformed or already taken.
+     */
+    public void register(final String name) throws IllegalArgumentException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+        }
+        catch (JMException e) {
+            throw new IllegalArgumentException("SimulationMetrics: can't register as " + name, e);
+        }
+    }
+
+    /**
+     * Record the wake-up lateness of the scheduler (while the metrics are enabled).
+     *
+     * @param tickScheduler - the scheduler.
+     */
+    public void attach(final TickScheduler tickScheduler) {
+        scheduler = tickScheduler;
+        tickScheduler.setLatenessHistogram(enabled ? lateness : null);
+    }
+
+    /**
+     * Record a tick's timings. Called by the thread advancing the world.
+     *
+     * @param start - System.nanoTime() at the start of the tick.
+     * @param physicsDone - System.nanoTime() after the physics step.
+     * @param regulatorDone - System.nanoTime() after the regulation step.
+     * @param end - System.nanoTime() at the end of the tick.
+     */
+    public void recordTick(final long start, final long physicsDone, final long regulatorDone, final long end) {
+        final LatencyHistogram.Recorder[] recorders = tickRecorders.get();
+
+        recorders[0].record(end - start);
+        recorders[1].record(physicsDone - start);
+        recorders[2].record(regulatorDone - physicsDone);
+    }
+
+    /**
+     * Record a rendered frame. Called by the GUI thread.
+     *
+     * @param frameNanos - frame time in nanoseconds.
+     * @param tick - number of the latest tick whose state the frame shows.
+     */
+    public void frameRendered(final long frameNanos, final long tick) {
+        if (!enabled) {
+            return;
+        }
+
+        if (lastFrameTick >= 0) {
+            final long gap = frameNanos - lastFrameNanos;
+            if (2 * gap > 3 * FRAME_PERIOD_NANOS) {
+                droppedFrames += (gap + FRAME_PERIOD_NANOS / 2) / FRAME_PERIOD_NANOS - 1;
+            }
+            if (tick - lastFrameTick > 1) {
+                unrenderedStates += tick - lastFrameTick - 1;
+            }
+        }
+
+        ++frames;
+        lastFrameNanos = frameNanos;
+        lastFrameTick = tick;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        // The frames rendered while disabled aren't reported, so they mustn't count as dropped afterwards.
+        lastFrameTick = -1;
+        this.enabled = enabled;
+
+        final TickScheduler attached = scheduler;
+        if (attached != null) {
+            attached.setLatenessHistogram(enabled ? lateness : null);
+        }
+    }
+
+    @Override
+    synchronized
+    public void reset() {
+        refresh.reset();
+        physics.reset();
+        regulator.reset();
+        lateness.reset();
+
+        frames = 0;
+        droppedFrames = 0;
+        unrenderedStates = 0;
+        lastFrameTick = -1;
+
+        rateTicks = 0;
+        rateNanos = System.nanoTime();
+    }
+
+    @Override
+    public long getTickCount() {
+        return refresh.snapshot().getCount();
+    }
+
+    @Override
+    synchronized
+    public double getTickRate() {
+        final long ticks = getTickCount(), now = System.nanoTime();
+        final double rate = now == rateNanos ? 0.0 : (ticks - rateTicks) * 1e9 / (now - rateNanos);
+
+        rateTicks = ticks;
+        rateNanos = now;
+
+        return rate;
+    }
+
+    @Override
+    public long getRefreshP50() {
+        return refresh.snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getRefreshP99() {
+        return refresh.snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getRefreshP999() {
+        return refresh.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getRefreshMax() {
+        return refresh.snapshot().getMax();
+    }
+
+    @Override
+    public long getPhysicsP50() {
+        return physics.snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getPhysicsP99() {
+        return physics.snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getPhysicsP999() {
+        return physics.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getRegulatorP50() {
+        return regulator.snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getRegulatorP99() {
+        return regulator.snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getRegulatorP999() {
+        return regulator.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public double getLatenessMean() {
+        return lateness.snapshot().getMean();
+    }
+
+    @Override
+    public long getLatenessP50() {
+        return lateness.snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getLatenessP99() {
+        return lateness.snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getLatenessP999() {
+        return lateness.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getLatenessMax() {
+        return lateness.snapshot().getMax();
+    }
+
+    @Override
+    public long getDroppedTicks() {
+        final TickScheduler attached = scheduler;
+        return attached == null ? 0 : attached.getDroppedTickCount();
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    @Override
+    public long getUnrenderedStates() {
+        return unrenderedStates;
+    }
+
+    /**
+     * @return - latencies of whole ticks.
+     */
+    public LatencyHistogram getRefreshHistogram() {
+        return refresh;
+    }
+
+    /**
+     * @return - latencies of the physics steps.
+     */
+    public LatencyHistogram getPhysicsHistogram() {
+        return physics;
+    }
+
+    /**
+     * @return - latencies of the regulation steps.
+     */
+    public LatencyHistogram getRegulatorHistogram() {
+        return regulator;
+    }
+
+    /**
+     * @return - wake-up lateness of the attached scheduler.
+     */
+    public LatencyHistogram getLatenessHistogram() {
+        return lateness;
+    }
+}
@@ -0,0 +1,67 @@
+package glideme.metrics;
+
+/**
+ * Management interface of SimulationMetrics. Latencies are in nanoseconds.
+ */
+public interface SimulationMetricsMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /**
+     * Forget the latencies and counts recorded so far.
+     */
+    void reset();
+
+    long getTickCount();
+
+    /**
+     * @return - ticks per second since the previous call (or since the metrics were created or reset).
+     */
+    double getTickRate();
+
+    long getRefreshP50();
+
+    long getRefreshP99();
+
+    long getRefreshP999();
+
+    long getRefreshMax();
+
+    long getPhysicsP50();
+
+    long getPhysicsP99();
+
+    long getPhysicsP999();
+
+    long getRegulatorP50();
+
+    long getRegulatorP99();
+
+    long getRegulatorP999();
+
+    double getLatenessMean();
+
+    long getLatenessP50();
+
+    long getLatenessP99();
+
+    long getLatenessP999();
+
+    long getLatenessMax();
+
+    long getDroppedTicks();
+
+    long getFrameCount();
+
+    /**
+     * @return - frames the renderer missed (pulses that came more than half a frame late).
+     */
+    long getDroppedFrames();
+
+    /**
+     * @return - ticks whose state was never shown. At 1000 ticks and 60 frames per second that's normally
+     * about 16 per frame; a faster growth means the renderer is stalling.
+     */
+    long getUnrenderedStates();
+}
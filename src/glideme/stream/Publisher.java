@@ -0,0 +1,17 @@
+package glideme.stream;
+
+/**
+ * A source of items delivered to subscribers as they ask for them, following the Reactive Streams
+ * contract (java.util.concurrent.Flow.Publisher, which isn't available on Java 7).
+ *
+ * @param <T> - type of the items.
+ */
+public interface Publisher<T> {
+    /**
+     * Add a subscriber. It's first given its subscription (onSubscribe()) and gets no items
+     * until it requests some through it.
+     *
+     * @param subscriber - the subscriber.
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
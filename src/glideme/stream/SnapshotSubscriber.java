@@ -0,0 +1,102 @@
+package glideme.stream;
+
+import glideme.World;
+import glideme.telemetry.TelemetryReader;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the newest tick delivered for a reader polling it at its own pace (e.g. the renderer, once per frame).
+ *
+ * Each poll asks for one more tick, unless the one asked for before hasn't arrived yet, so the publisher delivers
+ * at most a tick per poll, and none while the world stands still. Subscribed with StatePublisher.Conflation.LATEST,
+ * that's the newest tick at the time it's delivered.
+ */
+public class SnapshotSubscriber implements Subscriber<TelemetryReader.Record> {
+    /**
+     * The newest tick delivered (guarded by itself, the copies are short).
+     */
+    private final TelemetryReader.Record snapshot = new TelemetryReader.Record();
+
+    private volatile Subscription subscription = null;
+
+    /**
+     * Is a tick requested and not delivered yet?
+     */
+    private final AtomicBoolean requested = new AtomicBoolean();
+
+    /**
+     * Has the subscription ended?
+     */
+    private volatile boolean done = false;
+
+    /**
+     * Create a subscriber.
+     *
+     * @param initial - the state polled until the first tick is delivered.
+     * @param destination - the destination polled until the first tick is delivered.
+     */
+    public SnapshotSubscriber(final World.CraneState initial, final double destination) {
+        snapshot.set(initial);
+        snapshot.destination = destination;
+    }
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        this.subscription = subscription;
+
+        requested.set(true);
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(final TelemetryReader.Record item) {
+        synchronized (snapshot) {
+            snapshot.set(item);
+            snapshot.destination = item.destination;
+        }
+        requested.set(false);
+    }
+
+    @Override
+    public void onError(final Throwable error) {
+        done = true;
+        System.err.println("SnapshotSubscriber: the subscription failed, " + error);
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+    }
+
+    /**
+     * Copy the newest tick delivered and ask for the next one.
+     *
+     * @param into - the record to overwrite.
+     *
+     * @return - false if the subscription has ended (the snapshot won't change any more).
+     */
+    public boolean poll(final TelemetryReader.Record into) {
+        synchronized (snapshot) {
+            into.set(snapshot);
+            into.destination = snapshot.destination;
+        }
+
+        final Subscription current = subscription;
+        if (current != null && !done && !requested.getAndSet(true)) {
+            current.request(1);
+        }
+
+        return !done;
+    }
+
+    /**
+     * Stop receiving ticks.
+     */
+    public void cancel() {
+        final Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
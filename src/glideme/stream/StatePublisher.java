@@ -0,0 +1,373 @@
+package glideme.stream;
+
+import glideme.TickListener;
+import glideme.telemetry.TelemetryReader;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes a world's ticks to any number of subscribers in the same JVM, each getting them as fast as it asks
+ * for them, without a polling thread of its own.
+ *
+ * The world's thread only stores each tick into a ring in memory (it never blocks, nor allocates, and wakes
+ * the dispatcher only if it's waiting for ticks). A single dispatcher thread delivers the ticks to all the
+ * subscribers, each from its own position in the ring, as far as its demand goes. What happens to the ticks
+ * a subscriber doesn't ask for in time depends on its conflation policy:
+ *  - NONE: all ticks are delivered in order; a subscriber more than the ring (RING_CAPACITY ticks) behind
+ *    skips the oldest ones,
+ *  - LATEST: only the newest tick is delivered whenever there's demand, the ones before it are skipped
+ *    (e.g. for rendering, where only the current state matters).
+ *
+ * To keep delivery free of allocation, a subscription passes the same record to every onNext(): it's valid only
+ * during the call (copy what needs to be kept). All signals to subscribers come from the dispatcher thread,
+ * so subscribers must not block in them; a subscriber that throws is cancelled.
+ */
+public class StatePublisher implements TickListener, Publisher<TelemetryReader.Record>, Closeable {
+    /**
+     * What to do with the ticks a subscriber hasn't asked for in time.
+     */
+    public enum Conflation {
+        /**
+         * Deliver every tick (as long as the ring holds it).
+         */
+        NONE,
+
+        /**
+         * Deliver only the newest tick.
+         */
+        LATEST
+    }
+
+    /**
+     * Number of ticks kept in the ring (a power of two), four seconds at 1000 Hz.
+     */
+    public static final int RING_CAPACITY = 4096;
+
+    /**
+     * Number of longs per tick in the ring.
+     */
+    private static final int RING_FIELDS = 6;
+
+    /**
+     * The largest number of ticks delivered to a subscriber before moving on to the next one.
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * Ticks stored by the world's thread: the n-th one (counting from 0) occupies the fields starting
+     * at (n % RING_CAPACITY) * RING_FIELDS. Doubles are stored as their bits.
+     */
+    private final long[] ring = new long[RING_CAPACITY * RING_FIELDS];
+
+    /**
+     * Number of ticks stored, published after each tick is complete. The world's thread has its own copy.
+     */
+    private final AtomicLong written = new AtomicLong();
+    private long writes = 0;
+
+    /**
+     * Subscriptions waiting to be started by the dispatcher, and the ones it serves.
+     */
+    private final ConcurrentLinkedQueue<StateSubscription> added = new ConcurrentLinkedQueue<>();
+    private final List<StateSubscription> subscriptions = new ArrayList<>();
+
+    private final Thread dispatcher;
+
+    private volatile boolean running = true;
+
+    /**
+     * Is the dispatcher parked until there's a new tick (or signalled)? Has anything other than a tick
+     * happened since it last looked?
+     */
+    private volatile boolean waitingForTicks = false, signalled = false;
+
+    /**
+     * A subscriber's subscription.
+     */
+    public class StateSubscription implements Subscription {
+        private final Subscriber<? super TelemetryReader.Record> subscriber;
+        private final Conflation conflation;
+
+        /**
+         * Number of ticks requested and not delivered yet (Long.MAX_VALUE means unbounded).
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        private volatile boolean cancelled = false;
+
+        /**
+         * Failure to report to the subscriber (an invalid request), or null.
+         */
+        private volatile Throwable error = null;
+
+        /**
+         * The record passed to onNext(); index of the next tick to deliver and number of ticks skipped
+         * (used by the dispatcher only).
+         */
+        private final TelemetryReader.Record record = new TelemetryReader.Record();
+        private long next;
+        private volatile long skipped = 0;
+
+        StateSubscription(final Subscriber<? super TelemetryReader.Record> subscriber, final Conflation conflation) {
+            this.subscriber = subscriber;
+            this.conflation = conflation;
+        }
+
+        @Override
+        public void request(final long count) {
+            if (count <= 0) {
+                error = new IllegalArgumentException("StatePublisher: requested " + count
+                        + " items, must be positive!");
+            }
+            else {
+                long current, updated;
+                do {
+                    current = demand.get();
+                    updated = current + count < 0 ? Long.MAX_VALUE : current + count;
+                } while (!demand.compareAndSet(current, updated));
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            signal();
+        }
+
+        /**
+         * @return - the conflation policy.
+         */
+        public Conflation getConflation() {
+            return conflation;
+        }
+
+        /**
+         * @return - number of ticks not delivered (conflated, or overwritten in the ring before being asked for).
+         */
+        public long getSkippedCount() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Start the dispatcher.
+     */
+    public StatePublisher() {
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "glideme-state-publisher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Subscribe with no conflation (every tick is delivered).
+     */
+    @Override
+    public void subscribe(final Subscriber<? super TelemetryReader.Record> subscriber) {
+        subscribe(subscriber, Conflation.NONE);
+    }
+
+    /**
+     * Add a subscriber. It gets the ticks from the next one on.
+     *
+     * @param subscriber - the subscriber.
+     * @param conflation - what to do with the ticks the subscriber doesn't ask for in time.
+     */
+    synchronized
+    public void subscribe(final Subscriber<? super TelemetryReader.Record> subscriber, final Conflation conflation) {
+        final StateSubscription subscription = new StateSubscription(subscriber, conflation);
+
+        if (!running) {
+            subscriber.onSubscribe(subscription);
+            subscriber.onComplete();
+            return;
+        }
+
+        added.add(subscription);
+        signal();
+    }
+
+    /**
+     * Store a tick into the ring.
+     */
+    @Override
+    public void onTick(final long tick, final double destination, final double position, final double velocity,
+                       final double acceleration, final double angle) {
+        final int offset = (int) (writes & (RING_CAPACITY - 1)) * RING_FIELDS;
+
+        ring[offset] = tick;
+        ring[offset + 1] = Double.doubleToRawLongBits(destination);
+        ring[offset + 2] = Double.doubleToRawLongBits(position);
+        ring[offset + 3] = Double.doubleToRawLongBits(velocity);
+        ring[offset + 4] = Double.doubleToRawLongBits(acceleration);
+        ring[offset + 5] = Double.doubleToRawLongBits(angle);
+
+        // A volatile store: either the dispatcher sees the new count, or we see it waiting for it.
+        written.set(++writes);
+        if (waitingForTicks) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Wake the dispatcher up to look at the subscriptions.
+     */
+    private void signal() {
+        signalled = true;
+        if (Thread.currentThread() != dispatcher) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Deliver ticks until closed.
+     */
+    private void dispatch() {
+        while (running) {
+            signalled = false;
+            final long seen = written.get();
+
+            StateSubscription subscription;
+            while ((subscription = added.poll()) != null) {
+                subscription.next = seen;
+                subscriptions.add(subscription);
+                try {
+                    subscription.subscriber.onSubscribe(subscription);
+                } catch (Throwable exception) {
+                    fail(subscription, exception);
+                }
+            }
+
+            boolean busy = false, hungry = false;
+            for (int s = subscriptions.size() - 1; s >= 0; --s) {
+                subscription = subscriptions.get(s);
+                busy |= deliver(subscription);
+                hungry |= subscription.demand.get() > 0;
+            }
+
+            if (busy) {
+                continue;
+            }
+
+            // Nothing more to deliver: wait for a tick (if anyone wants one) or a signal.
+            waitingForTicks = hungry;
+            if (!signalled && (!hungry || written.get() == seen) && running) {
+                LockSupport.park(this);
+            }
+            waitingForTicks = false;
+        }
+
+        for (final StateSubscription subscription : subscriptions) {
+            if (!subscription.cancelled) {
+                subscription.subscriber.onComplete();
+            }
+        }
+        subscriptions.clear();
+
+        StateSubscription subscription;
+        while ((subscription = added.poll()) != null) {
+            subscription.subscriber.onSubscribe(subscription);
+            subscription.subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Deliver a batch of ticks to a subscriber (or end its subscription).
+     *
+     * @return - true if there are more ticks the subscriber asked for.
+     */
+    private boolean deliver(final StateSubscription subscription) {
+        if (subscription.cancelled) {
+            subscriptions.remove(subscription);
+            return false;
+        }
+        if (subscription.error != null) {
+            subscriptions.remove(subscription);
+            subscription.cancelled = true;
+            subscription.subscriber.onError(subscription.error);
+            return false;
+        }
+
+        final long available = written.get();
+
+        for (int delivered = 0; delivered < BATCH; ++delivered) {
+            if (subscription.next >= available || subscription.demand.get() <= 0 || subscription.cancelled) {
+                return false;
+            }
+
+            // The tick being overwritten right now is the oldest one, the ones before it are gone.
+            final long oldest = available - RING_CAPACITY + 1;
+            final long index = subscription.conflation == Conflation.LATEST
+                    ? available - 1 : Math.max(subscription.next, oldest);
+
+            final TelemetryReader.Record record = subscription.record;
+            final int offset = (int) (index & (RING_CAPACITY - 1)) * RING_FIELDS;
+            record.tick = ring[offset];
+            record.destination = Double.longBitsToDouble(ring[offset + 1]);
+            record.position = Double.longBitsToDouble(ring[offset + 2]);
+            record.velocity = Double.longBitsToDouble(ring[offset + 3]);
+            record.acceleration = Double.longBitsToDouble(ring[offset + 4]);
+            record.angle = Double.longBitsToDouble(ring[offset + 5]);
+
+            if (index < written.get() - RING_CAPACITY + 1) {
+                // Overwritten while we were reading it: try the next oldest one.
+                subscription.skipped += index + 1 - subscription.next;
+                subscription.next = index + 1;
+                continue;
+            }
+
+            subscription.skipped += index - subscription.next;
+            subscription.next = index + 1;
+            if (subscription.demand.get() != Long.MAX_VALUE) {
+                subscription.demand.decrementAndGet();
+            }
+
+            try {
+                subscription.subscriber.onNext(record);
+            } catch (Throwable exception) {
+                fail(subscription, exception);
+                return false;
+            }
+        }
+
+        return subscription.next < available && subscription.demand.get() > 0;
+    }
+
+    /**
+     * Cancel the subscription of a subscriber that has thrown.
+     */
+    private void fail(final StateSubscription subscription, final Throwable exception) {
+        subscription.cancelled = true;
+        subscriptions.remove(subscription);
+
+        System.err.println("StatePublisher: cancelled a subscriber, " + exception);
+    }
+
+    /**
+     * Complete all subscriptions and stop the dispatcher. The publisher must not be fed afterwards.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+        }
+        LockSupport.unpark(dispatcher);
+
+        try {
+            dispatcher.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
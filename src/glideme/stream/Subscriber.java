@@ -0,0 +1,36 @@
+package glideme.stream;
+
+/**
+ * A receiver of items from a Publisher (see java.util.concurrent.Flow.Subscriber).
+ *
+ * The methods of a subscriber are called serially, never concurrently with each other.
+ *
+ * @param <T> - type of the items.
+ */
+public interface Subscriber<T> {
+    /**
+     * Called once, before any other method.
+     *
+     * @param subscription - the subscription, to request items through (and to cancel it).
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called with the next item, never more times than requested.
+     *
+     * @param item - the item.
+     */
+    void onNext(T item);
+
+    /**
+     * Called when the subscription fails; no more methods are called afterwards.
+     *
+     * @param error - the cause.
+     */
+    void onError(Throwable error);
+
+    /**
+     * Called when there are no more items; no more methods are called afterwards.
+     */
+    void onComplete();
+}
@@ -0,0 +1,19 @@
+package glideme.stream;
+
+/**
+ * Link between a Publisher and one of its subscribers (see java.util.concurrent.Flow.Subscription).
+ * May be used from any thread.
+ */
+public interface Subscription {
+    /**
+     * Ask for more items (the demand adds up).
+     *
+     * @param count - number of items; a non-positive count fails the subscription.
+     */
+    void request(long count);
+
+    /**
+     * Stop receiving items. Items already on their way may still be delivered.
+     */
+    void cancel();
+}
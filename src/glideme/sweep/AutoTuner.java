@@ -0,0 +1,539 @@
+package glideme.sweep;
+
+import glideme.RegulatorConfig;
+import glideme.fuzzy.FuzzySet;
+import glideme.fuzzy.LinguisticVariable;
+import glideme.fuzzy.RuleBase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tunes the breakpoints of a regulator configuration's fuzzy sets and its acceleration time by differential
+ * evolution (DE/rand/1/bin), judging candidates by robustness sweeps.
+ *
+ * The tuned parameters are all finite characteristic points of all the sets plus the acceleration time; the set
+ * types and the rules stay as they are. Each parameter is kept within bounds derived from the starting
+ * configuration (its variable's span, widened by half on both sides) and rounded to a thousandth of the
+ * bounds (on a grid through the starting configuration), and the points of every set are kept in order.
+ * A candidate's cost combines the sweep's mean settling time, unsettled scenarios (each counted as the whole
+ * horizon), overshoot and swing. All candidates are judged on the same scenarios (the same seed), so that their
+ * costs are directly comparable.
+ *
+ * A generation's candidates are evaluated concurrently, each by a sweep running its scenarios in the same pool.
+ * Costs are cached by the rounded parameters: once the population converges, candidates repeat.
+ *
+ * Usage: AutoTuner [options]
+ *   --population N          candidates per generation (default 32)
+ *   --generations N         number of generations (default 40)
+ *   --scenarios N           scenarios per candidate (default 64)
+ *   --horizon SECONDS       simulated time per scenario (default 60)
+ *   --step MILLIS           time step of the physics (default 10)
+ *   --seed N                seed of the optimizer and the scenarios (default 1)
+ *   --config FILE           configuration to start from (default: the built-in one)
+ *   --out FILE              file to save the best configuration to (default regulator.properties)
+ */
+public class AutoTuner {
+    /**
+     * Differential weight and crossover probability of the evolution.
+     */
+    private static final double DIFFERENTIAL_WEIGHT = 0.6, CROSSOVER = 0.9;
+
+    /**
+     * Weights of overshoot (per unit) and swing (per radian) in the cost, relative to a second of settling time.
+     */
+    private static final double OVERSHOOT_WEIGHT = 0.2, SWING_WEIGHT = 20.0;
+
+    /**
+     * Bounds of the acceleration time in milliseconds.
+     */
+    private static final double MIN_ACCEL_TIME_LOW = 50.0, MIN_ACCEL_TIME_HIGH = 5000.0;
+
+    /**
+     * Deviation of the initial candidates from the starting configuration, relative to the bounds.
+     */
+    private static final double INITIAL_SPREAD = 0.1;
+
+    /**
+     * Number of steps of the parameters' grid between the bounds.
+     */
+    private static final double GRID = 1000.0;
+
+    /**
+     * The configuration the candidates are derived from.
+     */
+    private final RegulatorConfig template;
+
+    /**
+     * Where every set's points are in the parameters: index of the start, edge and end parameter
+     * (-1 for an infinite point), set after set, variable after variable (inputs, then the output).
+     */
+    private final int[] pointIndex;
+
+    /**
+     * Bounds of the parameters (the last one is the acceleration time) and the template's parameters,
+     * which lie on the grid.
+     */
+    private final double[] lower, upper, origin;
+
+    private final Disturbances disturbances;
+    private final double timeStep, horizon;
+    private final int scenarios;
+    private final ForkJoinPool pool;
+
+    /**
+     * Costs of the candidates evaluated so far, by their (rounded) parameters.
+     */
+    private final ConcurrentMap<List<Double>, Double> cache = new ConcurrentHashMap<>();
+    private final AtomicLong evaluations = new AtomicLong(), cacheHits = new AtomicLong();
+
+    /**
+     * Create a tuner.
+     *
+     * @param template - the configuration to start from.
+     * @param disturbances - disturbances of the sweeps judging the candidates.
+     * @param scenarios - number of scenarios per candidate.
+     * @param timeStep - time step of the physics in milliseconds.
+     * @param horizon - simulated time per scenario in milliseconds.
+     * @param pool - pool evaluating the candidates.
+     *
+     * @throws IllegalArgumentException - when the number of scenarios isn't positive.
+     */
+    public AutoTuner(final RegulatorConfig template, final Disturbances disturbances, final int scenarios,
+                     final double timeStep, final double horizon, final ForkJoinPool pool)
+            throws IllegalArgumentException
+    {
+        if (scenarios <= 0) {
+            throw new IllegalArgumentException("AutoTuner: 'scenarios' must be positive!");
+        }
+
+        this.template = template;
+        this.disturbances = disturbances;
+        this.scenarios = scenarios;
+        this.timeStep = timeStep;
+        this.horizon = horizon;
+        this.pool = pool;
+
+        final List<Double> low = new ArrayList<>(), high = new ArrayList<>();
+        final List<Integer> indices = new ArrayList<>();
+
+        for (final LinguisticVariable variable : variables(template.getRules())) {
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                for (final double point : points(variable.getTerm(t))) {
+                    if (!Double.isInfinite(point)) {
+                        min = Math.min(min, point);
+                        max = Math.max(max, point);
+                    }
+                }
+            }
+
+            final double margin = Math.max(max - min, 1e-9) / 2.0;
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                for (final double point : points(variable.getTerm(t))) {
+                    if (Double.isInfinite(point)) {
+                        indices.add(-1);
+                    }
+                    else {
+                        indices.add(low.size());
+                        low.add(min - margin);
+                        high.add(max + margin);
+                    }
+                }
+            }
+        }
+
+        low.add(MIN_ACCEL_TIME_LOW);
+        high.add(MIN_ACCEL_TIME_HIGH);
+
+        lower = new double[low.size()];
+        upper = new double[high.size()];
+        for (int p = 0; p < lower.length; ++p) {
+            lower[p] = low.get(p);
+            upper[p] = high.get(p);
+        }
+
+        pointIndex = new int[indices.size()];
+        for (int i = 0; i < pointIndex.length; ++i) {
+            pointIndex[i] = indices.get(i);
+        }
+
+        origin = encode(template);
+    }
+
+    private static LinguisticVariable[] variables(final RuleBase rules) {
+        final LinguisticVariable[] variables = new LinguisticVariable[rules.getInputCount() + 1];
+        for (int i = 0; i < rules.getInputCount(); ++i) {
+            variables[i] = rules.getInput(i);
+        }
+        variables[variables.length - 1] = rules.getOutput();
+
+        return variables;
+    }
+
+    private static double[] points(final FuzzySet set) {
+        return new double[] { set.getStart(), set.getEdge(), set.getEnd() };
+    }
+
+    /**
+     * @return - number of tuned parameters.
+     */
+    public int getDimension() {
+        return lower.length;
+    }
+
+    /**
+     * @param config - a configuration with the template's structure.
+     *
+     * @return - its parameters.
+     */
+    double[] encode(final RegulatorConfig config) {
+        final double[] parameters = new double[lower.length];
+
+        int i = 0;
+        for (final LinguisticVariable variable : variables(config.getRules())) {
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                for (final double point : points(variable.getTerm(t))) {
+                    if (pointIndex[i] >= 0) {
+                        parameters[pointIndex[i]] = point;
+                    }
+                    ++i;
+                }
+            }
+        }
+        parameters[parameters.length - 1] = config.getMinAccelTime();
+
+        return parameters;
+    }
+
+    /**
+     * Build the configuration given by parameters.
+     *
+     * @param parameters - the parameters (repaired, see repair()).
+     *
+     * @return - the configuration (compiled).
+     *
+     * @throws IllegalArgumentException - when the parameters don't give a valid configuration.
+     */
+    RegulatorConfig decode(final double[] parameters) throws IllegalArgumentException {
+        final RuleBase rules = template.getRules();
+        final LinguisticVariable[] variables = variables(rules);
+        final LinguisticVariable[] decoded = new LinguisticVariable[variables.length];
+
+        int i = 0;
+        for (int v = 0; v < variables.length; ++v) {
+            final LinguisticVariable variable = variables[v];
+            decoded[v] = variable.isBounded()
+                    ? new LinguisticVariable(variable.getName(), variable.getMin(), variable.getMax())
+                    : new LinguisticVariable(variable.getName());
+
+            for (int t = 0; t < variable.getTermCount(); ++t) {
+                final double[] points = points(variable.getTerm(t));
+                for (int k = 0; k < points.length; ++k, ++i) {
+                    if (pointIndex[i] >= 0) {
+                        points[k] = parameters[pointIndex[i]];
+                    }
+                }
+
+                decoded[v].addTerm(variable.getTermName(t),
+                        new FuzzySet(variable.getTerm(t).getMembershipType(), points[0], points[1], points[2]));
+            }
+        }
+
+        final RuleBase decodedRules = new RuleBase(Arrays.copyOf(decoded, decoded.length - 1),
+                decoded[decoded.length - 1]);
+        for (int r = 0; r < rules.getRuleCount(); ++r) {
+            final String[] antecedents = new String[rules.getInputCount()];
+            for (int input = 0; input < antecedents.length; ++input) {
+                final int term = rules.getAntecedent(r, input);
+                antecedents[input] = term < 0 ? null : rules.getInput(input).getTermName(term);
+            }
+            decodedRules.addRule(rules.getOutput().getTermName(rules.getConsequent(r)), antecedents);
+        }
+
+        return new RegulatorConfig(decodedRules, template.getTNorm(), template.getSNorm(),
+                template.getDefuzzification(), parameters[parameters.length - 1]);
+    }
+
+    /**
+     * Make parameters valid (in place): clamp them to their bounds, round them to the grid
+     * and put every set's points in order.
+     */
+    private void repair(final double[] parameters) {
+        for (int p = 0; p < parameters.length; ++p) {
+            final double quantum = (upper[p] - lower[p]) / GRID;
+            final double value = Math.min(upper[p], Math.max(lower[p], parameters[p]));
+
+            parameters[p] = origin[p] + Math.rint((value - origin[p]) / quantum) * quantum;
+            if (parameters[p] < lower[p]) {
+                parameters[p] += quantum;
+            }
+            else if (parameters[p] > upper[p]) {
+                parameters[p] -= quantum;
+            }
+        }
+
+        // Sort every set's finite points (insertion sort of at most three).
+        for (int set = 0; set < pointIndex.length; set += 3) {
+            for (int k = set + 1; k < set + 3; ++k) {
+                if (pointIndex[k] < 0) {
+                    continue;
+                }
+
+                for (int j = k; j > set && pointIndex[j - 1] >= 0
+                        && parameters[pointIndex[j - 1]] > parameters[pointIndex[j]]; --j) {
+                    final double swap = parameters[pointIndex[j - 1]];
+                    parameters[pointIndex[j - 1]] = parameters[pointIndex[j]];
+                    parameters[pointIndex[j]] = swap;
+                }
+            }
+        }
+    }
+
+    /**
+     * Judge a candidate (or look its cost up).
+     *
+     * @param parameters - the candidate's parameters (repaired).
+     * @param seed - seed of the scenarios.
+     *
+     * @return - the cost (lower is better, infinite for an invalid candidate).
+     */
+    double cost(final double[] parameters, final long seed) {
+        final List<Double> key = new ArrayList<>(parameters.length);
+        for (final double parameter : parameters) {
+            key.add(parameter);
+        }
+
+        final Double cached = cache.get(key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+
+        evaluations.incrementAndGet();
+
+        double cost;
+        try {
+            final RobustnessSweep.Result result = new RobustnessSweep(decode(parameters), disturbances,
+                    RobustnessSweep.DEFAULT_BAND, timeStep, horizon, pool).run(seed, scenarios);
+
+            final double unsettled = result.getUnsettledCount() / (double) scenarios;
+            final double settling = result.getSettlingTime().getCount() == 0
+                    ? 0.0 : result.getSettlingTime().getMean() * (1.0 - unsettled);
+
+            cost = (settling + unsettled * horizon) / 1000.0
+                    + OVERSHOOT_WEIGHT * result.getOvershoot().getMean()
+                    + SWING_WEIGHT * result.getMaxSwing().getMean();
+        } catch (IllegalArgumentException exception) {
+            cost = Double.POSITIVE_INFINITY;
+        }
+
+        if (Double.isNaN(cost)) {
+            cost = Double.POSITIVE_INFINITY;
+        }
+
+        cache.put(key, cost);
+        return cost;
+    }
+
+    /**
+     * Run the evolution.
+     *
+     * @param populationSize - number of candidates per generation (at least 4).
+     * @param generations - number of generations.
+     * @param seed - seed of the evolution and of the scenarios judging the candidates.
+     *
+     * @return - the best configuration found (the starting one, unless a better one was found).
+     *
+     * @throws IllegalArgumentException - when the population is smaller than 4 or the generations are negative.
+     */
+    public RegulatorConfig tune(final int populationSize, final int generations, final long seed)
+            throws IllegalArgumentException
+    {
+        if (populationSize < 4 || generations < 0) {
+            throw new IllegalArgumentException(
+                    "AutoTuner: the population must have at least 4 members and generations must not be negative!");
+        }
+
+        final SplitMix64 random = new SplitMix64(seed);
+        final int dimension = lower.length;
+
+        // The starting configuration and random variations of it: the hand-picked values are a good start,
+        // candidates spread over the whole bounds mostly just fail to settle.
+        final double[][] population = new double[populationSize][dimension];
+        final double[] costs = new double[populationSize];
+
+        population[0] = origin.clone();
+        for (int m = 1; m < populationSize; ++m) {
+            for (int p = 0; p < dimension; ++p) {
+                population[m][p] = origin[p] + random.nextGaussian() * INITIAL_SPREAD * (upper[p] - lower[p]);
+            }
+        }
+        for (final double[] member : population) {
+            repair(member);
+        }
+        evaluate(population, costs, seed);
+
+        final double[][] trials = new double[populationSize][dimension];
+        final double[] trialCosts = new double[populationSize];
+
+        for (int generation = 1; generation <= generations; ++generation) {
+            for (int m = 0; m < populationSize; ++m) {
+                // Three distinct members other than m.
+                int a, b, c;
+                do {
+                    a = (int) (random.nextDouble() * populationSize);
+                } while (a == m);
+                do {
+                    b = (int) (random.nextDouble() * populationSize);
+                } while (b == m || b == a);
+                do {
+                    c = (int) (random.nextDouble() * populationSize);
+                } while (c == m || c == a || c == b);
+
+                final int forced = (int) (random.nextDouble() * dimension);
+                for (int p = 0; p < dimension; ++p) {
+                    trials[m][p] = p == forced || random.nextDouble() < CROSSOVER
+                            ? population[a][p] + DIFFERENTIAL_WEIGHT * (population[b][p] - population[c][p])
+                            : population[m][p];
+                }
+                repair(trials[m]);
+            }
+
+            evaluate(trials, trialCosts, seed);
+
+            for (int m = 0; m < populationSize; ++m) {
+                if (trialCosts[m] <= costs[m]) {
+                    System.arraycopy(trials[m], 0, population[m], 0, dimension);
+                    costs[m] = trialCosts[m];
+                }
+            }
+
+            System.out.printf("generation %3d: best %.4f, mean %.4f (%d evaluated, %d cached)%n", generation,
+                    costs[best(costs)], mean(costs), evaluations.get(), cacheHits.get());
+        }
+
+        return decode(population[best(costs)]);
+    }
+
+    /**
+     * Judge candidates concurrently.
+     */
+    private void evaluate(final double[][] candidates, final double[] costs, final long seed) {
+        final List<RecursiveAction> tasks = new ArrayList<>(candidates.length);
+        for (int m = 0; m < candidates.length; ++m) {
+            final int member = m;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    costs[member] = cost(candidates[member], seed);
+                }
+            });
+        }
+
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    private static int best(final double[] costs) {
+        int best = 0;
+        for (int m = 1; m < costs.length; ++m) {
+            if (costs[m] < costs[best]) {
+                best = m;
+            }
+        }
+
+        return best;
+    }
+
+    private static double mean(final double[] costs) {
+        double sum = 0.0;
+        for (final double cost : costs) {
+            sum += cost;
+        }
+
+        return sum / costs.length;
+    }
+
+    /**
+     * @return - number of candidates simulated so far.
+     */
+    public long getEvaluationCount() {
+        return evaluations.get();
+    }
+
+    /**
+     * @return - number of candidates whose cost was found in the cache.
+     */
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - options, see the class description.
+     */
+    public static void main(String[] args) throws IOException {
+        int population = 32, generations = 40, scenarios = 64;
+        long seed = 1;
+        double horizon = 60.0, step = 10.0;
+        RegulatorConfig config = RegulatorConfig.DEFAULT;
+        Path out = Paths.get("regulator.properties");
+
+        for (int i = 0; i < args.length; ++i) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("AutoTuner: missing value of " + args[i]);
+            }
+
+            final String value = args[++i];
+            switch (args[i - 1]) {
+                case "--population": population = Integer.parseInt(value); break;
+                case "--generations": generations = Integer.parseInt(value); break;
+                case "--scenarios": scenarios = Integer.parseInt(value); break;
+                case "--horizon": horizon = Double.parseDouble(value); break;
+                case "--step": step = Double.parseDouble(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--config": config = RegulatorConfig.load(Paths.get(value)); break;
+                case "--out": out = Paths.get(value); break;
+                default: throw new IllegalArgumentException("AutoTuner: unknown option " + args[i - 1]);
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool();
+        final AutoTuner tuner = new AutoTuner(config, new Disturbances(0.1, 0.05, 0.005), scenarios, step,
+                horizon * 1000.0, pool);
+
+        System.out.printf("Tuning %d parameters: %d candidates x %d generations, %d scenarios of %.0f s each, "
+                + "on %d threads%n", tuner.getDimension(), population, generations, scenarios, horizon,
+                pool.getParallelism());
+
+        final long start = System.nanoTime();
+        final RegulatorConfig best = tuner.tune(population, generations, seed);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("starting cost %.4f, best cost %.4f%n",
+                tuner.cost(tuner.encode(config), seed), tuner.cost(tuner.encode(best), seed));
+        System.out.printf("%.1f s, %.0fx real time%n", seconds,
+                tuner.getEvaluationCount() * scenarios * horizon / seconds);
+
+        best.save(out);
+        System.out.println("Saved to " + out);
+
+        pool.shutdown();
+    }
+}
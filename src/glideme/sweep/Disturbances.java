@@ -0,0 +1,65 @@
+package glideme.sweep;
+
+/**
+ * Disturbances a swept crane is exposed to:
+ *  - gusts of wind hitting the load at random moments (a Poisson process), each changing its angular velocity
+ *    by a normally distributed amount,
+ *  - noise of the angle sensor, normally distributed and independent between ticks.
+ *
+ * Instances are immutable.
+ */
+public class Disturbances {
+    /**
+     * No disturbances at all.
+     */
+    public static final Disturbances NONE = new Disturbances(0.0, 0.0, 0.0);
+
+    private final double gustRate, gustStrength, angleNoise;
+
+    /**
+     * Create disturbances.
+     *
+     * @param gustRate - mean number of gusts per second.
+     * @param gustStrength - standard deviation of a gust's change of the load's angular velocity, in rad/sec.
+     * @param angleNoise - standard deviation of the angle sensor's noise, in radians.
+     *
+     * @throws IllegalArgumentException - when any of the parameters is negative or NaN.
+     */
+    public Disturbances(final double gustRate, final double gustStrength, final double angleNoise)
+            throws IllegalArgumentException
+    {
+        if (!(gustRate >= 0) || !(gustStrength >= 0) || !(angleNoise >= 0)) {
+            throw new IllegalArgumentException("Disturbances: parameters must not be negative!");
+        }
+
+        this.gustRate = gustRate;
+        this.gustStrength = gustStrength;
+        this.angleNoise = angleNoise;
+    }
+
+    /**
+     * @return - mean number of gusts per second.
+     */
+    public double getGustRate() {
+        return gustRate;
+    }
+
+    /**
+     * @return - standard deviation of a gust's change of the load's angular velocity, in rad/sec.
+     */
+    public double getGustStrength() {
+        return gustStrength;
+    }
+
+    /**
+     * @return - standard deviation of the angle sensor's noise, in radians.
+     */
+    public double getAngleNoise() {
+        return angleNoise;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.3g gusts/s of %.3g rad/s, angle noise %.3g rad", gustRate, gustStrength, angleNoise);
+    }
+}
@@ -0,0 +1,429 @@
+package glideme.sweep;
+
+import glideme.PendulumPhysics;
+import glideme.Quiescence;
+import glideme.Regulator;
+import glideme.RegulatorConfig;
+import glideme.World;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo sweep of the regulator's robustness: runs many headless scenarios in parallel and summarizes
+ * how well the crane was controlled.
+ *
+ * Every scenario moves a crane from a random start to a random destination, with the pendulum physics
+ * (so that larger time steps can be used and gusts have something to act on) and the given disturbances.
+ * Scenario n draws everything from SplitMix64 stream n of the sweep's seed, and the scenarios are split
+ * into fixed ranges merged in a fixed order, so a sweep gives bit-identical results for the same seed
+ * on any number of cores.
+ *
+ * The results are summarized per scenario into streaming statistics, nothing else is kept:
+ *  - settling time: from the start until the crane enters the settling band and then stays in it for
+ *    SETTLING_HOLD (gusts may knock it out again later; scenarios that never stay in the band that long
+ *    are counted as unsettled instead),
+ *  - overshoot: how far the crane got past its destination,
+ *  - maximal swing: the largest absolute angle.
+ *
+ * A scenario whose state stops being finite (the pendulum swung beyond the regulator's range and the control
+ * broke down) ends right there. It's counted as diverged and unsettled, and its overshoot and swing are reported
+ * as DIVERGED_OVERSHOOT and DIVERGED_SWING, beyond the histograms' ranges, so the worst scenarios show in the
+ * overflow bins and the maxima instead of dropping out of the statistics.
+ *
+ * Usage: RobustnessSweep [options]
+ *   --scenarios N           number of scenarios (default 10000)
+ *   --seed N                seed of the scenarios (default 1)
+ *   --horizon SECONDS       simulated time per scenario (default 120)
+ *   --step MILLIS           time step of the physics (default 10)
+ *   --gust-rate N           mean number of gusts per second (default 0.1)
+ *   --gust-strength N       deviation of a gust's change of angular velocity in rad/s (default 0.05)
+ *   --angle-noise N         deviation of the angle sensor's noise in radians (default 0.005)
+ *   --config FILE           regulator configuration (default: the built-in one)
+ */
+public class RobustnessSweep {
+    /**
+     * Default settling band: within a unit of the destination, slower than a unit per second and swinging less
+     * than 0.05 radians (the regulator's resting accuracy plus a margin for the disturbances).
+     */
+    public static final Quiescence DEFAULT_BAND = new Quiescence(1.0, 1e-3, 0.05, Double.POSITIVE_INFINITY);
+
+    /**
+     * How long the crane has to stay in the settling band to be considered settled, in milliseconds.
+     */
+    public static final double SETTLING_HOLD = 2000.0;
+
+    /**
+     * Overshoot reported for a diverged scenario: the whole track, the end of the overshoot's histogram.
+     */
+    public static final double DIVERGED_OVERSHOOT = World.TRACK_LENGTH;
+
+    /**
+     * Maximal swing reported for a diverged scenario: upside down, beyond the end of the swing's histogram.
+     */
+    public static final double DIVERGED_SWING = Math.PI;
+
+    /**
+     * Number of scenarios run by a single task (fixed, so that the results don't depend on the number of cores).
+     */
+    private static final int SCENARIOS_PER_TASK = 256;
+
+    /**
+     * Number of bins of the statistics' histograms.
+     */
+    private static final int BINS = 1000;
+
+    private final RegulatorConfig config;
+    private final Disturbances disturbances;
+    private final Quiescence band;
+    private final double timeStep;
+    private final long ticks, holdTicks;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a sweep.
+     *
+     * @param config - configuration of the regulators.
+     * @param disturbances - disturbances of the cranes.
+     * @param band - settling band, the crane has settled once it stays within these tolerances.
+     * @param timeStep - time step of the physics in milliseconds.
+     * @param horizon - simulated time per scenario in milliseconds.
+     * @param pool - pool running the scenarios.
+     *
+     * @throws IllegalArgumentException - when the time step or the horizon isn't positive.
+     */
+    public RobustnessSweep(final RegulatorConfig config, final Disturbances disturbances, final Quiescence band,
+                           final double timeStep, final double horizon, final ForkJoinPool pool)
+            throws IllegalArgumentException
+    {
+        if (!(timeStep > 0) || !(horizon > 0) || Double.isInfinite(horizon)) {
+            throw new IllegalArgumentException("RobustnessSweep: 'timeStep' and 'horizon' must be positive!");
+        }
+
+        this.config = config;
+        this.disturbances = disturbances;
+        this.band = band;
+        this.timeStep = timeStep;
+        this.ticks = (long) Math.ceil(horizon / timeStep);
+        this.holdTicks = (long) Math.ceil(SETTLING_HOLD / timeStep);
+        this.pool = pool;
+    }
+
+    /**
+     * Summary of a sweep (or a part of it).
+     */
+    public static class Result {
+        /**
+         * Number of scenarios run, of those that didn't settle within the horizon and of those that diverged
+         * (counted as unsettled as well).
+         */
+        private long scenarios = 0, unsettled = 0, diverged = 0;
+
+        /**
+         * Settling time in milliseconds, overshoot in units and maximal swing in radians.
+         */
+        private final StreamingStatistic settlingTime, overshoot, maxSwing;
+
+        Result(final double horizon) {
+            settlingTime = new StreamingStatistic(horizon, BINS);
+            overshoot = new StreamingStatistic(World.TRACK_LENGTH, BINS);
+            maxSwing = new StreamingStatistic(Math.PI / 2.0, BINS);
+        }
+
+        /**
+         * Add another part's results.
+         */
+        void merge(final Result other) {
+            scenarios += other.scenarios;
+            unsettled += other.unsettled;
+            diverged += other.diverged;
+            settlingTime.merge(other.settlingTime);
+            overshoot.merge(other.overshoot);
+            maxSwing.merge(other.maxSwing);
+        }
+
+        /**
+         * @return - number of scenarios run.
+         */
+        public long getScenarioCount() {
+            return scenarios;
+        }
+
+        /**
+         * @return - number of scenarios whose crane didn't settle within the horizon.
+         */
+        public long getUnsettledCount() {
+            return unsettled;
+        }
+
+        /**
+         * @return - number of scenarios whose state stopped being finite (included in the unsettled ones).
+         */
+        public long getDivergedCount() {
+            return diverged;
+        }
+
+        /**
+         * @return - settling times of the settled scenarios, in milliseconds.
+         */
+        public StreamingStatistic getSettlingTime() {
+            return settlingTime;
+        }
+
+        /**
+         * @return - overshoots, in units (DIVERGED_OVERSHOOT for the diverged scenarios).
+         */
+        public StreamingStatistic getOvershoot() {
+            return overshoot;
+        }
+
+        /**
+         * @return - maximal swings, in radians (DIVERGED_SWING for the diverged scenarios).
+         */
+        public StreamingStatistic getMaxSwing() {
+            return maxSwing;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d scenarios, %d (%.3f%%) unsettled, %d (%.3f%%) diverged%n", scenarios,
+                    unsettled, scenarios == 0 ? 0.0 : 100.0 * unsettled / scenarios,
+                    diverged, scenarios == 0 ? 0.0 : 100.0 * diverged / scenarios)
+                    + String.format("%-18s %12s %12s %12s %12s %12s %12s%n",
+                            "", "mean", "deviation", "p50", "p99", "p99.9", "max")
+                    + row("settling time [s]", settlingTime, 0.001)
+                    + row("overshoot [units]", overshoot, 1.0)
+                    + row("max swing [rad]", maxSwing, 1.0);
+        }
+
+        private static String row(final String name, final StreamingStatistic statistic, final double scale) {
+            return String.format("%-18s %12.4f %12.4f %12.4f %12.4f %12.4f %12.4f%n", name,
+                    statistic.getMean() * scale, statistic.getDeviation() * scale,
+                    statistic.getPercentile(50.0) * scale, statistic.getPercentile(99.0) * scale,
+                    statistic.getPercentile(99.9) * scale, statistic.getMax() * scale);
+        }
+    }
+
+    /**
+     * Run scenarios 0 to count - 1 of the given seed and wait for the results.
+     * When called from a fork-join task (e.g. evaluating many sweeps at once), the scenarios are run in that
+     * task's pool instead of the sweep's; the results are the same.
+     *
+     * @param seed - seed of the scenarios.
+     * @param count - number of scenarios.
+     *
+     * @return - the summary.
+     *
+     * @throws IllegalArgumentException - when the number of scenarios is negative.
+     */
+    public Result run(final long seed, final long count) throws IllegalArgumentException {
+        if (count < 0) {
+            throw new IllegalArgumentException("RobustnessSweep: 'count' must not be negative!");
+        }
+
+        final Part part = new Part(seed, 0, count);
+
+        return ForkJoinTask.inForkJoinPool() ? part.invoke() : pool.invoke(part);
+    }
+
+    /**
+     * A range of scenarios, split in halves until it's small enough to be run directly.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized.
+    private class Part extends RecursiveTask<Result> {
+        private final long seed, from, to;
+
+        Part(final long seed, final long from, final long to) {
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Result compute() {
+            if (to - from <= SCENARIOS_PER_TASK) {
+                final Result result = new Result(ticks * timeStep);
+                final World.CraneState state = new World.CraneState();
+
+                for (long scenario = from; scenario < to; ++scenario) {
+                    runScenario(SplitMix64.stream(seed, scenario), result, state);
+                }
+
+                return result;
+            }
+
+            // Split at a multiple of the task size, so that the tasks are the same whoever runs them.
+            final long tasks = (to - from + SCENARIOS_PER_TASK - 1) / SCENARIOS_PER_TASK;
+            final long middle = from + tasks / 2 * SCENARIOS_PER_TASK;
+            final Part left = new Part(seed, from, middle);
+            left.fork();
+
+            final Result result = new Part(seed, middle, to).compute();
+            final Result leftResult = left.join();
+
+            leftResult.merge(result);
+            return leftResult;
+        }
+    }
+
+    /**
+     * Run a single scenario and add its outcome to the results.
+     *
+     * @param random - the scenario's random stream.
+     * @param result - the results.
+     * @param state - state object to read the crane's state into.
+     */
+    private void runScenario(final SplitMix64 random, final Result result, final World.CraneState state) {
+        final double start = random.nextDouble(0.0, World.TRACK_LENGTH),
+                destination = random.nextDouble(0.0, World.TRACK_LENGTH);
+
+        final World world = new World(new GustyPhysics(timeStep, disturbances, random.split()),
+                new NoisyRegulator(config, disturbances.getAngleNoise(), random.split()));
+        world.update(start, 0.0, 0.0, 0.0);
+        world.setDestination(destination);
+
+        final double direction = Math.signum(destination - start);
+        double overshoot = 0.0, maxSwing = 0.0;
+
+        // The last tick the crane was out of the band, and the one it settled at (or -1 while it hasn't).
+        long lastOut = 0, settledAt = -1;
+        boolean diverged = false;
+
+        for (long tick = 1; tick <= ticks; ++tick) {
+            world.refresh();
+            world.getCraneState(state);
+
+            // NaN anywhere makes the sum NaN, infinity makes it infinite (or NaN).
+            final double sum = state.position + state.velocity + state.acceleration + state.angle;
+            if (Double.isNaN(sum) || Double.isInfinite(sum)) {
+                diverged = true;
+                break;
+            }
+
+            overshoot = Math.max(overshoot, (state.position - destination) * direction);
+            maxSwing = Math.max(maxSwing, Math.abs(state.angle));
+
+            if (!band.isSettled(destination, state.position, state.velocity, state.acceleration, state.angle)) {
+                lastOut = tick;
+            }
+            else if (settledAt < 0 && tick - lastOut >= holdTicks) {
+                settledAt = lastOut;
+            }
+        }
+
+        ++result.scenarios;
+        if (diverged) {
+            ++result.diverged;
+            ++result.unsettled;
+            result.overshoot.add(DIVERGED_OVERSHOOT);
+            result.maxSwing.add(DIVERGED_SWING);
+            return;
+        }
+
+        if (settledAt < 0) {
+            ++result.unsettled;
+        }
+        else {
+            result.settlingTime.add(settledAt * timeStep);
+        }
+        result.overshoot.add(overshoot);
+        result.maxSwing.add(maxSwing);
+    }
+
+    /**
+     * Pendulum physics hit by random gusts.
+     */
+    private static class GustyPhysics extends PendulumPhysics {
+        private final double gustProbability, gustStrength;
+        private final SplitMix64 random;
+
+        GustyPhysics(final double timeStep, final Disturbances disturbances, final SplitMix64 random) {
+            super(Integrator.RK4, timeStep);
+
+            // The chance of a gust in a tick and its deviation in rad/msec.
+            gustProbability = disturbances.getGustRate() * timeStep / 1000.0;
+            gustStrength = disturbances.getGustStrength() / 1000.0;
+            this.random = random;
+        }
+
+        @Override
+        public void update(final World world) {
+            if (gustProbability > 0.0 && random.nextDouble() < gustProbability) {
+                disturb(random.nextGaussian() * gustStrength);
+            }
+
+            super.update(world);
+        }
+    }
+
+    /**
+     * Regulator reading the angle with a noisy sensor.
+     */
+    private static class NoisyRegulator extends Regulator {
+        private final double noise;
+        private final SplitMix64 random;
+
+        NoisyRegulator(final RegulatorConfig config, final double noise, final SplitMix64 random) {
+            super(config, null);
+
+            this.noise = noise;
+            this.random = random;
+        }
+
+        @Override
+        protected double measureAngle(final double angle) {
+            return noise > 0.0 ? angle + random.nextGaussian() * noise : angle;
+        }
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - options, see the class description.
+     */
+    public static void main(String[] args) throws IOException {
+        long scenarios = 10000, seed = 1;
+        double horizon = 120.0, step = 10.0, gustRate = 0.1, gustStrength = 0.05, angleNoise = 0.005;
+        RegulatorConfig config = RegulatorConfig.DEFAULT;
+
+        for (int i = 0; i < args.length; ++i) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("RobustnessSweep: missing value of " + args[i]);
+            }
+
+            final String value = args[++i];
+            switch (args[i - 1]) {
+                case "--scenarios": scenarios = Long.parseLong(value); break;
+                case "--seed": seed = Long.parseLong(value); break;
+                case "--horizon": horizon = Double.parseDouble(value); break;
+                case "--step": step = Double.parseDouble(value); break;
+                case "--gust-rate": gustRate = Double.parseDouble(value); break;
+                case "--gust-strength": gustStrength = Double.parseDouble(value); break;
+                case "--angle-noise": angleNoise = Double.parseDouble(value); break;
+                case "--config": config = RegulatorConfig.load(Paths.get(value)); break;
+                default: throw new IllegalArgumentException("RobustnessSweep: unknown option " + args[i - 1]);
+            }
+        }
+
+        final Disturbances disturbances = new Disturbances(gustRate, gustStrength, angleNoise);
+        final ForkJoinPool pool = new ForkJoinPool();
+        final RobustnessSweep sweep = new RobustnessSweep(config, disturbances, DEFAULT_BAND, step,
+                horizon * 1000.0, pool);
+
+        System.out.printf("Sweeping %d scenarios (seed %d, %s, %.0f ms steps, %.0f s each) on %d threads%n",
+                scenarios, seed, disturbances, step, horizon, pool.getParallelism());
+
+        final long start = System.nanoTime();
+        final Result result = sweep.run(seed, scenarios);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.print(result);
+        System.out.printf("%.1f s, %.0f scenarios/s, %.1fx real time%n", seconds, scenarios / seconds,
+                scenarios * horizon / seconds);
+
+        pool.shutdown();
+    }
+}
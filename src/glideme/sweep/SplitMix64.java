@@ -0,0 +1,118 @@
+package glideme.sweep;
+
+/**
+ * A small, fast, splittable pseudo-random generator (Steele, Lea and Flood's SplitMix64).
+ *
+ * The state is a counter advanced by a fixed odd constant and each output is a strong mix of it, so
+ * the n-th output of a stream can be computed directly. That's what makes sweeps reproducible however
+ * they're parallelized: scenario n always gets the generator seeded by output n of the sweep's stream,
+ * whichever thread runs it and whenever.
+ *
+ * Instances aren't thread-safe; give every thread (or scenario) its own.
+ */
+public class SplitMix64 {
+    /**
+     * Increment of the state (the golden ratio in fixed point).
+     */
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 2^-53, converting 53 random bits to a double in [0, 1).
+     */
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+    private long state;
+
+    /**
+     * A normally distributed value generated along with the previous one (see nextGaussian()).
+     */
+    private double spareGaussian;
+    private boolean hasSpareGaussian = false;
+
+    /**
+     * Create a generator.
+     *
+     * @param seed - the seed (any value).
+     */
+    public SplitMix64(final long seed) {
+        state = seed;
+    }
+
+    /**
+     * Create the generator of the given sub-stream of a seed's stream (without generating the outputs before it).
+     *
+     * @param seed - seed of the parent stream.
+     * @param index - index of the sub-stream (e.g. the scenario's number).
+     *
+     * @return - a generator seeded by the index-th output of the parent stream.
+     */
+    public static SplitMix64 stream(final long seed, final long index) {
+        return new SplitMix64(mix(seed + (index + 1) * GAMMA));
+    }
+
+    /**
+     * Create a generator independent of this one, seeded by this one's next output.
+     *
+     * @return - the new generator.
+     */
+    public SplitMix64 split() {
+        return new SplitMix64(mix(nextLong() ^ GAMMA));
+    }
+
+    /**
+     * @return - the next 64 random bits.
+     */
+    public long nextLong() {
+        state += GAMMA;
+        return mix(state);
+    }
+
+    /**
+     * @return - a uniformly distributed value in [0, 1).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * @param min - the lowest value.
+     * @param max - the bound of the values.
+     *
+     * @return - a uniformly distributed value in [min, max).
+     */
+    public double nextDouble(final double min, final double max) {
+        return min + (max - min) * nextDouble();
+    }
+
+    /**
+     * @return - a normally distributed value with zero mean and unit deviation (by Marsaglia's polar method).
+     */
+    public double nextGaussian() {
+        if (hasSpareGaussian) {
+            hasSpareGaussian = false;
+            return spareGaussian;
+        }
+
+        double u, v, s;
+        do {
+            u = 2.0 * nextDouble() - 1.0;
+            v = 2.0 * nextDouble() - 1.0;
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+
+        final double scale = Math.sqrt(-2.0 * Math.log(s) / s);
+        spareGaussian = v * scale;
+        hasSpareGaussian = true;
+
+        return u * scale;
+    }
+
+    /**
+     * The finalizer of the generator (a variant of MurmurHash3's), a bijection scrambling all the bits.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
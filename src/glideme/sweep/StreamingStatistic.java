@@ -0,0 +1,158 @@
+package glideme.sweep;
+
+/**
+ * Summary of a stream of values in constant memory: count, mean, standard deviation, extremes and approximate
+ * percentiles, without keeping the values themselves.
+ *
+ * The mean and the variance are accumulated by Welford's method and partial summaries are merged by Chan's
+ * formula, so a sweep can be summarized piecewise in parallel. Percentiles come from a histogram of equal bins
+ * over [0, range]; they're accurate to a bin's width (values beyond the range are counted in an overflow bin
+ * and reported as the maximum).
+ *
+ * Instances aren't thread-safe; summarize every part of a sweep separately and merge the results.
+ */
+public class StreamingStatistic {
+    private final double range;
+    private final long[] bins;
+
+    /**
+     * Count of the values, their mean, sum of squared deviations from the mean and extremes.
+     */
+    private long count = 0;
+    private double mean = 0.0, squares = 0.0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Create an empty summary.
+     *
+     * @param range - upper bound of the histogram (the values are expected to be in [0, range]).
+     * @param binCount - number of bins of the histogram.
+     *
+     * @throws IllegalArgumentException - when the range or the number of bins isn't positive.
+     */
+    public StreamingStatistic(final double range, final int binCount) throws IllegalArgumentException {
+        if (!(range > 0) || Double.isInfinite(range) || binCount <= 0) {
+            throw new IllegalArgumentException("StreamingStatistic: 'range' and 'binCount' must be positive!");
+        }
+
+        this.range = range;
+        bins = new long[binCount + 1];
+    }
+
+    /**
+     * @return - an empty summary with the same histogram.
+     */
+    public StreamingStatistic newEmpty() {
+        return new StreamingStatistic(range, bins.length - 1);
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value - the value (NaN is ignored).
+     */
+    public void add(final double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        ++count;
+        final double delta = value - mean;
+        mean += delta / count;
+        squares += delta * (value - mean);
+
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+
+        final int binCount = bins.length - 1;
+        ++bins[value >= range ? binCount : Math.max(0, (int) (value / range * binCount))];
+    }
+
+    /**
+     * Add all values summarized by another summary (with the same histogram).
+     *
+     * @param other - the other summary.
+     *
+     * @throws IllegalArgumentException - when the histograms differ.
+     */
+    public void merge(final StreamingStatistic other) throws IllegalArgumentException {
+        if (other.range != range || other.bins.length != bins.length) {
+            throw new IllegalArgumentException("StreamingStatistic: can't merge summaries with different histograms!");
+        }
+        if (other.count == 0) {
+            return;
+        }
+
+        final long total = count + other.count;
+        final double delta = other.mean - mean;
+
+        mean += delta * other.count / total;
+        squares += other.squares + delta * delta * ((double) count * other.count / total);
+        count = total;
+
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+
+        for (int b = 0; b < bins.length; ++b) {
+            bins[b] += other.bins[b];
+        }
+    }
+
+    /**
+     * @return - number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return - mean of the values (NaN if there are none).
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * @return - sample standard deviation of the values (NaN if there are less than two).
+     */
+    public double getDeviation() {
+        return count < 2 ? Double.NaN : Math.sqrt(squares / (count - 1));
+    }
+
+    /**
+     * @return - the lowest value (NaN if there are none).
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return - the highest value (NaN if there are none).
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @param percentile - the percentile (0 - 100).
+     *
+     * @return - upper bound of the bin the percentile falls into, at most the maximum (NaN if there are no values).
+     */
+    public double getPercentile(final double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        final int binCount = bins.length - 1;
+
+        long seen = 0;
+        for (int b = 0; b < binCount; ++b) {
+            seen += bins[b];
+            if (seen >= rank) {
+                return Math.min(max, (b + 1) * range / binCount);
+            }
+        }
+
+        return max;
+    }
+}
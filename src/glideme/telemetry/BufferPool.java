@@ -0,0 +1,52 @@
+package glideme.telemetry;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Pool of equally sized direct buffers, so that sending frames doesn't allocate (direct buffers are expensive
+ * to allocate and are freed only by the garbage collector, but the socket writes straight from them).
+ *
+ * Instances aren't thread-safe, a pool belongs to a single thread.
+ */
+class BufferPool {
+    private final int bufferSize;
+
+    /**
+     * The largest number of free buffers kept (the rest are left to the garbage collector).
+     */
+    private final int maxFree;
+
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    /**
+     * Create an empty pool.
+     *
+     * @param bufferSize - size of the buffers in bytes.
+     * @param maxFree - the largest number of free buffers kept.
+     */
+    BufferPool(final int bufferSize, final int maxFree) {
+        this.bufferSize = bufferSize;
+        this.maxFree = maxFree;
+    }
+
+    /**
+     * @return - a cleared buffer (a free one if there's any).
+     */
+    ByteBuffer acquire() {
+        final ByteBuffer buffer = free.pollFirst();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Return a buffer to the pool.
+     *
+     * @param buffer - the buffer (acquired from this pool), not to be used by the caller anymore.
+     */
+    void release(final ByteBuffer buffer) {
+        if (free.size() < maxFree) {
+            buffer.clear();
+            free.addFirst(buffer);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package glideme.telemetry;
+
+import glideme.TickListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Publishes the live state of a fleet of cranes into a memory-mapped file, where any process on the host can
+ * read it (see SharedStateReader) without sockets, serialization or copying through the kernel.
+ *
+ * Every crane has a fixed slot, indexed by its id, holding its latest tick. A slot is guarded by a sequence
+ * number (a seqlock): the writer makes it odd before changing the slot and even again afterwards, so a reader
+ * knows it has read a consistent snapshot if it saw the same even number before and after reading. Writing
+ * never waits for the readers and readers never block the writer, however many there are.
+ *
+ * File layout (little endian): a 64 byte header (magic, version, slot size and slot count as ints; padding),
+ * then the slots, 64 bytes each (a cache line, so cranes written by different threads don't share one).
+ * A slot consists of the sequence number and the tick number (longs), followed by the destination, position,
+ * velocity, acceleration and angle (doubles). A slot whose sequence number is 0 has never been written.
+ *
+ * Each slot must be fed by a single thread: register getSlot(id) as the listener of crane id's world.
+ */
+public class SharedStateExporter implements Closeable {
+    /**
+     * File format identification.
+     */
+    static final int MAGIC = 0x474C5353, VERSION = 1;
+
+    /**
+     * Sizes in bytes.
+     */
+    static final int HEADER_SIZE = 64, SLOT_SIZE = 64;
+
+    /**
+     * Offsets of the header fields.
+     */
+    static final int SLOT_SIZE_OFFSET = 8, SLOT_COUNT_OFFSET = 12;
+
+    /**
+     * Offsets of a slot's fields.
+     */
+    static final int SEQUENCE_OFFSET = 0, TICK_OFFSET = 8, DESTINATION_OFFSET = 16, POSITION_OFFSET = 24,
+            VELOCITY_OFFSET = 32, ACCELERATION_OFFSET = 40, ANGLE_OFFSET = 48;
+
+    /**
+     * The largest number of slots a file can hold (a single mapping is limited to 2 GB).
+     */
+    public static final int MAX_SLOT_COUNT = (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE;
+
+    /**
+     * Writer of a crane's slot, fed by the thread advancing the crane's world.
+     */
+    public class Slot implements TickListener {
+        private final int craneId, offset;
+
+        /**
+         * Number of times the slot has been written (its sequence number is twice that).
+         */
+        private long writes = 0;
+
+        /**
+         * Written for its side effect only: Java 7 has no fences for memory outside the heap, but HotSpot
+         * doesn't move any memory access (the mapping's included) across a volatile store.
+         */
+        private volatile int fence;
+
+        Slot(final int craneId) {
+            this.craneId = craneId;
+            offset = HEADER_SIZE + craneId * SLOT_SIZE;
+        }
+
+        /**
+         * @return - id of the crane the slot belongs to.
+         */
+        public int getCraneId() {
+            return craneId;
+        }
+
+        /**
+         * Publish the tick.
+         */
+        @Override
+        public void onTick(final long tick, final double destination, final double position, final double velocity,
+                           final double acceleration, final double angle) {
+            final long sequence = 2 * writes;
+
+            buffer.putLong(offset + SEQUENCE_OFFSET, sequence + 1);
+            fence = 0;
+
+            buffer.putLong(offset + TICK_OFFSET, tick);
+            buffer.putDouble(offset + DESTINATION_OFFSET, destination);
+            buffer.putDouble(offset + POSITION_OFFSET, position);
+            buffer.putDouble(offset + VELOCITY_OFFSET, velocity);
+            buffer.putDouble(offset + ACCELERATION_OFFSET, acceleration);
+            buffer.putDouble(offset + ANGLE_OFFSET, angle);
+
+            fence = 0;
+            buffer.putLong(offset + SEQUENCE_OFFSET, sequence + 2);
+            ++writes;
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final Slot[] slots;
+
+    /**
+     * Create the shared state (replacing any previous contents of the file). All slots start unwritten.
+     *
+     * @param file - the file to publish into (preferably on a memory-backed file system, e.g. /dev/shm).
+     * @param slotCount - number of cranes (their ids are 0 to slotCount - 1).
+     *
+     * @throws IOException - when the file can't be created or mapped.
+     * @throws IllegalArgumentException - when the slot count isn't positive or exceeds MAX_SLOT_COUNT.
+     */
+    public SharedStateExporter(final Path file, final int slotCount) throws IOException, IllegalArgumentException {
+        if (slotCount <= 0 || slotCount > MAX_SLOT_COUNT) {
+            throw new IllegalArgumentException("SharedStateExporter: slot count must be between 1 and "
+                    + MAX_SLOT_COUNT + "!");
+        }
+
+        slots = new Slot[slotCount];
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(4, VERSION);
+        buffer.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+        buffer.putInt(SLOT_COUNT_OFFSET, slotCount);
+        // The magic is stored last: a reader never accepts a file whose header isn't complete.
+        buffer.putInt(0, MAGIC);
+    }
+
+    /**
+     * Get the writer of a crane's slot (always the same one for the same id).
+     *
+     * @param craneId - id of the crane.
+     *
+     * @return - the slot's writer, to be registered as the listener of the crane's world.
+     *
+     * @throws IllegalArgumentException - when there's no slot of the given id.
+     */
+    synchronized
+    public Slot getSlot(final int craneId) throws IllegalArgumentException {
+        if (craneId < 0 || craneId >= slots.length) {
+            throw new IllegalArgumentException("SharedStateExporter: crane id must be between 0 and "
+                    + (slots.length - 1) + "!");
+        }
+
+        if (slots[craneId] == null) {
+            slots[craneId] = new Slot(craneId);
+        }
+
+        return slots[craneId];
+    }
+
+    /**
+     * @return - number of slots.
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Close the file. The slots must not be fed afterwards; the file's contents stay readable to readers
+     * that have it open.
+     *
+     * @throws IOException - when the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,161 @@
+package glideme.telemetry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the live state of cranes published by SharedStateExporter (from the same or from another process).
+ *
+ * Reading a crane's state costs a few loads from the shared mapping: no system call, no allocation,
+ * and the writer is never delayed, so the state can be polled at the full tick rate.
+ *
+ * Usage: SharedStateReader FILE [INTERVAL_MILLIS] prints the state of all cranes periodically.
+ */
+public class SharedStateReader implements Closeable {
+    /**
+     * Number of attempts to read a slot consistently before giving up (a slot stays odd forever
+     * if its writer died in the middle of an update).
+     */
+    private static final int MAX_ATTEMPTS = 100000;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+
+    /**
+     * Written for its side effect only, see SharedStateExporter.Slot.fence.
+     */
+    private volatile int fence;
+
+    /**
+     * Open the shared state.
+     *
+     * @param file - the file the state is published into.
+     *
+     * @throws IOException - when the file can't be read or isn't a shared crane state.
+     */
+    public SharedStateReader(final Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.limit() < SharedStateExporter.HEADER_SIZE || buffer.getInt(0) != SharedStateExporter.MAGIC
+                    || buffer.getInt(4) != SharedStateExporter.VERSION
+                    || buffer.getInt(SharedStateExporter.SLOT_SIZE_OFFSET) != SharedStateExporter.SLOT_SIZE) {
+                throw new IOException("SharedStateReader: " + file + " is not a shared crane state!");
+            }
+
+            slotCount = buffer.getInt(SharedStateExporter.SLOT_COUNT_OFFSET);
+            if (slotCount <= 0 || buffer.limit()
+                    != SharedStateExporter.HEADER_SIZE + (long) slotCount * SharedStateExporter.SLOT_SIZE) {
+                throw new IOException("SharedStateReader: " + file + " is truncated or corrupted!");
+            }
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - number of slots (cranes' ids are 0 to getSlotCount() - 1).
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Read a consistent snapshot of a crane's latest tick.
+     *
+     * @param craneId - id of the crane.
+     * @param into - the record to overwrite (its tick tells whether the crane has advanced since the last read).
+     *
+     * @return - true if the state was read, false if the crane hasn't published any yet
+     * (or its writer stopped in the middle of an update).
+     *
+     * @throws IllegalArgumentException - when there's no slot of the given id.
+     */
+    public boolean read(final int craneId, final TelemetryReader.Record into) throws IllegalArgumentException {
+        if (craneId < 0 || craneId >= slotCount) {
+            throw new IllegalArgumentException("SharedStateReader: crane id must be between 0 and "
+                    + (slotCount - 1) + "!");
+        }
+
+        final int offset = SharedStateExporter.HEADER_SIZE + craneId * SharedStateExporter.SLOT_SIZE;
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            final long before = buffer.getLong(offset + SharedStateExporter.SEQUENCE_OFFSET);
+            if (before == 0) {
+                return false;
+            }
+            if ((before & 1) != 0) {
+                continue;
+            }
+            fence = 0;
+
+            into.tick = buffer.getLong(offset + SharedStateExporter.TICK_OFFSET);
+            into.destination = buffer.getDouble(offset + SharedStateExporter.DESTINATION_OFFSET);
+            into.position = buffer.getDouble(offset + SharedStateExporter.POSITION_OFFSET);
+            into.velocity = buffer.getDouble(offset + SharedStateExporter.VELOCITY_OFFSET);
+            into.acceleration = buffer.getDouble(offset + SharedStateExporter.ACCELERATION_OFFSET);
+            into.angle = buffer.getDouble(offset + SharedStateExporter.ANGLE_OFFSET);
+
+            fence = 0;
+            if (buffer.getLong(offset + SharedStateExporter.SEQUENCE_OFFSET) == before) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException - when the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - the file and optionally the interval between printouts in milliseconds (default 1000).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: SharedStateReader FILE [INTERVAL_MILLIS]");
+            System.exit(1);
+        }
+
+        final long interval = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        final TelemetryReader.Record record = new TelemetryReader.Record();
+
+        try (SharedStateReader reader = new SharedStateReader(Paths.get(args[0]))) {
+            while (true) {
+                System.out.printf("%5s %12s %10s %10s %10s %12s %10s%n", "crane", "tick", "dest", "position",
+                        "velocity", "acceleration", "angle");
+                for (int id = 0; id < reader.getSlotCount(); ++id) {
+                    if (reader.read(id, record)) {
+                        System.out.printf("%5d %12d %10.3f %10.3f %10.5f %12.7f %10.5f%n", id, record.tick,
+                                record.destination, record.position, record.velocity, record.acceleration,
+                                record.angle);
+                    }
+                }
+                System.out.println();
+
+                Thread.sleep(interval);
+            }
+        }
+    }
+}
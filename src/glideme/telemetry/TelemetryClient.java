@@ -0,0 +1,181 @@
+package glideme.telemetry;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives ticks streamed by a TelemetryServer (blocking, one record at a time).
+ *
+ * Usage: TelemetryClient HOST PORT [PERIOD] prints the rate of the received ticks and the latest one
+ * every second.
+ */
+public class TelemetryClient implements Closeable {
+    private final SocketChannel channel;
+
+    /**
+     * Received data not consumed yet (between position and limit).
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(
+            TelemetryServer.FRAME_HEADER_SIZE + TelemetryServer.FRAME_RECORDS * TelemetryServer.RECORD_SIZE);
+
+    private final ByteBuffer request = ByteBuffer.allocate(4);
+
+    /**
+     * Records left in the current frame.
+     */
+    private int remaining = 0;
+
+    /**
+     * Number of records received and of records the server dropped because we didn't keep up.
+     */
+    private long received = 0, dropped = 0;
+
+    /**
+     * Connect to a server.
+     *
+     * @param address - the server's address.
+     * @param period - sampling period in ticks (the client gets at most every period-th tick).
+     *
+     * @throws IOException - when the server can't be reached.
+     * @throws IllegalArgumentException - when the period isn't positive.
+     */
+    public TelemetryClient(final InetSocketAddress address, final int period)
+            throws IOException, IllegalArgumentException
+    {
+        channel = SocketChannel.open(address);
+
+        try {
+            setPeriod(period);
+        }
+        catch (IOException | IllegalArgumentException e) {
+            channel.close();
+            throw e;
+        }
+
+        buffer.limit(0);
+    }
+
+    /**
+     * Change the sampling period.
+     *
+     * @param period - sampling period in ticks.
+     *
+     * @throws IOException - when the request can't be sent.
+     * @throws IllegalArgumentException - when the period isn't positive.
+     */
+    public void setPeriod(final int period) throws IOException, IllegalArgumentException {
+        if (period <= 0) {
+            throw new IllegalArgumentException("TelemetryClient: 'period' must be positive!");
+        }
+
+        request.clear();
+        request.putInt(period).flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+    }
+
+    /**
+     * Wait for the next record.
+     *
+     * @param into - the record to overwrite.
+     *
+     * @throws IOException - when the connection fails or is closed by the server.
+     */
+    public void next(final TelemetryReader.Record into) throws IOException {
+        while (remaining == 0) {
+            ensure(TelemetryServer.FRAME_HEADER_SIZE);
+            remaining = buffer.getInt();
+            dropped += buffer.getInt();
+        }
+
+        ensure(TelemetryServer.RECORD_SIZE);
+        into.tick = buffer.getLong();
+        into.destination = buffer.getDouble();
+        into.position = buffer.getDouble();
+        into.velocity = buffer.getDouble();
+        into.acceleration = buffer.getDouble();
+        into.angle = buffer.getDouble();
+
+        --remaining;
+        ++received;
+    }
+
+    /**
+     * Receive until at least the given number of bytes is available.
+     */
+    private void ensure(final int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("TelemetryClient: connection closed by the server");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @return - number of records received.
+     */
+    public long getReceivedCount() {
+        return received;
+    }
+
+    /**
+     * @return - number of records the server dropped because the client didn't keep up.
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Disconnect.
+     *
+     * @throws IOException - when the connection can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Main.
+     *
+     * @param args - the server's host and port and optionally the sampling period in ticks (default 1).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TelemetryClient HOST PORT [PERIOD]");
+            System.exit(1);
+        }
+
+        final InetSocketAddress address = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        final TelemetryReader.Record record = new TelemetryReader.Record();
+
+        try (TelemetryClient client = new TelemetryClient(address, args.length > 2 ? Integer.parseInt(args[2]) : 1)) {
+            long lastReport = System.nanoTime(), lastReceived = 0;
+
+            while (true) {
+                client.next(record);
+
+                final long now = System.nanoTime();
+                if (now - lastReport >= 1000000000L) {
+                    System.out.printf("%.1f ticks/s, %d dropped; tick %d: dest %.3f, position %.3f, angle %.5f%n",
+                            (client.getReceivedCount() - lastReceived) * 1e9 / (now - lastReport),
+                            client.getDroppedCount(), record.tick, record.destination, record.position, record.angle);
+
+                    lastReport = now;
+                    lastReceived = client.getReceivedCount();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package glideme.telemetry;
+
+import glideme.World;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads records of a file written by TelemetryRecorder, either after the fact or while it's being recorded
+ * (from the same or from another process).
+ */
+public class TelemetryReader implements Closeable {
+    /**
+     * A recorded tick: the crane's state and its destination.
+     */
+    public static class Record extends World.CraneState {
+        /**
+         * Crane's destination during the tick.
+         */
+        public double destination;
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+
+    /**
+     * Written for its side effect only, see SharedStateExporter.Slot.fence.
+     */
+    private volatile int fence;
+
+    /**
+     * Open a recording.
+     *
+     * @param file - the file to read.
+     *
+     * @throws IOException - when the file can't be read or isn't a telemetry recording.
+     */
+    public TelemetryReader(final Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.limit() < TelemetryRecorder.HEADER_SIZE || buffer.getInt(0) != TelemetryRecorder.MAGIC
+                    || buffer.getInt(4) != TelemetryRecorder.VERSION
+                    || buffer.getInt(TelemetryRecorder.RECORD_SIZE_OFFSET) != TelemetryRecorder.RECORD_SIZE) {
+                throw new IOException("TelemetryReader: " + file + " is not a telemetry recording!");
+            }
+
+            capacity = buffer.getLong(TelemetryRecorder.CAPACITY_OFFSET);
+            if (capacity <= 0 || buffer.limit()
+                    != TelemetryRecorder.HEADER_SIZE + capacity * TelemetryRecorder.RECORD_SIZE) {
+                throw new IOException("TelemetryReader: " + file + " is truncated or corrupted!");
+            }
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return - number of records written so far, including the overwritten ones
+     * (grows while the file is being recorded).
+     */
+    public long getCount() {
+        return buffer.getLong(TelemetryRecorder.COUNT_OFFSET);
+    }
+
+    /**
+     * @return - index of the oldest record still kept.
+     */
+    public long getFirstIndex() {
+        return Math.max(0, getCount() - capacity);
+    }
+
+    /**
+     * @return - number of records the file keeps.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Read a record.
+     *
+     * @param index - index of the record (in the order of writing, between getFirstIndex() and getCount()).
+     * @param into - the record to overwrite.
+     *
+     * @return - true if the record was read, false if it isn't kept (or was overwritten while it was being read).
+     * While the file is being recorded, the oldest record (at getFirstIndex() once the ring is full) can't be
+     * read, as its slot is the next to be overwritten.
+     */
+    public boolean read(final long index, final Record into) {
+        if (index < getFirstIndex() || index >= getCount()) {
+            return false;
+        }
+
+        final int offset = (int) (TelemetryRecorder.HEADER_SIZE + (index % capacity) * TelemetryRecorder.RECORD_SIZE);
+        fence = 0;
+
+        into.tick = buffer.getLong(offset);
+        into.destination = buffer.getDouble(offset + 8);
+        into.position = buffer.getDouble(offset + 16);
+        into.velocity = buffer.getDouble(offset + 24);
+        into.acceleration = buffer.getDouble(offset + 32);
+        into.angle = buffer.getDouble(offset + 40);
+
+        // The recorder may have lapped the reader in the meantime. The slot of the oldest record is the one
+        // the recorder fills next (or is filling right now), so that record can't be trusted either.
+        fence = 0;
+        return index > getCount() - capacity;
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException - when the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
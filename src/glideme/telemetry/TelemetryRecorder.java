@@ -0,0 +1,154 @@
+package glideme.telemetry;
+
+import glideme.TickListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records every tick of a world into a memory-mapped ring file.
+ *
+ * Records have a fixed width and are written with absolute puts straight into the mapping, so recording
+ * a tick costs a few stores: no allocation, no locking, no system call. The operating system writes the
+ * pages back in the background, and since they belong to the page cache rather than to the JVM, whatever
+ * has been recorded survives a crash of the application.
+ *
+ * Once the ring is full, the oldest records are overwritten. At 1000 ticks per second a record takes
+ * 48 bytes, so an hour of history takes about 173 MB; a single file holds up to MAX_CAPACITY records
+ * (about 12 hours).
+ *
+ * File layout (little endian): a 64 byte header (magic, version, record size as ints; capacity
+ * and number of records written so far as longs; padding), then the records. A record consists of the tick
+ * number (a long), followed by the destination, position, velocity, acceleration and angle (doubles).
+ * The n-th record written (counting from 0) is stored in slot n % capacity.
+ *
+ * A recorder must be fed by a single thread (typically it's registered as a world's TickListener).
+ */
+public class TelemetryRecorder implements TickListener, Closeable {
+    /**
+     * File format identification.
+     */
+    static final int MAGIC = 0x474C5452, VERSION = 1;
+
+    /**
+     * Sizes in bytes.
+     */
+    static final int HEADER_SIZE = 64, RECORD_SIZE = 48;
+
+    /**
+     * Offsets of the header fields.
+     */
+    static final int RECORD_SIZE_OFFSET = 8, CAPACITY_OFFSET = 16, COUNT_OFFSET = 24;
+
+    /**
+     * The largest number of records a file can hold (a single mapping is limited to 2 GB).
+     */
+    public static final long MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+
+    /**
+     * Number of records written so far.
+     */
+    private long count = 0;
+
+    /**
+     * Written for its side effect only, see SharedStateExporter.Slot.fence.
+     */
+    private volatile int fence;
+
+    /**
+     * Start a new recording (replacing any previous contents of the file).
+     *
+     * @param file - the file to record into.
+     * @param capacity - number of records kept (older ones are overwritten).
+     *
+     * @throws IOException - when the file can't be created or mapped.
+     * @throws IllegalArgumentException - when the capacity isn't positive or exceeds MAX_CAPACITY.
+     */
+    public TelemetryRecorder(final Path file, final long capacity) throws IOException, IllegalArgumentException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("TelemetryRecorder: capacity must be between 1 and "
+                    + MAX_CAPACITY + "!");
+        }
+
+        this.capacity = capacity;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * RECORD_SIZE);
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        buffer.putLong(CAPACITY_OFFSET, capacity);
+        buffer.putLong(COUNT_OFFSET, 0);
+    }
+
+    /**
+     * Append a record.
+     */
+    @Override
+    public void onTick(final long tick, final double destination, final double position, final double velocity,
+                       final double acceleration, final double angle) {
+        final int offset = (int) (HEADER_SIZE + (count % capacity) * RECORD_SIZE);
+
+        buffer.putLong(offset, tick);
+        buffer.putDouble(offset + 8, destination);
+        buffer.putDouble(offset + 16, position);
+        buffer.putDouble(offset + 24, velocity);
+        buffer.putDouble(offset + 32, acceleration);
+        buffer.putDouble(offset + 40, angle);
+
+        // The count is stored last (after the fence): a reader of a live file never sees a slot counted
+        // before it's filled. The slot being filled still holds the oldest counted record, see TelemetryReader.
+        fence = 0;
+        buffer.putLong(COUNT_OFFSET, ++count);
+    }
+
+    /**
+     * @return - number of records written so far (including the overwritten ones).
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return - number of records the file keeps.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Force the recorded data to the storage device. Slow, meant for checkpoints rather than every tick.
+     */
+    public void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Flush the data and close the file. The recorder must not be fed afterwards.
+     *
+     * @throws IOException - when the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
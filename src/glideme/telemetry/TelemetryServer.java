@@ -0,0 +1,510 @@
+package glideme.telemetry;
+
+import glideme.TickListener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams a world's ticks to any number of subscribers over TCP (see TelemetryClient).
+ *
+ * The world's thread only stores each tick into a ring in memory, which never blocks nor allocates. A single
+ * server thread drives all the sockets through a selector: every FLUSH_MILLIS it collects the new ticks from
+ * the ring and sends each subscriber the ones it's interested in, batched into a frame. Frames are built in
+ * pooled direct buffers and written without blocking.
+ *
+ * A subscriber chooses its sampling period: with a period of n ticks it gets (at most) every n-th tick, e.g.
+ * a dashboard wanting 50 Hz of a 1000 Hz world asks for 20. A subscriber that doesn't keep up has at most one
+ * frame in flight and one being filled; when that one fills up too, its ticks are dropped, oldest first,
+ * and the next frame it gets says how many. A subscriber that doesn't take any data for STALL_MILLIS is
+ * disconnected. So neither the world nor the other subscribers are ever held back by a slow one.
+ * Should the server thread itself fall behind by more than the ring, the oldest ticks are lost for everyone.
+ *
+ * Protocol (big endian): a subscriber sends its sampling period in ticks as an int (it may send a new one
+ * at any time); until then it gets the server's default period. The server sends frames, each consisting
+ * of the number of records and the number of records dropped since the previous frame (ints), followed by
+ * the records. A record consists of the tick number (a long), followed by the destination, position, velocity,
+ * acceleration and angle (doubles).
+ */
+public class TelemetryServer implements TickListener, Closeable {
+    /**
+     * Interval between frames in milliseconds.
+     */
+    public static final long FLUSH_MILLIS = 10;
+
+    /**
+     * How long a subscriber may not take any data before it's disconnected, in milliseconds.
+     */
+    public static final long STALL_MILLIS = 5000;
+
+    /**
+     * Sizes in bytes.
+     */
+    static final int FRAME_HEADER_SIZE = 8, RECORD_SIZE = 48;
+
+    /**
+     * The largest number of records in a frame.
+     */
+    static final int FRAME_RECORDS = 256;
+
+    /**
+     * Number of ticks kept in the ring (a power of two), four seconds at 1000 Hz.
+     */
+    private static final int RING_CAPACITY = 4096;
+
+    /**
+     * Number of longs per tick in the ring.
+     */
+    private static final int RING_FIELDS = 6;
+
+    /**
+     * Ticks stored by the world's thread: the n-th one (counting from 0) occupies the fields starting
+     * at (n % RING_CAPACITY) * RING_FIELDS. Doubles are stored as their bits.
+     */
+    private final long[] ring = new long[RING_CAPACITY * RING_FIELDS];
+
+    /**
+     * Number of ticks stored, published after each tick is complete. The world's thread has its own copy.
+     */
+    private final AtomicLong written = new AtomicLong();
+    private long writes = 0;
+
+    /**
+     * Server thread's copy of the newly collected ticks, and the number of ticks collected so far.
+     */
+    private final long[] batch = new long[RING_CAPACITY * RING_FIELDS];
+    private long collected = 0;
+
+    private final int defaultPeriod;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final BufferPool pool = new BufferPool(FRAME_HEADER_SIZE + FRAME_RECORDS * RECORD_SIZE, 64);
+    private final List<Subscriber> subscribers = new ArrayList<>();
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Statistics: number of subscribers connected, of frames sent, of records dropped for slow subscribers
+     * and of ticks lost because the server fell behind.
+     */
+    private volatile int subscriberCount = 0;
+    private volatile long frames = 0, dropped = 0, lost = 0;
+
+    /**
+     * A connected subscriber.
+     */
+    private class Subscriber {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        /**
+         * Sampling period in ticks and the next tick to send.
+         */
+        private int period = defaultPeriod;
+        private long nextTick = Long.MIN_VALUE;
+
+        /**
+         * The subscriber's request being read.
+         */
+        private final ByteBuffer request = ByteBuffer.allocate(4);
+
+        /**
+         * The frame being sent (or null) and the frame being filled (positioned after its header).
+         */
+        private ByteBuffer sending = null;
+        private ByteBuffer filling = pool.acquire();
+        private int fillingCount = 0;
+
+        /**
+         * Records dropped since the frame being filled was started.
+         */
+        private long fillingDropped = 0;
+
+        /**
+         * When the frame being sent last made progress (System.nanoTime()).
+         */
+        private long lastProgress;
+
+        private boolean closed = false;
+
+        Subscriber(final SocketChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(false);
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            filling.position(FRAME_HEADER_SIZE);
+        }
+
+        /**
+         * Read the subscriber's requests.
+         */
+        void read() throws IOException {
+            int count;
+            while ((count = channel.read(request)) > 0) {
+                if (!request.hasRemaining()) {
+                    period = Math.max(1, request.getInt(0));
+                    nextTick = Long.MIN_VALUE;
+                    request.clear();
+                }
+            }
+
+            if (count < 0) {
+                close();
+            }
+        }
+
+        /**
+         * Add a tick to the frame being filled, if the subscriber is interested in it.
+         *
+         * @return - false if the subscriber has been disconnected.
+         */
+        boolean add(final long[] ticks, final int offset) throws IOException {
+            final long tick = ticks[offset];
+            if (closed) {
+                return false;
+            }
+            if (tick < nextTick) {
+                return true;
+            }
+            nextTick = tick + period;
+
+            if (fillingCount == FRAME_RECORDS) {
+                if (sending == null) {
+                    // Send the full frame (this empties the one being filled).
+                    write();
+                    if (closed) {
+                        return false;
+                    }
+                }
+                else {
+                    // Still sending the previous frame: make room for the newer records.
+                    fillingDropped += fillingCount;
+                    dropped += fillingCount;
+                    fillingCount = 0;
+                    filling.position(FRAME_HEADER_SIZE);
+                }
+            }
+
+            filling.putLong(tick);
+            for (int field = 1; field < RING_FIELDS; ++field) {
+                filling.putDouble(Double.longBitsToDouble(ticks[offset + field]));
+            }
+            ++fillingCount;
+
+            return true;
+        }
+
+        /**
+         * Make the frame being filled the one being sent.
+         */
+        private void promote() {
+            filling.putInt(0, fillingCount);
+            filling.putInt(4, (int) Math.min(Integer.MAX_VALUE, fillingDropped));
+            filling.flip();
+
+            sending = filling;
+            filling = pool.acquire();
+            filling.position(FRAME_HEADER_SIZE);
+            fillingCount = 0;
+            fillingDropped = 0;
+            lastProgress = System.nanoTime();
+        }
+
+        /**
+         * Send as much as the socket takes without blocking.
+         */
+        void write() throws IOException {
+            if (sending == null && fillingCount > 0) {
+                promote();
+            }
+
+            while (sending != null) {
+                if (channel.write(sending) > 0) {
+                    lastProgress = System.nanoTime();
+                }
+
+                if (sending.hasRemaining()) {
+                    if (System.nanoTime() - lastProgress > STALL_MILLIS * 1000000L) {
+                        close();
+                    }
+                    else {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                    return;
+                }
+
+                pool.release(sending);
+                sending = null;
+                ++frames;
+
+                if (fillingCount > 0) {
+                    promote();
+                }
+            }
+
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Disconnect the subscriber.
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            subscribers.remove(this);
+            subscriberCount = subscribers.size();
+
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                // Disconnected anyway.
+            }
+
+            if (sending != null) {
+                pool.release(sending);
+                sending = null;
+            }
+            pool.release(filling);
+        }
+    }
+
+    /**
+     * Start serving.
+     *
+     * @param address - address to listen at (with port 0, a free port is chosen, see getAddress()).
+     * @param defaultPeriod - sampling period of subscribers that haven't chosen theirs, in ticks.
+     *
+     * @throws IOException - when the address can't be bound.
+     * @throws IllegalArgumentException - when the default period isn't positive.
+     */
+    public TelemetryServer(final InetSocketAddress address, final int defaultPeriod)
+            throws IOException, IllegalArgumentException
+    {
+        if (defaultPeriod <= 0) {
+            throw new IllegalArgumentException("TelemetryServer: 'defaultPeriod' must be positive!");
+        }
+
+        this.defaultPeriod = defaultPeriod;
+        selector = Selector.open();
+
+        try {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(address);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            selector.close();
+            throw e;
+        }
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "glideme-telemetry-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Store a tick into the ring.
+     */
+    @Override
+    public void onTick(final long tick, final double destination, final double position, final double velocity,
+                       final double acceleration, final double angle) {
+        final int offset = (int) (writes & (RING_CAPACITY - 1)) * RING_FIELDS;
+
+        ring[offset] = tick;
+        ring[offset + 1] = Double.doubleToRawLongBits(destination);
+        ring[offset + 2] = Double.doubleToRawLongBits(position);
+        ring[offset + 3] = Double.doubleToRawLongBits(velocity);
+        ring[offset + 4] = Double.doubleToRawLongBits(acceleration);
+        ring[offset + 5] = Double.doubleToRawLongBits(angle);
+
+        // An ordered store is enough: the fields are guaranteed to be visible before the count.
+        written.lazySet(++writes);
+    }
+
+    /**
+     * Serve the subscribers until closed.
+     */
+    private void serve() {
+        try {
+            long nextFlush = System.nanoTime();
+
+            while (running) {
+                selector.select(Math.max(1, (nextFlush - System.nanoTime()) / 1000000L));
+
+                final Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    final SelectionKey key = selected.next();
+                    selected.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    final Subscriber subscriber = (Subscriber) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            subscriber.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            subscriber.write();
+                        }
+                    } catch (IOException exception) {
+                        subscriber.close();
+                    }
+                }
+
+                if (System.nanoTime() - nextFlush >= 0) {
+                    flush();
+                    nextFlush = System.nanoTime() + FLUSH_MILLIS * 1000000L;
+                }
+            }
+        } catch (IOException | ClosedSelectorException exception) {
+            if (running) {
+                System.err.println("TelemetryServer: stopped, " + exception);
+            }
+        } finally {
+            for (final Subscriber subscriber : new ArrayList<>(subscribers)) {
+                subscriber.close();
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException exception) {
+                // Closing anyway.
+            }
+        }
+    }
+
+    /**
+     * Accept pending connections.
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            try {
+                channel.socket().setTcpNoDelay(true);
+                subscribers.add(new Subscriber(channel));
+                subscriberCount = subscribers.size();
+            } catch (IOException exception) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Collect the new ticks and send them to the subscribers.
+     */
+    private void flush() {
+        final long available = written.get();
+        if (available - collected > RING_CAPACITY) {
+            lost += available - RING_CAPACITY - collected;
+            collected = available - RING_CAPACITY;
+        }
+
+        final int count = (int) (available - collected);
+        for (int i = 0; i < count; ++i) {
+            final int from = (int) ((collected + i) & (RING_CAPACITY - 1)) * RING_FIELDS;
+            System.arraycopy(ring, from, batch, i * RING_FIELDS, RING_FIELDS);
+        }
+
+        // The world may have lapped us while we were copying: the ticks it overwrote (or is overwriting
+        // right now) may be torn.
+        final int overwritten = (int) Math.max(0, Math.min(count, written.get() - RING_CAPACITY + 1 - collected));
+        lost += overwritten;
+        collected = available;
+
+        // Backwards, as subscribers may get disconnected (removed) along the way.
+        for (int s = subscribers.size() - 1; s >= 0; --s) {
+            final Subscriber subscriber = subscribers.get(s);
+            try {
+                for (int i = overwritten; i < count; ++i) {
+                    if (!subscriber.add(batch, i * RING_FIELDS)) {
+                        break;
+                    }
+                }
+                subscriber.write();
+            } catch (IOException exception) {
+                subscriber.close();
+            }
+        }
+    }
+
+    /**
+     * @return - the address the server listens at.
+     *
+     * @throws IOException - when the server is closed.
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return - number of subscribers connected.
+     */
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    /**
+     * @return - number of frames sent (to all subscribers together).
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return - number of records dropped because subscribers didn't keep up (all subscribers together).
+     */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * @return - number of ticks lost because the server didn't keep up with the world.
+     */
+    public long getLostCount() {
+        return lost;
+    }
+
+    /**
+     * Disconnect all subscribers and stop listening. The server must not be fed afterwards.
+     *
+     * @throws IOException - never (declared by Closeable).
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+
+        try {
+            thread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}